@@ -0,0 +1,90 @@
+package projects.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import projects.analytics.Aggregate;
+import projects.analytics.Measure;
+import projects.analytics.ProjectSnapshot;
+import projects.entity.Material;
+import projects.entity.Project;
+
+/*
+ * Compares a report over the entity lists (total material cost of the projects
+ * with difficulty 3 to 5, the way it is done today) with the same report over
+ * a ProjectSnapshot. No database is needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalyticsBenchmark {
+
+	@Param({ "10000", "200000" })
+	private int projectCount;
+
+	private List<Project> projects;
+	private ProjectSnapshot snapshot;
+
+	@Setup
+	public void setUp() {
+		projects = new LinkedList<>();
+
+		for (int index = 1; index <= projectCount; index++) {
+			Project project = BenchmarkData.project("project " + (index % 1000), 0);
+			project.setProjectId(index);
+			project.setDifficulty(index % 5 + 1);
+
+			for (int material = 1; material <= 3; material++) {
+				Material row = new Material();
+				row.setProjectId(index);
+				row.setMaterialName("material " + material);
+				row.setNumRequired(material);
+				row.setCost(new BigDecimal("2.50"));
+				project.getMaterials().add(row);
+			}
+
+			projects.add(project);
+		}
+
+		snapshot = ProjectSnapshot.of(projects);
+	}
+
+	@Benchmark
+	public BigDecimal entityLists() {
+		BigDecimal total = BigDecimal.ZERO;
+
+		for (Project project : projects) {
+			Integer difficulty = project.getDifficulty();
+
+			if (difficulty != null && difficulty >= 3 && difficulty <= 5) {
+				for (Material material : project.getMaterials()) {
+					total = total.add(material.getCost().multiply(BigDecimal.valueOf(material.getNumRequired())));
+				}
+			}
+		}
+
+		return total;
+	}
+
+	@Benchmark
+	public Aggregate snapshot() {
+		return snapshot.aggregate(Measure.MATERIAL_COST, snapshot.difficultyBetween(3, 5));
+	}
+}
@@ -0,0 +1,39 @@
+package projects.benchmarks;
+
+import java.math.BigDecimal;
+
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+/*
+ * Builds the projects that the database benchmarks insert.
+ */
+final class BenchmarkData {
+
+	private BenchmarkData() {
+	}
+
+	static Project project(String name, int childCount) {
+		Project project = new Project();
+		project.setProjectName(name);
+		project.setEstimatedHours(new BigDecimal("10.00"));
+		project.setActualHours(new BigDecimal("12.00"));
+		project.setDifficulty(2);
+		project.setNotes("created by the benchmarks");
+
+		for (int index = 1; index <= childCount; index++) {
+			Material material = new Material();
+			material.setMaterialName("material " + index);
+			material.setNumRequired(index);
+			material.setCost(new BigDecimal("2.50"));
+			project.getMaterials().add(material);
+
+			Step step = new Step();
+			step.setStepText("step " + index);
+			project.getSteps().add(step);
+		}
+
+		return project;
+	}
+}
@@ -0,0 +1,127 @@
+package projects.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+import provided.entity.EntityBase;
+
+/*
+ * Measures entity formatting: EntityBase.toFraction() and appendFraction() over
+ * a spread of amounts, and Project.toString() and appendTo() for a project with
+ * the given number of materials, steps, and categories. The append benchmarks
+ * reuse one builder. Run with -prof gc to see allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityFormattingBenchmark {
+
+	private final Fractions fractions = new Fractions();
+	private final StringBuilder builder = new StringBuilder(4096);
+	private BigDecimal[] amounts;
+
+	// exposes the protected EntityBase method to the benchmark
+	private static class Fractions extends EntityBase {
+		String format(BigDecimal value) {
+			return toFraction(value);
+		}
+
+		StringBuilder append(StringBuilder out, BigDecimal value) {
+			return appendFraction(out, value);
+		}
+	}
+
+	// the project to format, with childCount materials, steps, and categories
+	@State(Scope.Thread)
+	public static class ProjectState {
+		@Param({ "0", "10", "100" })
+		private int childCount;
+
+		private Project project;
+
+		@Setup
+		public void setUp() {
+			project = new Project();
+			project.setProjectId(1);
+			project.setProjectName("Entry Way Storage");
+			project.setEstimatedHours(new BigDecimal("16.00"));
+			project.setActualHours(new BigDecimal("18.00"));
+			project.setDifficulty(3);
+			project.setNotes("buy straight boards");
+
+			for (int index = 0; index < childCount; index++) {
+				Material material = new Material();
+				material.setMaterialId(index);
+				material.setMaterialName("material " + index);
+				material.setNumRequired(index + 1);
+				material.setCost(new BigDecimal("5.60"));
+				project.getMaterials().add(material);
+
+				Step step = new Step();
+				step.setStepId(index);
+				step.setStepText("step number " + index);
+				project.getSteps().add(step);
+
+				Category category = new Category();
+				category.setCategoryId(index);
+				category.setCategoryName("category " + index);
+				project.getCategories().add(category);
+			}
+		}
+	}
+
+	@Setup
+	public void setUp() {
+		amounts = new BigDecimal[] { new BigDecimal("0.25"), new BigDecimal("1.5"), new BigDecimal("2.6667"),
+				new BigDecimal("16.0625"), new BigDecimal("3"), new BigDecimal("0.2") };
+	}
+
+	@Benchmark
+	public void toFraction(Blackhole blackhole) {
+		for (BigDecimal amount : amounts) {
+			blackhole.consume(fractions.format(amount));
+		}
+	}
+
+	@Benchmark
+	public int appendFraction() {
+		builder.setLength(0);
+
+		for (BigDecimal amount : amounts) {
+			fractions.append(builder, amount);
+		}
+
+		return builder.length();
+	}
+
+	@Benchmark
+	public String projectToString(ProjectState state) {
+		return state.project.toString();
+	}
+
+	@Benchmark
+	public int projectAppendTo(ProjectState state) {
+		builder.setLength(0);
+		return state.project.appendTo(builder).length();
+	}
+}
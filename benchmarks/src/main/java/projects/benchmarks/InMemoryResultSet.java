@@ -0,0 +1,87 @@
+package projects.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/*
+ * A synthetic, in-memory ResultSet for the row mapping benchmarks. It supports
+ * the calls the mapping code makes (next, getObject by index or label,
+ * getMetaData, close) and returns the same rows every time it is reset, so the
+ * benchmarks measure mapping cost without a database.
+ *
+ * The ResultSet is a dynamic proxy. The proxy dispatch costs the same for every
+ * mapping strategy, so it does not change the comparison between them.
+ */
+class InMemoryResultSet implements InvocationHandler {
+	private final String[] labels;
+	private final Object[][] rows;
+	private final ResultSetMetaData metaData;
+	private final ResultSet resultSet;
+	private int row = -1;
+
+	InMemoryResultSet(String[] labels, Object[][] rows) {
+		this.labels = labels;
+		this.rows = rows;
+		this.metaData = (ResultSetMetaData) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { ResultSetMetaData.class }, this::invokeMetaData);
+		this.resultSet = (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { ResultSet.class }, this);
+	}
+
+	ResultSet resultSet() {
+		return resultSet;
+	}
+
+	// move back before the first row
+	void reset() {
+		row = -1;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		switch (method.getName()) {
+		case "next":
+			return ++row < rows.length;
+		case "getObject":
+			return rows[row][columnIndex(args[0])];
+		case "getMetaData":
+			return metaData;
+		case "close":
+			return null;
+		case "isClosed":
+			return false;
+		default:
+			throw new SQLException("Not supported by InMemoryResultSet: " + method.getName());
+		}
+	}
+
+	private Object invokeMetaData(Object proxy, Method method, Object[] args) throws Throwable {
+		switch (method.getName()) {
+		case "getColumnCount":
+			return labels.length;
+		case "getColumnLabel":
+		case "getColumnName":
+			return labels[(Integer) args[0] - 1];
+		default:
+			throw new SQLException("Not supported by InMemoryResultSet: " + method.getName());
+		}
+	}
+
+	private int columnIndex(Object column) throws SQLException {
+		if (column instanceof Integer) {
+			return (Integer) column - 1;
+		}
+
+		for (int index = 0; index < labels.length; index++) {
+			if (labels[index].equalsIgnoreCase((String) column)) {
+				return index;
+			}
+		}
+
+		throw new SQLException("Column not found: " + column);
+	}
+}
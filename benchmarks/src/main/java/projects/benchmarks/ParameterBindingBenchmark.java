@@ -0,0 +1,74 @@
+package projects.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import provided.util.DaoBase;
+
+/*
+ * Measures DaoBase.setParameter() binding the five project columns, with and
+ * without nulls, against a PreparedStatement that discards its parameters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParameterBindingBenchmark {
+
+	private PreparedStatement stmt;
+	private final Dao dao = new Dao();
+
+	private final String name = "Entry Way Storage";
+	private final BigDecimal estimatedHours = new BigDecimal("16.00");
+	private final BigDecimal actualHours = new BigDecimal("18.00");
+	private final Integer difficulty = 3;
+	private final String notes = "buy straight boards";
+
+	// exposes the protected DaoBase methods to the benchmark
+	private static class Dao extends DaoBase {
+		void bind(PreparedStatement stmt, int index, Object value, Class<?> classType) throws Exception {
+			setParameter(stmt, index, value, classType);
+		}
+	}
+
+	@Setup
+	public void setUp() {
+		stmt = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> null);
+	}
+
+	@Benchmark
+	public PreparedStatement bindProject() throws Exception {
+		dao.bind(stmt, 1, name, String.class);
+		dao.bind(stmt, 2, estimatedHours, BigDecimal.class);
+		dao.bind(stmt, 3, actualHours, BigDecimal.class);
+		dao.bind(stmt, 4, difficulty, Integer.class);
+		dao.bind(stmt, 5, notes, String.class);
+		return stmt;
+	}
+
+	@Benchmark
+	public PreparedStatement bindProjectWithNulls() throws Exception {
+		dao.bind(stmt, 1, name, String.class);
+		dao.bind(stmt, 2, null, BigDecimal.class);
+		dao.bind(stmt, 3, null, BigDecimal.class);
+		dao.bind(stmt, 4, difficulty, Integer.class);
+		dao.bind(stmt, 5, null, String.class);
+		return stmt;
+	}
+}
@@ -0,0 +1,85 @@
+package projects.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import projects.dao.DbConnection;
+import projects.entity.Project;
+import projects.service.ProjectService;
+
+/*
+ * End-to-end ProjectService benchmarks. These need the projects schema on the
+ * local MySQL server that DbConnection points at. The benchmark adds one
+ * project with materials and steps in setup and deletes it again in teardown.
+ *
+ * The project cache is disabled (-Dprojects.cache.maxSize=0) so that each
+ * fetch reaches the database. fetchProjectByIdCached runs in a fork of its own
+ * with the cache on, and measures a cache hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dprojects.cache.maxSize=0")
+public class ProjectServiceBenchmark {
+
+	private ProjectService projectService;
+	private Integer projectId;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		projectService = new ProjectService();
+		projectId = projectService.addProjects(List.of(BenchmarkData.project("ProjectServiceBenchmark", 5)))
+				.get(0).getProjectId();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		projectService.deleteProject(projectId);
+		DbConnection.close();
+	}
+
+	@Benchmark
+	public Project fetchProjectById() {
+		return projectService.fetchProjectById(projectId);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = "-Dprojects.cache.maxSize=1000")
+	public Project fetchProjectByIdCached() {
+		return projectService.fetchProjectById(projectId);
+	}
+
+	@Benchmark
+	public void listProjects(Blackhole blackhole) {
+		projectService.forEachProject(blackhole::consume);
+	}
+
+	@Benchmark
+	public void modifyProjectDetails() {
+		Project project = new Project();
+		project.setProjectId(projectId);
+		project.setProjectName("ProjectServiceBenchmark");
+		project.setEstimatedHours(new BigDecimal("10.00"));
+		project.setActualHours(new BigDecimal("12.00"));
+		project.setDifficulty(2);
+		project.setNotes("updated by the benchmark");
+		projectService.modifyProjectDetails(project);
+	}
+}
@@ -0,0 +1,103 @@
+package projects.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import projects.entity.Project;
+import provided.util.DaoBase;
+import provided.util.RowMapper;
+
+/*
+ * Measures mapping a page of project rows to Project objects:
+ *
+ * - extractPerRow: DaoBase.extract() called for every row, as older DAO code
+ *   does.
+ * - mapperPerResultSet: rowMapper() obtained once, then map() for every row, as
+ *   ProjectDao does now.
+ * - readColumnsOnly: reads the same columns without building objects. This is
+ *   the floor set by the synthetic ResultSet itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowMappingBenchmark {
+
+	@Param({ "1", "100", "1000" })
+	private int rowCount;
+
+	private InMemoryResultSet source;
+	private ResultSet rs;
+	private final Dao dao = new Dao();
+
+	// exposes the protected DaoBase methods to the benchmark
+	private static class Dao extends DaoBase {
+		<T> T extractRow(ResultSet rs, Class<T> classType) {
+			return extract(rs, classType);
+		}
+
+		<T> RowMapper<T> mapper(ResultSet rs, Class<T> classType) {
+			return rowMapper(rs, classType);
+		}
+	}
+
+	@Setup
+	public void setUp() {
+		String[] labels = { "project_id", "project_name", "estimated_hours", "actual_hours", "difficulty", "notes" };
+		Object[][] rows = new Object[rowCount][];
+
+		for (int index = 0; index < rowCount; index++) {
+			rows[index] = new Object[] { index + 1, "Project " + index, new BigDecimal("12.50"),
+					new BigDecimal("14.25"), index % 5 + 1, "Notes for project " + index };
+		}
+
+		source = new InMemoryResultSet(labels, rows);
+		rs = source.resultSet();
+	}
+
+	@Benchmark
+	public void extractPerRow(Blackhole blackhole) throws Exception {
+		source.reset();
+
+		while (rs.next()) {
+			blackhole.consume(dao.extractRow(rs, Project.class));
+		}
+	}
+
+	@Benchmark
+	public void mapperPerResultSet(Blackhole blackhole) throws Exception {
+		source.reset();
+		RowMapper<Project> mapper = dao.mapper(rs, Project.class);
+
+		while (rs.next()) {
+			blackhole.consume(mapper.map(rs));
+		}
+	}
+
+	@Benchmark
+	public void readColumnsOnly(Blackhole blackhole) throws Exception {
+		source.reset();
+
+		while (rs.next()) {
+			for (int column = 1; column <= 6; column++) {
+				blackhole.consume(rs.getObject(column));
+			}
+		}
+	}
+}
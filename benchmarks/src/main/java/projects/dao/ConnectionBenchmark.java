@@ -0,0 +1,62 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Compares the throughput of a trivial query on a pooled connection from
+ * DbConnection with the same query on a connection opened through
+ * DriverManager for every call, which is what DbConnection used to do. Needs
+ * the local MySQL server. This class is in the projects.dao package so that it
+ * can use the same connection URI as DbConnection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ConnectionBenchmark {
+
+	@TearDown
+	public void tearDown() {
+		DbConnection.close();
+	}
+
+	@Benchmark
+	public int pooled() throws Exception {
+		try (Connection conn = DbConnection.getConnection()) {
+			return selectOne(conn);
+		}
+	}
+
+	@Benchmark
+	public int unpooled() throws Exception {
+		try (Connection conn = DriverManager.getConnection(DbConnection.getUri())) {
+			return selectOne(conn);
+		}
+	}
+
+	private int selectOne(Connection conn) throws Exception {
+		try (PreparedStatement stmt = conn.prepareStatement("SELECT 1"); ResultSet rs = stmt.executeQuery()) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+}
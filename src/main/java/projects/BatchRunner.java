@@ -0,0 +1,471 @@
+package projects;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import projects.entity.Project;
+import projects.exception.DbException;
+import projects.metrics.OperationStats;
+import projects.service.ProjectService;
+
+/*
+ * This runs ProjectsApp without the menu, from a list of commands, so the app
+ * can be used as a bulk tool or to put load on the database. The commands come
+ * from the command line, one per argument, or from a script file (-f file),
+ * one per line. Blank lines and lines starting with # are ignored.
+ *
+ *   add name=<text> [estimated=<hours>] [actual=<hours>] difficulty=<1-5> [notes=<text>]
+ *   list
+ *   select <id>
+ *   update <id> [name=<text>] [estimated=<hours>] [actual=<hours>] [difficulty=<1-5>] [notes=<text>]
+ *   delete <id>
+ *   repeat <n> <command>     run the command n times
+ *   concurrency <n>          run the following commands on n threads (1 to start with)
+ *
+ * Values with spaces are quoted: name="Garden shed". In a repeated command {n}
+ * is replaced with the repetition number, starting at 1, and an <id> of
+ * "random" picks one of the projects added by the script. Each command runs to
+ * completion before the next one starts. A command that runs once prints its
+ * result; repeated commands only count. At the end a table of calls, errors,
+ * throughput, and latency percentiles for each command is printed.
+ */
+public class BatchRunner {
+
+	private static final String USAGE = ""
+			+ "Usage: ProjectsApp [-f script | command...]\n"
+			+ "Commands: add, list, select, update, delete, repeat <n> <command>, concurrency <n>";
+
+	private final ProjectService projectService;
+	private final Map<String, OperationStats> stats = new LinkedHashMap<>();
+	private final Map<String, AtomicLong> elapsedNanos = new LinkedHashMap<>();
+
+	// the IDs of the projects added by the script and not deleted, for "random"
+	private final List<Integer> addedIds = new ArrayList<>();
+
+	private int concurrency = 1;
+
+	public BatchRunner(ProjectService projectService) {
+		this.projectService = projectService;
+	}
+
+	/*
+	 * Read the commands from the program arguments: either "-f file" or one command
+	 * per argument.
+	 */
+	public static List<String> readCommands(String[] args) {
+		if (args.length == 2 && "-f".equals(args[0])) {
+			try {
+				return Files.readAllLines(Path.of(args[1]));
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to read the script " + args[1], e);
+			}
+		}
+
+		if ("-f".equals(args[0]) || "-h".equals(args[0]) || "--help".equals(args[0])) {
+			throw new IllegalArgumentException(USAGE);
+		}
+
+		return List.of(args);
+	}
+
+	/*
+	 * Run the commands in order, then print the summary. Returns false if any
+	 * command failed.
+	 */
+	public boolean run(List<String> commands) {
+		long start = System.nanoTime();
+		boolean ok = true;
+		int lineNumber = 0;
+
+		for (String line : commands) {
+			lineNumber++;
+			String command = line.strip();
+
+			if (command.isEmpty() || command.startsWith("#")) {
+				continue;
+			}
+
+			try {
+				ok &= runLine(tokenize(command));
+			} catch (RuntimeException e) {
+				System.out.println("Line " + lineNumber + ": " + e.getMessage());
+				ok = false;
+			}
+		}
+
+		printSummary(System.nanoTime() - start);
+		return ok;
+	}
+
+	private boolean runLine(List<String> words) {
+		String name = words.get(0);
+
+		switch (name) {
+		case "concurrency":
+			concurrency = positive(words, 1);
+			return true;
+
+		case "repeat":
+			if (words.size() < 3) {
+				throw new IllegalArgumentException("repeat needs a count and a command\n" + USAGE);
+			}
+
+			return runRepeated(words.subList(2, words.size()), positive(words, 1));
+
+		default:
+			return runRepeated(words, 1);
+		}
+	}
+
+	/*
+	 * Run one command count times, spread over the worker threads. Each worker
+	 * takes the next repetition number until they are all used.
+	 */
+	private boolean runRepeated(List<String> words, long count) {
+		String name = words.get(0);
+		Command command = parse(words);
+		boolean verbose = count == 1;
+		OperationStats operationStats = stats.computeIfAbsent(name, OperationStats::new);
+		AtomicLong next = new AtomicLong();
+		AtomicReference<String> firstError = new AtomicReference<>();
+		long errorsBefore = operationStats.getErrorCount();
+		int workers = (int) Math.min(concurrency, count);
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		long start = System.nanoTime();
+
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+
+			for (int worker = 0; worker < workers; worker++) {
+				futures.add(executor.submit(() -> {
+					for (long n = next.incrementAndGet(); n <= count; n = next.incrementAndGet()) {
+						long callStart = System.nanoTime();
+						boolean error = false;
+						int rows = 0;
+
+						try {
+							rows = command.run(n, verbose);
+						} catch (RuntimeException e) {
+							error = true;
+							firstError.compareAndSet(null, String.valueOf(e.getMessage()));
+						}
+
+						operationStats.record(System.nanoTime() - callStart, rows, error);
+					}
+				}));
+			}
+
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (Exception e) {
+			throw new DbException("Unable to run " + name, e);
+		} finally {
+			executor.shutdownNow();
+			elapsedNanos.computeIfAbsent(name, key -> new AtomicLong()).addAndGet(System.nanoTime() - start);
+		}
+
+		long errors = operationStats.getErrorCount() - errorsBefore;
+
+		if (errors > 0) {
+			System.out.println(name + ": " + errors + " of " + count + " failed. First error: " + firstError.get());
+		}
+
+		return errors == 0;
+	}
+
+	/*
+	 * A parsed command. run() is called with the repetition number and returns
+	 * the number of rows it read or wrote.
+	 */
+	@FunctionalInterface
+	private interface Command {
+		int run(long n, boolean verbose);
+	}
+
+	private Command parse(List<String> words) {
+		String name = words.get(0);
+
+		switch (name) {
+		case "add": {
+			Map<String, String> fields = fields(words, 1);
+			return (n, verbose) -> add(fields, n, verbose);
+		}
+
+		case "list":
+			return this::list;
+
+		case "select": {
+			String id = argument(words, 1);
+			return (n, verbose) -> {
+				Project project = projectService.fetchProjectById(projectId(id));
+
+				if (verbose) {
+					System.out.println(project);
+				}
+
+				return 1;
+			};
+		}
+
+		case "update": {
+			String id = argument(words, 1);
+			Map<String, String> fields = fields(words, 2);
+			return (n, verbose) -> update(projectId(id), fields, n, verbose);
+		}
+
+		case "delete": {
+			String id = argument(words, 1);
+			return (n, verbose) -> {
+				Integer projectId = "random".equals(id) ? randomProjectId(true) : projectId(id);
+				projectService.deleteProject(projectId);
+
+				if (verbose) {
+					System.out.println("Deleted project " + projectId);
+				}
+
+				return 1;
+			};
+		}
+
+		default:
+			throw new IllegalArgumentException("Unknown command " + name + "\n" + USAGE);
+		}
+	}
+
+	private int add(Map<String, String> fields, long n, boolean verbose) {
+		Project project = new Project();
+
+		apply(project, fields, n);
+
+		if (Objects.isNull(project.getProjectName())) {
+			throw new IllegalArgumentException("add needs a name");
+		}
+
+		Project added = projectService.addProject(project);
+
+		synchronized (addedIds) {
+			addedIds.add(added.getProjectId());
+		}
+
+		if (verbose) {
+			System.out.println("Added project " + added.getProjectId() + ": " + added.getProjectName());
+		}
+
+		return 1;
+	}
+
+	private int list(long n, boolean verbose) {
+		return projectService.forEachProject(project -> {
+			if (verbose) {
+				System.out.println(project.getProjectId() + ": " + project.getProjectName());
+			}
+		});
+	}
+
+	/*
+	 * Update the given fields of a project and keep the rest. The cached project is
+	 * shared, so the changes are made to a copy, as ProjectsApp does. Only the
+	 * fields whose values change are written. If another thread changes the
+	 * project between the read and the update, the update fails with a conflict.
+	 */
+	private int update(Integer projectId, Map<String, String> fields, long n, boolean verbose) {
+		Project project = projectService.fetchProjectById(projectId).copy();
+		apply(project, fields, n);
+
+		projectService.modifyProjectDetails(project);
+
+		if (verbose) {
+			System.out.println("Updated project " + projectId);
+		}
+
+		return 1;
+	}
+
+	// set the project fields given as name=value, with the same checks as the menu
+	private static void apply(Project project, Map<String, String> fields, long n) {
+		for (Map.Entry<String, String> field : fields.entrySet()) {
+			String value = field.getValue().replace("{n}", Long.toString(n));
+
+			switch (field.getKey()) {
+			case "name":
+				project.setProjectName(value);
+				break;
+			case "estimated":
+				project.setEstimatedHours(decimal(value));
+				break;
+			case "actual":
+				project.setActualHours(decimal(value));
+				break;
+			case "difficulty":
+				project.setDifficulty(integer(value));
+				break;
+			case "notes":
+				project.setNotes(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown field " + field.getKey());
+			}
+		}
+
+		Integer difficulty = project.getDifficulty();
+
+		if (Objects.isNull(difficulty) || difficulty < 1 || difficulty > 5) {
+			throw new IllegalArgumentException("The difficulty level needs to be between 1 and 5.");
+		}
+	}
+
+	// a project ID, or "random"
+	private Integer projectId(String id) {
+		return "random".equals(id) ? randomProjectId(false) : integer(id);
+	}
+
+	/*
+	 * Pick one of the projects added by this script. A project picked for deletion
+	 * is removed, so no other worker picks it.
+	 */
+	private Integer randomProjectId(boolean remove) {
+		synchronized (addedIds) {
+			if (addedIds.isEmpty()) {
+				throw new IllegalArgumentException("There are no projects added by this script");
+			}
+
+			int index = ThreadLocalRandom.current().nextInt(addedIds.size());
+			Integer projectId = addedIds.get(index);
+
+			if (remove) {
+				addedIds.set(index, addedIds.get(addedIds.size() - 1));
+				addedIds.remove(addedIds.size() - 1);
+			}
+
+			return projectId;
+		}
+	}
+
+	private static Map<String, String> fields(List<String> words, int from) {
+		Map<String, String> fields = new LinkedHashMap<>();
+
+		for (String word : words.subList(Math.min(from, words.size()), words.size())) {
+			int equals = word.indexOf('=');
+
+			if (equals < 1) {
+				throw new IllegalArgumentException("Expected name=value, not " + word);
+			}
+
+			fields.put(word.substring(0, equals), word.substring(equals + 1));
+		}
+
+		return fields;
+	}
+
+	private static String argument(List<String> words, int index) {
+		if (index >= words.size()) {
+			throw new IllegalArgumentException(words.get(0) + " needs a project ID");
+		}
+
+		return words.get(index);
+	}
+
+	private static int positive(List<String> words, int index) {
+		int value = integer(argument(words, index));
+
+		if (value < 1) {
+			throw new IllegalArgumentException(words.get(0) + " needs a positive number");
+		}
+
+		return value;
+	}
+
+	private static Integer integer(String value) {
+		try {
+			return Integer.valueOf(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(value + " is not a valid number.");
+		}
+	}
+
+	private static BigDecimal decimal(String value) {
+		try {
+			return new BigDecimal(value).setScale(2);
+		} catch (NumberFormatException | ArithmeticException e) {
+			throw new IllegalArgumentException(value + " is not a valid decimal number.");
+		}
+	}
+
+	/*
+	 * Split a command into words. Whitespace separates words except inside double
+	 * quotes, which are removed. A doubled quote inside quotes is a quote.
+	 */
+	static List<String> tokenize(String command) {
+		List<String> words = new ArrayList<>();
+		StringBuilder word = new StringBuilder();
+		boolean quoted = false;
+		boolean inWord = false;
+
+		for (int index = 0; index < command.length(); index++) {
+			char ch = command.charAt(index);
+
+			if (ch == '"') {
+				if (quoted && index + 1 < command.length() && command.charAt(index + 1) == '"') {
+					word.append('"');
+					index++;
+				} else {
+					quoted = !quoted;
+				}
+
+				inWord = true;
+			} else if (Character.isWhitespace(ch) && !quoted) {
+				if (inWord) {
+					words.add(word.toString());
+					word.setLength(0);
+					inWord = false;
+				}
+			} else {
+				word.append(ch);
+				inWord = true;
+			}
+		}
+
+		if (quoted) {
+			throw new IllegalArgumentException("Unclosed quote");
+		}
+
+		if (inWord) {
+			words.add(word.toString());
+		}
+
+		return words;
+	}
+
+	private void printSummary(long totalNanos) {
+		System.out.println();
+		System.out.println(String.format("%-8s %9s %7s %10s %9s %9s %9s %9s %9s", "command", "calls", "errors",
+				"ops/s", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+
+		for (OperationStats operation : stats.values()) {
+			double seconds = elapsedNanos.get(operation.getName()).get() / 1e9;
+
+			System.out.println(String.format("%-8s %9d %7d %10.1f %9.3f %9.3f %9.3f %9.3f %9.3f", operation.getName(),
+					operation.getCount(), operation.getErrorCount(),
+					seconds == 0 ? 0.0 : operation.getCount() / seconds, operation.getMeanMillis(),
+					operation.getP50Millis(), operation.getP95Millis(), operation.getP99Millis(),
+					operation.getMaxMillis()));
+		}
+
+		System.out.println(String.format("Total time %.2f s", totalNanos / 1e9));
+	}
+}
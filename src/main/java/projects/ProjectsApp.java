@@ -5,14 +5,18 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Scanner;
 
+import projects.dao.DbConnection;
+import projects.dao.SchemaMigrator;
 import projects.entity.Project;
+import projects.exception.ConflictException;
 import projects.exception.DbException;
 import projects.service.ProjectService;
 
-//import projects.dao.DbConnection;
-
 public class ProjectsApp {
 
+	// the most search results shown
+	private static final int SEARCH_LIMIT = 20;
+
 	private ProjectService projectService = new ProjectService();
 	private Project curProject;
 
@@ -23,7 +27,8 @@ public class ProjectsApp {
 			"2) List projects",
 			"3) Select a project",
 			"4) Update project details",
-			"5) Delete a project"
+			"5) Delete a project",
+			"6) Search projects"
 			);
 	// @formatter:on
 
@@ -33,8 +38,33 @@ public class ProjectsApp {
 	public static void main(String[] args) {
 		// DbConnection.getConnection();
 
-		// create a method that processes the menu
-		new ProjectsApp().processUserSelections();
+		// bring the schema up to date unless -Dprojects.migrate=false
+		if (Boolean.parseBoolean(System.getProperty("projects.migrate", "true"))) {
+			new SchemaMigrator(DbConnection.getDataSource()).migrate();
+		}
+
+		boolean ok = true;
+
+		try {
+			if (args.length > 0) {
+				// run the commands given on the command line instead of the menu. See
+				// BatchRunner
+				ok = new BatchRunner(new ProjectService()).run(BatchRunner.readCommands(args));
+			} else {
+				// create a method that processes the menu
+				new ProjectsApp().processUserSelections();
+			}
+		} catch (RuntimeException e) {
+			System.out.println(e.getMessage());
+			ok = false;
+		} finally {
+			// release the pooled connections before exiting
+			DbConnection.close();
+		}
+
+		if (!ok) {
+			System.exit(1);
+		}
 	}
 
 	// process the menu method
@@ -65,6 +95,9 @@ public class ProjectsApp {
 				case 5:
 					deleteProject();
 					break;
+				case 6:
+					searchProjects();
+					break;
 				default:
 					System.out.println("\n" + selection + " is not a valid selection. Try again.");
 					break;
@@ -76,6 +109,24 @@ public class ProjectsApp {
 		}
 	}
 
+	private void searchProjects() {
+		String query = getStringInput("Enter words to search for");
+
+		if (Objects.isNull(query)) {
+			return;
+		}
+
+		// the search returns IDs, best match first. Load the matches to show their
+		// names
+		List<Integer> projectIds = projectService.searchProjects(query, SEARCH_LIMIT);
+
+		System.out.println("\nMatching projects:");
+
+		for (Project project : projectService.fetchProjectsByIds(projectIds)) {
+			System.out.println("   " + project.getProjectId() + ": " + project.getProjectName());
+		}
+	}
+
 	private void deleteProject() {
 		// list available projects
 		listProjects();
@@ -112,30 +163,46 @@ public class ProjectsApp {
 		String notes = getStringInput("Enter notes for the project [" + curProject.getNotes() + "]");
 
 		/*
-		 * Create a new Project object. If the user input is not null, add the value to
-		 * the Project object. If the value is null, add the value from the curProject.
-		 * Repeat for all fields.
+		 * Copy curProject, because it may be shared through the cache. If the user
+		 * input is not null, set the value in the copy. The copy records which
+		 * fields really changed, so only those are saved, and nothing is saved if
+		 * none did. The copy keeps the version of curProject, so the changes are only
+		 * saved if nobody else has changed the project since it was read.
 		 */
-		Project project = new Project();
-		project.setProjectName(Objects.isNull(projectName) ? curProject.getProjectName() : projectName);
-		project.setEstimatedHours(Objects.isNull(estimatedHours) ? curProject.getEstimatedHours() : estimatedHours);
-		project.setActualHours(Objects.isNull(actualHours) ? curProject.getActualHours() : actualHours);
-		project.setDifficulty(Objects.isNull(difficulty) ? curProject.getDifficulty() : difficulty);
-		project.setNotes(Objects.isNull(notes) ? curProject.getNotes() : notes);
+		Project project = curProject.copy();
 
-		// set the project ID field in the Project object to the value in the curProject
-		// object
-		project.setProjectId(curProject.getProjectId());
+		if (Objects.nonNull(projectName)) {
+			project.setProjectName(projectName);
+		}
+
+		if (Objects.nonNull(estimatedHours)) {
+			project.setEstimatedHours(estimatedHours);
+		}
+
+		if (Objects.nonNull(actualHours)) {
+			project.setActualHours(actualHours);
+		}
+
+		if (Objects.nonNull(difficulty)) {
+			project.setDifficulty(difficulty);
+		}
+
+		if (Objects.nonNull(notes)) {
+			project.setNotes(notes);
+		}
 
 		/*
 		 * Call the projectService.modifyProjectDetails() and pass the Project object as
-		 * a parameter Reread the current project to pick up the changes by calling
-		 * projectService.fetchProjectById(). Pass the project ID obtained from
-		 * curProject.
+		 * a parameter. It returns the saved project, so curProject is brought up to
+		 * date without reading it again. If someone else changed the project first,
+		 * reread it so the user can see their changes and try again.
 		 */
-		projectService.modifyProjectDetails(project);
-		curProject = projectService.fetchProjectById(curProject.getProjectId());
-
+		try {
+			curProject = projectService.modifyProjectDetails(project);
+		} catch (ConflictException e) {
+			curProject = projectService.fetchProjectById(curProject.getProjectId());
+			throw e;
+		}
 	}
 
 	private void selectProject() {
@@ -165,11 +232,11 @@ public class ProjectsApp {
 	}
 
 	private void listProjects() {
-		List<Project> projects = projectService.fetchAllProjects();
 		System.out.println("\nProjects:");
 
-		// for each project, print the ID and name of each project in projects
-		projects.forEach(
+		// print the ID and name of each project as it is read. The projects are
+		// streamed, so they are never all held in memory at once
+		projectService.forEachProject(
 				project -> System.out.println("   " + project.getProjectId() + ": " + project.getProjectName()));
 	}
 
@@ -0,0 +1,60 @@
+package projects.analytics;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/*
+ * The count, sum, minimum, and maximum of a fixed-point column over a set of
+ * rows. Values are in hundredths (hours * 100 or cents), so the sums are
+ * exact. Rows where the value is unknown are not counted.
+ */
+public class Aggregate {
+
+	private long count;
+	private long sum;
+	private long min = Long.MAX_VALUE;
+	private long max = Long.MIN_VALUE;
+
+	void add(long value) {
+		count++;
+		sum += value;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	// combine a partial result from another thread into this one
+	Aggregate merge(Aggregate other) {
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		return this;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public BigDecimal getSum() {
+		return BigDecimal.valueOf(sum, 2);
+	}
+
+	// null if no rows were counted
+	public BigDecimal getMin() {
+		return count == 0 ? null : BigDecimal.valueOf(min, 2);
+	}
+
+	public BigDecimal getMax() {
+		return count == 0 ? null : BigDecimal.valueOf(max, 2);
+	}
+
+	public BigDecimal getAverage() {
+		return count == 0 ? null : BigDecimal.valueOf(sum, 2).divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + count + ", sum=" + getSum() + ", min=" + getMin() + ", max=" + getMax() + ", average="
+				+ getAverage();
+	}
+}
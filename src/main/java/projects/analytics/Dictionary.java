@@ -0,0 +1,52 @@
+package projects.analytics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * This encodes strings as small ints. Each distinct string is stored once and
+ * a column holds its code, so a name column costs four bytes a row, and a
+ * predicate on names can be evaluated once per distinct name instead of once
+ * per row. Code 0 is null.
+ */
+final class Dictionary {
+
+	static final int NULL_CODE = 0;
+
+	private final Map<String, Integer> codes = new HashMap<>();
+	private String[] values = new String[16];
+	private int size = 1;
+
+	Dictionary() {
+	}
+
+	int encode(String value) {
+		if (value == null) {
+			return NULL_CODE;
+		}
+
+		Integer code = codes.get(value);
+
+		if (code != null) {
+			return code;
+		}
+
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+		}
+
+		values[size] = value;
+		codes.put(value, size);
+		return size++;
+	}
+
+	String decode(int code) {
+		return values[code];
+	}
+
+	// the number of codes, including the null code
+	int size() {
+		return size;
+	}
+}
@@ -0,0 +1,9 @@
+package projects.analytics;
+
+/*
+ * The fixed-point columns of a ProjectSnapshot that can be aggregated. Hours
+ * are in hundredths of an hour and costs are in cents.
+ */
+public enum Measure {
+	ESTIMATED_HOURS, ACTUAL_HOURS, HOURS_VARIANCE, MATERIAL_COST
+}
@@ -0,0 +1,508 @@
+package projects.analytics;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
+import java.util.function.IntPredicate;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import projects.entity.Material;
+import projects.entity.Project;
+
+/*
+ * This is a read-only, column-oriented copy of the project and material tables
+ * for reporting. Each column is a primitive array indexed by row, so a scan
+ * reads consecutive memory instead of following a list of Project objects and
+ * unboxing Integers and BigDecimals:
+ *
+ * - project IDs and difficulty are ints (difficulty 0 means unknown)
+ * - hours and costs are longs in hundredths, so sums are exact (NULL_VALUE
+ *   means unknown)
+ * - project and material names are dictionary codes (see Dictionary)
+ *
+ * Rows are selected with IntPredicates over the row index, built with the
+ * methods below and combined with and()/or(). The operators split the rows
+ * into chunks and run them on the common fork/join pool, then merge the
+ * partial results.
+ *
+ * A snapshot never changes. refresh() returns a new snapshot with some
+ * projects reloaded, which is cheaper than loading everything again because
+ * the other rows are copied from this one.
+ */
+public final class ProjectSnapshot {
+
+	// the value stored for an unknown hours or cost figure
+	public static final long NULL_VALUE = Long.MIN_VALUE;
+
+	// below this many rows a scan runs on the calling thread
+	private static final int PARALLEL_THRESHOLD = 16_384;
+	private static final int CHUNKS_PER_CORE = 4;
+
+	private final long loadedAt = System.currentTimeMillis();
+
+	// project columns
+	private final int size;
+	private final int[] projectIds;
+	private final int[] nameCodes;
+	private final int[] difficulties;
+	private final long[] estimatedHours;
+	private final long[] actualHours;
+	private final long[] hoursVariance;
+	private final long[] materialCost;
+	private final int[] materialCounts;
+	private final Map<Integer, Integer> rowsById;
+	private final Dictionary names;
+
+	// material columns
+	private final int materialRows;
+	private final int[] materialProjectRows;
+	private final int[] materialNameCodes;
+	private final int[] numRequired;
+	private final long[] materialCosts;
+	private final Dictionary materialNames;
+
+	private ProjectSnapshot(Builder builder) {
+		size = builder.size;
+		projectIds = Arrays.copyOf(builder.projectIds, size);
+		nameCodes = Arrays.copyOf(builder.nameCodes, size);
+		difficulties = Arrays.copyOf(builder.difficulties, size);
+		estimatedHours = Arrays.copyOf(builder.estimatedHours, size);
+		actualHours = Arrays.copyOf(builder.actualHours, size);
+		rowsById = builder.rowsById;
+		names = builder.names;
+
+		materialRows = builder.materialRows;
+		materialProjectRows = Arrays.copyOf(builder.materialProjectRows, materialRows);
+		materialNameCodes = Arrays.copyOf(builder.materialNameCodes, materialRows);
+		numRequired = Arrays.copyOf(builder.numRequired, materialRows);
+		materialCosts = Arrays.copyOf(builder.materialCosts, materialRows);
+		materialNames = builder.materialNames;
+
+		// the derived columns
+		hoursVariance = new long[size];
+		materialCost = new long[size];
+		materialCounts = new int[size];
+
+		for (int row = 0; row < size; row++) {
+			boolean known = estimatedHours[row] != NULL_VALUE && actualHours[row] != NULL_VALUE;
+			hoursVariance[row] = known ? actualHours[row] - estimatedHours[row] : NULL_VALUE;
+		}
+
+		for (int material = 0; material < materialRows; material++) {
+			int row = materialProjectRows[material];
+			materialCounts[row]++;
+
+			if (materialCosts[material] != NULL_VALUE) {
+				materialCost[row] += materialCosts[material];
+			}
+		}
+	}
+
+	/*
+	 * Build a snapshot from fully loaded projects (materials are used, steps and
+	 * categories are not).
+	 */
+	public static ProjectSnapshot of(Collection<Project> projects) {
+		Builder builder = new Builder();
+
+		for (Project project : projects) {
+			builder.addProject(project);
+			project.getMaterials().forEach(builder::addMaterial);
+		}
+
+		return builder.build();
+	}
+
+	/*
+	 * Return a snapshot in which the given projects are replaced by the reloaded
+	 * copies. A changed ID without a reloaded project has been deleted. Every
+	 * other row is copied from this snapshot. The names are encoded into new
+	 * dictionaries, so names that were changed or deleted are dropped.
+	 */
+	public ProjectSnapshot refresh(Set<Integer> changedIds, Collection<Project> reloaded) {
+		Builder builder = new Builder(this);
+		int[] newRows = new int[size];
+
+		for (int row = 0; row < size; row++) {
+			newRows[row] = changedIds.contains(projectIds[row]) ? -1 : builder.copyProject(this, row);
+		}
+
+		for (int material = 0; material < materialRows; material++) {
+			int newRow = newRows[materialProjectRows[material]];
+
+			if (newRow >= 0) {
+				builder.copyMaterial(this, material, newRow);
+			}
+		}
+
+		for (Project project : reloaded) {
+			builder.addProject(project);
+			project.getMaterials().forEach(builder::addMaterial);
+		}
+
+		return builder.build();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getMaterialRows() {
+		return materialRows;
+	}
+
+	// System.currentTimeMillis() when the snapshot was built
+	public long getLoadedAt() {
+		return loadedAt;
+	}
+
+	// the distinct project names held by the snapshot, whether or not a row uses them
+	int getNameCount() {
+		return names.size() - 1;
+	}
+
+	// the distinct material names held by the snapshot, whether or not a row uses them
+	int getMaterialNameCount() {
+		return materialNames.size() - 1;
+	}
+
+	public int getProjectId(int row) {
+		return projectIds[row];
+	}
+
+	public String getProjectName(int row) {
+		return names.decode(nameCodes[row]);
+	}
+
+	public int getDifficulty(int row) {
+		return difficulties[row];
+	}
+
+	public int getMaterialCount(int row) {
+		return materialCounts[row];
+	}
+
+	/*
+	 * The value of a measure for a row, in hundredths, or NULL_VALUE.
+	 */
+	public long getValue(Measure measure, int row) {
+		return column(measure)[row];
+	}
+
+	// the row of a project, or -1 if it is not in the snapshot
+	public int rowOf(Integer projectId) {
+		return rowsById.getOrDefault(projectId, -1);
+	}
+
+	public IntPredicate all() {
+		return row -> true;
+	}
+
+	public IntPredicate difficultyBetween(int min, int max) {
+		int[] column = difficulties;
+		return row -> column[row] >= min && column[row] <= max;
+	}
+
+	/*
+	 * Rows whose project name contains the text, ignoring case. The text is
+	 * matched once per distinct name, not once per row.
+	 */
+	public IntPredicate nameContains(String text) {
+		String lower = text.toLowerCase(Locale.ROOT);
+		boolean[] matches = new boolean[names.size()];
+
+		for (int code = 1; code < matches.length; code++) {
+			matches[code] = names.decode(code).toLowerCase(Locale.ROOT).contains(lower);
+		}
+
+		int[] column = nameCodes;
+		return row -> matches[column[row]];
+	}
+
+	// rows where the measure is known and at least the given amount
+	public IntPredicate atLeast(Measure measure, BigDecimal amount) {
+		long[] column = column(measure);
+		long threshold = toHundredths(amount);
+		return row -> column[row] != NULL_VALUE && column[row] >= threshold;
+	}
+
+	/*
+	 * Return the rows that pass the filter, in row order.
+	 */
+	public int[] select(IntPredicate filter) {
+		IntStream rows = IntStream.range(0, size);
+		return (size < PARALLEL_THRESHOLD ? rows : rows.parallel()).filter(filter).toArray();
+	}
+
+	public int count(IntPredicate filter) {
+		return scan(size, () -> new int[1], (count, row) -> {
+			if (filter.test(row)) {
+				count[0]++;
+			}
+		}, (a, b) -> {
+			a[0] += b[0];
+			return a;
+		})[0];
+	}
+
+	/*
+	 * Aggregate a measure over the rows that pass the filter.
+	 */
+	public Aggregate aggregate(Measure measure, IntPredicate filter) {
+		long[] column = column(measure);
+
+		return scan(size, Aggregate::new, (aggregate, row) -> {
+			if (column[row] != NULL_VALUE && filter.test(row)) {
+				aggregate.add(column[row]);
+			}
+		}, Aggregate::merge);
+	}
+
+	/*
+	 * Aggregate a measure over the rows that pass the filter, grouped by
+	 * difficulty. Group 0 holds the projects with no difficulty. Empty groups are
+	 * left out.
+	 */
+	public Map<Integer, Aggregate> aggregateByDifficulty(Measure measure, IntPredicate filter) {
+		long[] column = column(measure);
+		int groups = Arrays.stream(difficulties).max().orElse(0) + 1;
+
+		Aggregate[] result = scan(size, () -> newAggregates(groups), (aggregates, row) -> {
+			int difficulty = difficulties[row];
+
+			if (difficulty >= 0 && column[row] != NULL_VALUE && filter.test(row)) {
+				aggregates[difficulty].add(column[row]);
+			}
+		}, ProjectSnapshot::merge);
+
+		Map<Integer, Aggregate> byDifficulty = new TreeMap<>();
+
+		for (int difficulty = 0; difficulty < groups; difficulty++) {
+			if (result[difficulty].getCount() > 0) {
+				byDifficulty.put(difficulty, result[difficulty]);
+			}
+		}
+
+		return byDifficulty;
+	}
+
+	/*
+	 * Aggregate the cost (num_required * cost) of the materials of the projects
+	 * that pass the filter, grouped by material name, highest total first.
+	 */
+	public Map<String, Aggregate> materialCostByName(IntPredicate projectFilter) {
+		int groups = materialNames.size();
+
+		Aggregate[] result = scan(materialRows, () -> newAggregates(groups), (aggregates, material) -> {
+			if (materialCosts[material] != NULL_VALUE && projectFilter.test(materialProjectRows[material])) {
+				aggregates[materialNameCodes[material]].add(materialCosts[material]);
+			}
+		}, ProjectSnapshot::merge);
+
+		return IntStream.range(1, groups).filter(code -> result[code].getCount() > 0).boxed()
+				.sorted(Comparator.comparing((Integer code) -> result[code].getSum()).reversed())
+				.collect(Collectors.toMap(materialNames::decode, code -> result[code], (a, b) -> a, LinkedHashMap::new));
+	}
+
+	private long[] column(Measure measure) {
+		switch (measure) {
+		case ESTIMATED_HOURS:
+			return estimatedHours;
+		case ACTUAL_HOURS:
+			return actualHours;
+		case HOURS_VARIANCE:
+			return hoursVariance;
+		case MATERIAL_COST:
+			return materialCost;
+		default:
+			throw new IllegalArgumentException("Unknown measure " + measure);
+		}
+	}
+
+	/*
+	 * Run accumulate over rows 0 to rows - 1. Large scans are split into chunks
+	 * that run in parallel, each into its own partial result, and the partial
+	 * results are merged.
+	 */
+	private static <A> A scan(int rows, Supplier<A> partial, ObjIntConsumer<A> accumulate, BinaryOperator<A> merge) {
+		int chunks = rows < PARALLEL_THRESHOLD ? 1 : Runtime.getRuntime().availableProcessors() * CHUNKS_PER_CORE;
+
+		IntStream range = IntStream.range(0, chunks);
+
+		return (chunks == 1 ? range : range.parallel()).mapToObj(chunk -> {
+			A result = partial.get();
+			int to = (int) ((long) rows * (chunk + 1) / chunks);
+
+			for (int row = (int) ((long) rows * chunk / chunks); row < to; row++) {
+				accumulate.accept(result, row);
+			}
+
+			return result;
+		}).reduce(merge).orElseGet(partial);
+	}
+
+	private static Aggregate[] newAggregates(int groups) {
+		Aggregate[] aggregates = new Aggregate[groups];
+		Arrays.setAll(aggregates, group -> new Aggregate());
+		return aggregates;
+	}
+
+	private static Aggregate[] merge(Aggregate[] a, Aggregate[] b) {
+		for (int group = 0; group < a.length; group++) {
+			a[group].merge(b[group]);
+		}
+
+		return a;
+	}
+
+	private static long toHundredths(BigDecimal value) {
+		return Objects.isNull(value) ? NULL_VALUE : value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+	}
+
+	/*
+	 * Collects rows for a snapshot. Add each project before its materials;
+	 * materials of projects that were not added are skipped.
+	 */
+	public static class Builder {
+		private final Dictionary names;
+		private final Dictionary materialNames;
+		private final Map<Integer, Integer> rowsById = new HashMap<>();
+
+		private int size;
+		private int[] projectIds = new int[64];
+		private int[] nameCodes = new int[64];
+		private int[] difficulties = new int[64];
+		private long[] estimatedHours = new long[64];
+		private long[] actualHours = new long[64];
+
+		private int materialRows;
+		private int[] materialProjectRows = new int[64];
+		private int[] materialNameCodes = new int[64];
+		private int[] numRequired = new int[64];
+		private long[] materialCosts = new long[64];
+
+		// the code in this builder's dictionaries of each code of the snapshot rows
+		// are copied from, or 0 if that name hasn't been copied yet. Only names that
+		// are still used get a code, and each is looked up once, not once per row
+		private int[] nameRecodes = new int[0];
+		private int[] materialNameRecodes = new int[0];
+
+		public Builder() {
+			this.names = new Dictionary();
+			this.materialNames = new Dictionary();
+		}
+
+		// a builder that rows of an existing snapshot can be copied into
+		private Builder(ProjectSnapshot from) {
+			this();
+			nameRecodes = new int[from.names.size()];
+			materialNameRecodes = new int[from.materialNames.size()];
+		}
+
+		public Builder addProject(Project project) {
+			int row = nextRow();
+
+			projectIds[row] = project.getProjectId();
+			nameCodes[row] = names.encode(project.getProjectName());
+			difficulties[row] = Objects.isNull(project.getDifficulty()) ? 0 : project.getDifficulty();
+			estimatedHours[row] = toHundredths(project.getEstimatedHours());
+			actualHours[row] = toHundredths(project.getActualHours());
+			rowsById.put(project.getProjectId(), row);
+
+			return this;
+		}
+
+		public Builder addMaterial(Material material) {
+			Integer row = rowsById.get(material.getProjectId());
+
+			if (Objects.isNull(row)) {
+				return this;
+			}
+
+			int index = nextMaterialRow();
+			boolean known = Objects.nonNull(material.getNumRequired()) && Objects.nonNull(material.getCost());
+
+			materialProjectRows[index] = row;
+			materialNameCodes[index] = materialNames.encode(material.getMaterialName());
+			numRequired[index] = Objects.isNull(material.getNumRequired()) ? 0 : material.getNumRequired();
+			materialCosts[index] = known
+					? toHundredths(material.getCost().multiply(BigDecimal.valueOf(material.getNumRequired())))
+					: NULL_VALUE;
+
+			return this;
+		}
+
+		public ProjectSnapshot build() {
+			return new ProjectSnapshot(this);
+		}
+
+		private int copyProject(ProjectSnapshot from, int fromRow) {
+			int row = nextRow();
+
+			projectIds[row] = from.projectIds[fromRow];
+			nameCodes[row] = recode(from.names, from.nameCodes[fromRow], nameRecodes, names);
+			difficulties[row] = from.difficulties[fromRow];
+			estimatedHours[row] = from.estimatedHours[fromRow];
+			actualHours[row] = from.actualHours[fromRow];
+			rowsById.put(projectIds[row], row);
+
+			return row;
+		}
+
+		private void copyMaterial(ProjectSnapshot from, int fromIndex, int projectRow) {
+			int index = nextMaterialRow();
+
+			materialProjectRows[index] = projectRow;
+			materialNameCodes[index] = recode(from.materialNames, from.materialNameCodes[fromIndex],
+					materialNameRecodes, materialNames);
+			numRequired[index] = from.numRequired[fromIndex];
+			materialCosts[index] = from.materialCosts[fromIndex];
+		}
+
+		private static int recode(Dictionary from, int code, int[] recodes, Dictionary to) {
+			if (code != Dictionary.NULL_CODE && recodes[code] == 0) {
+				recodes[code] = to.encode(from.decode(code));
+			}
+
+			return recodes[code];
+		}
+
+		private int nextRow() {
+			if (size == projectIds.length) {
+				int capacity = size * 2;
+				projectIds = Arrays.copyOf(projectIds, capacity);
+				nameCodes = Arrays.copyOf(nameCodes, capacity);
+				difficulties = Arrays.copyOf(difficulties, capacity);
+				estimatedHours = Arrays.copyOf(estimatedHours, capacity);
+				actualHours = Arrays.copyOf(actualHours, capacity);
+			}
+
+			return size++;
+		}
+
+		private int nextMaterialRow() {
+			if (materialRows == materialProjectRows.length) {
+				int capacity = materialRows * 2;
+				materialProjectRows = Arrays.copyOf(materialProjectRows, capacity);
+				materialNameCodes = Arrays.copyOf(materialNameCodes, capacity);
+				numRequired = Arrays.copyOf(numRequired, capacity);
+				materialCosts = Arrays.copyOf(materialCosts, capacity);
+			}
+
+			return materialRows++;
+		}
+	}
+}
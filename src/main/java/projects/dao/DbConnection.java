@@ -1,11 +1,34 @@
 package projects.dao;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Objects;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 
 import projects.exception.DbException;
+import projects.metrics.Metrics;
+import projects.metrics.Metrics.Operation;
 
+/*
+ * This class hands out connections to the projects schema. Connections come
+ * from a pool so that the TCP handshake, authentication and session setup are
+ * paid once per pooled connection instead of once per DAO call. Closing a
+ * pooled connection returns it to the pool.
+ *
+ * The pool can be tuned with system properties, for example
+ * -Dprojects.pool.maxSize=20. See the POOL_* constants for the defaults.
+ *
+ * Reads and writes can be split. Writes always use getConnection(), which is
+ * the primary server. Reads use getReadConnection(), which is a second pool on
+ * a replica when -Dprojects.replica.host is set, and the primary otherwise.
+ * Because a replica lags behind the primary, reads can be sent to the primary
+ * for a short time after any write (-Dprojects.replica.readYourWritesMs), so
+ * that a caller reading back what it just wrote sees it.
+ */
 public class DbConnection {
 
 	private static String HOST = "localhost";
@@ -13,24 +36,207 @@ public class DbConnection {
 	private static int PORT = 3306;
 	private static String SCHEMA = "projects";
 	private static String USER = "projects";
-	
+
+	// the read replica, if there is one
+	private static final String REPLICA_HOST = System.getProperty("projects.replica.host");
+	private static final int REPLICA_PORT = Integer.getInteger("projects.replica.port", PORT);
+	private static final long READ_YOUR_WRITES_NANOS = Long.getLong("projects.replica.readYourWritesMs", 0L)
+			* 1_000_000L;
+
+	// pool settings (system property name, default value)
+	private static final int POOL_MIN_IDLE = Integer.getInteger("projects.pool.minIdle", 2);
+	private static final int POOL_MAX_SIZE = Integer.getInteger("projects.pool.maxSize", 10);
+	private static final long POOL_IDLE_TIMEOUT_MS = Long.getLong("projects.pool.idleTimeoutMs", 600_000L);
+	private static final long POOL_MAX_LIFETIME_MS = Long.getLong("projects.pool.maxLifetimeMs", 1_800_000L);
+	private static final long POOL_CONNECTION_TIMEOUT_MS = Long.getLong("projects.pool.connectionTimeoutMs",
+			30_000L);
+	private static final long POOL_VALIDATION_TIMEOUT_MS = Long.getLong("projects.pool.validationTimeoutMs",
+			5_000L);
+	private static final long POOL_LEAK_DETECTION_MS = Long.getLong("projects.pool.leakDetectionMs", 60_000L);
+
+	// prepared statements cached per connection, and the longest SQL cached
+	private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("projects.statementCache.size", 250);
+	private static final int STATEMENT_CACHE_SQL_LIMIT = Integer.getInteger("projects.statementCache.sqlLimit",
+			2048);
+
+	// how long callers wait to borrow a connection
+	private static final Operation GET_CONNECTION_OP = Metrics.operation("DbConnection.getConnection");
+	private static final Operation GET_READ_CONNECTION_OP = Metrics.operation("DbConnection.getReadConnection");
+
+	// the pools are created the first time a connection is needed
+	private static volatile HikariDataSource pool;
+	private static volatile HikariDataSource replicaPool;
+
+	// System.nanoTime() of the last committed write, for read-your-writes
+	private static volatile long lastWriteNanos = System.nanoTime() - Long.MAX_VALUE / 2;
+
+	/*
+	 * Build the MySQL connection URI.
+	 *
+	 * - allowMultiQueries lets a DAO send several statements (and get several
+	 *   result sets back) in one round trip.
+	 * - rewriteBatchedStatements turns JDBC insert batches into multi-row INSERTs.
+	 * - useCursorFetch makes statements with a fetch size read through a
+	 *   server-side cursor instead of loading the whole result into memory.
+	 * - useServerPrepStmts has MySQL parse each statement once and then only
+	 *   execute it. cachePrepStmts keeps the prepared statements of each pooled
+	 *   connection open, keyed by SQL text, so preparing the same statement again
+	 *   is a cache hit rather than another parse.
+	 */
+	static String getUri() {
+		return getUri(HOST, PORT);
+	}
+
+	private static String getUri(String host, int port) {
+		return String.format("jdbc:mysql://%s:%d/%s?user=%s&password=%s&useSSL=false&allowMultiQueries=true"
+				+ "&rewriteBatchedStatements=true&useCursorFetch=true&useServerPrepStmts=true&cachePrepStmts=true"
+				+ "&prepStmtCacheSize=%d&prepStmtCacheSqlLimit=%d", host, port, SCHEMA, USER, PASSWORD,
+				STATEMENT_CACHE_SIZE, STATEMENT_CACHE_SQL_LIMIT);
+	}
+
+	private static HikariDataSource getPool() {
+		HikariDataSource result = pool;
+
+		if (result == null) {
+			synchronized (DbConnection.class) {
+				result = pool;
+
+				if (result == null) {
+					pool = result = createPool("projects", getUri(), false);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	// returns the primary pool if no replica is configured
+	private static HikariDataSource getReplicaPool() {
+		if (Objects.isNull(REPLICA_HOST)) {
+			return getPool();
+		}
+
+		HikariDataSource result = replicaPool;
+
+		if (result == null) {
+			synchronized (DbConnection.class) {
+				result = replicaPool;
+
+				if (result == null) {
+					replicaPool = result = createPool("projects-replica", getUri(REPLICA_HOST, REPLICA_PORT), true);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private static HikariDataSource createPool(String name, String uri, boolean readOnly) {
+		HikariConfig config = new HikariConfig();
+
+		config.setPoolName(name);
+		config.setJdbcUrl(uri);
+		config.setReadOnly(readOnly);
+		config.setMinimumIdle(POOL_MIN_IDLE);
+		config.setMaximumPoolSize(POOL_MAX_SIZE);
+
+		// idle connections above minIdle are evicted after this long
+		config.setIdleTimeout(POOL_IDLE_TIMEOUT_MS);
+		config.setMaxLifetime(POOL_MAX_LIFETIME_MS);
+		config.setConnectionTimeout(POOL_CONNECTION_TIMEOUT_MS);
+
+		// connections are validated with Connection.isValid() (a MySQL ping) before
+		// they are handed out if they have been idle
+		config.setValidationTimeout(POOL_VALIDATION_TIMEOUT_MS);
+
+		// log a warning with the stack trace of any caller that holds a connection
+		// longer than this without closing it
+		config.setLeakDetectionThreshold(POOL_LEAK_DETECTION_MS);
+
+		try {
+			return new HikariDataSource(config);
+		} catch (RuntimeException e) {
+			throw new DbException("Unable to create the connection pool", e);
+		}
+	}
+
+	/*
+	 * Return the pooled DataSource for the primary server. Use this when a
+	 * component needs a DataSource rather than a single connection.
+	 */
+	public static DataSource getDataSource() {
+		return getPool();
+	}
+
+	/*
+	 * Return the pooled DataSource used for reads: the replica if one is
+	 * configured, otherwise the primary.
+	 */
+	public static DataSource getReadDataSource() {
+		return getReplicaPool();
+	}
+
+	/*
+	 * The maximum number of connections the pool will open. Callers that fan work
+	 * out to several threads can use this to size their concurrency.
+	 */
+	public static int getMaxPoolSize() {
+		return POOL_MAX_SIZE;
+	}
+
+	/*
+	 * Borrow a connection to the primary server. Use this for anything that
+	 * writes. Throw a DbException if the connection cannot be obtained.
+	 */
 	public static Connection getConnection() {
-		// create a string variable named URI that contains the MySQL connection URI 
-		String uri = String.format("jdbc:mysql://%s:%d/%s?user=%s&password=%s&useSSL=false", HOST, PORT, 
-				SCHEMA, USER, PASSWORD);
-		
-		// call DriverManager to obtain a connection. Pass the connection string (URL) to DriverManager.getConnection()
-		// surround the call to DriverManager.getConnection() with a try/catch block. The catch block should catch
-		// SQLException
+		return GET_CONNECTION_OP.time(() -> borrow(getPool()), conn -> 0);
+	}
+
+	/*
+	 * Borrow a connection for reading. It comes from the replica unless there is
+	 * no replica or a write was recorded within the read-your-writes window, in
+	 * which case it comes from the primary. The caller should still mark its
+	 * transaction read only.
+	 */
+	public static Connection getReadConnection() {
+		return GET_READ_CONNECTION_OP.time(() -> {
+			boolean recentWrite = System.nanoTime() - lastWriteNanos < READ_YOUR_WRITES_NANOS;
+			return borrow(recentWrite ? getPool() : getReplicaPool());
+		}, conn -> 0);
+	}
+
+	/*
+	 * Record that a write was committed on the primary. Reads made within the
+	 * read-your-writes window after this go to the primary. The window is process
+	 * wide, so any write makes every caller read from the primary for a while.
+	 */
+	public static void recordWrite() {
+		if (READ_YOUR_WRITES_NANOS > 0) {
+			lastWriteNanos = System.nanoTime();
+		}
+	}
+
+	private static Connection borrow(HikariDataSource dataSource) {
 		try {
-			Connection conn = DriverManager.getConnection(uri);
-			// print a message to the console if the connection is successful
-			System.out.println("Connection Successful!");
-			return conn;
+			return dataSource.getConnection();
 		} catch (SQLException e) {
-			// print an error message to the console if the connection fails. Throw a DbException if the connection fails
-			System.out.println("Connection failed");
 			throw new DbException(e);
 		}
 	}
+
+	/*
+	 * Close the pools and all of their connections. Call this when the
+	 * application exits.
+	 */
+	public static synchronized void close() {
+		if (replicaPool != null) {
+			replicaPool.close();
+			replicaPool = null;
+		}
+
+		if (pool != null) {
+			pool.close();
+			pool = null;
+		}
+	}
 }
@@ -1,22 +1,37 @@
 package projects.dao;
 
+import static projects.dao.ProjectSql.*;
+
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 
 import projects.entity.Category;
 import projects.entity.Material;
 import projects.entity.Project;
+import projects.entity.Project.Field;
+import projects.entity.ProjectRollup;
 import projects.entity.Step;
 import projects.exception.DbException;
+import projects.metrics.Metrics;
+import projects.metrics.Metrics.Operation;
 import provided.util.DaoBase;
+import provided.util.RowMapper;
 
 /*
  * This class will read and write to the MySQL database. This class will
@@ -26,13 +41,38 @@ import provided.util.DaoBase;
 
 public class ProjectDao extends DaoBase {
 
-	// create constants for the table names by using static final
-
-	private static final String CATEGORY_TABLE = "category";
-	private static final String MATERIAL_TABLE = "material";
-	private static final String PROJECT_TABLE = "project";
-	private static final String PROJECT_CATEGORY_TABLE = "project_category";
-	private static final String STEP_TABLE = "step";
+	// the table names and SQL statements are in the ProjectSql registry
+
+	// the number of rows sent to MySQL in one executeBatch() call
+	private static final int BATCH_SIZE = 1000;
+
+	// the most IDs put in one IN (...) list
+	private static final int IN_LIST_SIZE = 500;
+
+	// the number of rows read from a server-side cursor at a time
+	private static final int FETCH_SIZE = 500;
+
+	// latency, error, and row metrics for each public method
+	private static final Operation INSERT_PROJECT_OP = Metrics.operation("ProjectDao.insertProject");
+	private static final Operation INSERT_PROJECTS_OP = Metrics.operation("ProjectDao.insertProjects");
+	private static final Operation FETCH_ALL_PROJECTS_OP = Metrics.operation("ProjectDao.fetchAllProjects");
+	private static final Operation FOR_EACH_PROJECT_OP = Metrics.operation("ProjectDao.forEachProject");
+	private static final Operation FOR_EACH_MATERIAL_OP = Metrics.operation("ProjectDao.forEachMaterial");
+	private static final Operation EXPORT_PROJECTS_OP = Metrics.operation("ProjectDao.exportProjects");
+	private static final Operation FETCH_PROJECTS_PAGE_OP = Metrics.operation("ProjectDao.fetchProjectsPage");
+	private static final Operation FETCH_PROJECT_BY_ID_OP = Metrics.operation("ProjectDao.fetchProjectById");
+	private static final Operation FETCH_PROJECTS_BY_IDS_OP = Metrics.operation("ProjectDao.fetchProjectsByIds");
+	private static final Operation MODIFY_PROJECT_DETAILS_OP = Metrics.operation("ProjectDao.modifyProjectDetails");
+	private static final Operation DELETE_PROJECTS_OP = Metrics.operation("ProjectDao.deleteProjects");
+	private static final Operation ADD_STEP_OP = Metrics.operation("ProjectDao.addStep");
+	private static final Operation INSERT_STEP_AFTER_OP = Metrics.operation("ProjectDao.insertStepAfter");
+	private static final Operation MOVE_STEP_AFTER_OP = Metrics.operation("ProjectDao.moveStepAfter");
+	private static final Operation FETCH_PROJECT_ROLLUP_OP = Metrics.operation("ProjectDao.fetchProjectRollup");
+	private static final Operation FETCH_MOST_EXPENSIVE_PROJECTS_OP = Metrics
+			.operation("ProjectDao.fetchMostExpensiveProjects");
+
+	// hands out step_order ranks
+	private final StepRankAllocator stepRanks = new StepRankAllocator();
 
 	/*
 	 * To save the project details, first create the SQL statement. Then obtain a
@@ -42,97 +82,346 @@ public class ProjectDao extends DaoBase {
 	 */
 
 	public Project insertProject(Project project) {
-
-		/*
-		 * write the SQL statement that will insert the values from the Project object
-		 * to the insertProject() method. Use question marks as placeholder values for
-		 * the parameters passed to the PreparedStatement.
-		 */
-
-		// @formatter:off
-		String sql = ""
-				+ "INSERT INTO " + PROJECT_TABLE + " "
-				+ "(project_name, estimated_hours, actual_hours, difficulty, notes) "
-				+ "VALUES "
-				+ "(?, ?, ?, ?, ?)";
-		// @formatter:on
-
-		/*
-		 * Obtain a connection from DbConnection.getConnection(). Assign it a variable
-		 * of type connection named conn in a try-with-resource statement.
-		 * 
-		 * Start a transaction. Inside the try block, start a transaction by calling
-		 * startTransaction() and passing the Connection object. startTransaction() is a
-		 * method in the base class, DaoBase.
-		 * 
-		 * Below startTransaction,
-		 */
-		try (Connection conn = DbConnection.getConnection();) {
-			startTransaction(conn);
-
+		return INSERT_PROJECT_OP.time(() -> {
 			/*
-			 * Obtain a PreparedStatement object from the Connection object. Add another
-			 * try-with-resource statement to obtain a PreparedStatement from the Connection
-			 * object.
+			 * The SQL statement that inserts the values from the Project object is
+			 * ProjectSql.INSERT_PROJECT. It uses question marks as placeholder values for
+			 * the parameters passed to the PreparedStatement.
 			 */
 
-			// Pass the SQL statement as a parameter to conn.prepareStatement()
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			/*
+			 * Obtain a connection from DbConnection.getConnection(). Assign it a variable
+			 * of type connection named conn in a try-with-resource statement.
+			 * 
+			 * Start a transaction. Inside the try block, start a transaction by calling
+			 * startTransaction() and passing the Connection object. startTransaction() is a
+			 * method in the base class, DaoBase.
+			 * 
+			 * Below startTransaction,
+			 */
+			try (Connection conn = DbConnection.getConnection();) {
+				startTransaction(conn);
 
 				/*
-				 * Set the project details as parameters in the PreParedStatement object. Use
-				 * the convenience method in DaoBase setParameter(). This method handles null
-				 * values correctly.
+				 * Obtain a PreparedStatement object from the Connection object. Add another
+				 * try-with-resource statement to obtain a PreparedStatement from the Connection
+				 * object.
 				 */
-				setParameter(stmt, 1, project.getProjectName(), String.class);
-				setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
-				setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
-				setParameter(stmt, 4, project.getDifficulty(), Integer.class);
-				setParameter(stmt, 5, project.getNotes(), String.class);
 
-				/*
-				 * Save the project details. Perform the insert by calling executeUpdate() on
-				 * the PreparedStatment object. Do not pass any parameters to executeUpdate() or
-				 * it will reset all the parameters leading to an obscure error.
-				 */
-				stmt.executeUpdate();
+				// Pass the SQL statement as a parameter to conn.prepareStatement(). Ask the
+				// driver to return the generated project ID with the insert.
+				try (PreparedStatement stmt = conn.prepareStatement(INSERT_PROJECT, Statement.RETURN_GENERATED_KEYS)) {
 
-				/*
-				 * Obtain the project ID (primary key) by calling the convenience method in
-				 * DaoBase, getLastInsertId(). Pass the Connection object and the constant
-				 * PROJECT_TABLE to getLastInsertId().
-				 */
-				Integer projectId = getLastInsertId(conn, PROJECT_TABLE);
+					/*
+					 * Set the project details as parameters in the PreParedStatement object. Use
+					 * the convenience method in DaoBase setParameter(). This method handles null
+					 * values correctly.
+					 */
+					setParameter(stmt, 1, project.getProjectName(), String.class);
+					setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
+					setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
+					setParameter(stmt, 4, project.getDifficulty(), Integer.class);
+					setParameter(stmt, 5, project.getNotes(), String.class);
 
-				// Commit the transaction
-				commitTransaction(conn);
+					// a new project has no steps, so no step ranks have been handed out
+					setParameter(stmt, 6, 0, Integer.class);
+
+					/*
+					 * Save the project details. Perform the insert by calling executeUpdate() on
+					 * the PreparedStatment object. Do not pass any parameters to executeUpdate() or
+					 * it will reset all the parameters leading to an obscure error.
+					 */
+					stmt.executeUpdate();
 
-				// Set the projectId on the Project object that was passed into insertProject
-				// and return it
-				project.setProjectId(projectId);
-				return project;
+					/*
+					 * Obtain the project ID (primary key) from the generated keys returned with
+					 * the insert. This needs no extra query.
+					 */
+					Integer projectId = getGeneratedKey(stmt);
+
+					// Set the projectId on the Project object that was passed into insertProject
+					project.setProjectId(projectId);
+					project.setVersion(0);
+
+					// start the project's rollup. Only the project row is inserted, so there are
+					// no materials or steps to count yet
+					insertRollups(conn, List.of(project), false);
+
+					// Commit the transaction and return the project
+					commitTransaction(conn);
+					DbConnection.recordWrite();
+
+					return project;
+
+					/*
+					 * Add a catch block to the inner try block that catches Exception. In the catch
+					 * block, roll back the transaction and throw a DbException initialized with the
+					 * Exception object passed into the catch block. This will ensure that the
+					 * transaction is rolled back when an exception is thrown.
+					 */
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
 
 				/*
-				 * Add a catch block to the inner try block that catches Exception. In the catch
-				 * block, roll back the transaction and throw a DbException initialized with the
-				 * Exception object passed into the catch block. This will ensure that the
-				 * transaction is rolled back when an exception is thrown.
+				 * Catch the SQLException in a catch block added to the try- with-resouce. From
+				 * within the catch block, throw a new DbException. The DbException constructor
+				 * should take the SQLException object passed into the catch block.
 				 */
-			} catch (Exception e) {
-				rollbackTransaction(conn);
+			} catch (SQLException e) {
 				throw new DbException(e);
 			}
 
-			/*
-			 * Catch the SQLException in a catch block added to the try- with-resouce. From
-			 * within the catch block, throw a new DbException. The DbException constructor
-			 * should take the SQLException object passed into the catch block.
-			 */
-		} catch (SQLException e) {
-			throw new DbException(e);
+		}, inserted -> 1);
+	} // end of insertProject
+
+	/*
+	 * Insert a group of projects, with their materials, steps, and category links,
+	 * in one transaction. Each table is written with JDBC batching: rows are added
+	 * with addBatch() and sent with executeBatch(). With rewriteBatchedStatements
+	 * set on the connection URI the driver turns each batch into multi-row INSERT
+	 * statements, so a batch costs one round trip rather than one per row.
+	 * 
+	 * Generated IDs are read back with getGeneratedKeys() and set on the project,
+	 * material, and step objects. Steps are stored in the order of each project's
+	 * step list, and their stepOrder is set to the rank they were given.
+	 * Categories must already exist; only the project_category link is written,
+	 * for each category that has an ID.
+	 */
+	public List<Project> insertProjects(Collection<Project> projects) {
+		return INSERT_PROJECTS_OP.time(() -> {
+			List<Project> result = new ArrayList<>(projects);
+
+			if (result.isEmpty()) {
+				return result;
+			}
+
+			try (Connection conn = DbConnection.getConnection()) {
+				startTransaction(conn);
+
+				try {
+					// projects first, so that the children can be given their project IDs
+					try (PreparedStatement stmt = conn.prepareStatement(INSERT_PROJECT, Statement.RETURN_GENERATED_KEYS)) {
+						int pending = 0;
+						int keyed = 0;
+
+						for (Project project : result) {
+							setParameter(stmt, 1, project.getProjectName(), String.class);
+							setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
+							setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
+							setParameter(stmt, 4, project.getDifficulty(), Integer.class);
+							setParameter(stmt, 5, project.getNotes(), String.class);
+
+							// the steps are given the ranks GAP, 2 * GAP, ... below
+							setParameter(stmt, 6, project.getSteps().size() * StepRankAllocator.GAP, Integer.class);
+							stmt.addBatch();
+
+							if (++pending == BATCH_SIZE) {
+								keyed = executeProjectBatch(stmt, result, keyed);
+								pending = 0;
+							}
+						}
+
+						if (pending > 0) {
+							executeProjectBatch(stmt, result, keyed);
+						}
+					}
+
+					insertRollups(conn, result, true);
+
+					List<Material> materials = new ArrayList<>();
+					List<Step> steps = new ArrayList<>();
+
+					try (PreparedStatement materialStmt = conn.prepareStatement(INSERT_MATERIAL,
+							Statement.RETURN_GENERATED_KEYS);
+							PreparedStatement stepStmt = conn.prepareStatement(INSERT_STEP, Statement.RETURN_GENERATED_KEYS);
+							PreparedStatement categoryStmt = conn.prepareStatement(INSERT_PROJECT_CATEGORY)) {
+						int pendingCategories = 0;
+
+						for (Project project : result) {
+							Integer projectId = project.getProjectId();
+
+							for (Material material : project.getMaterials()) {
+								material.setProjectId(projectId);
+								setParameter(materialStmt, 1, projectId, Integer.class);
+								setParameter(materialStmt, 2, material.getMaterialName(), String.class);
+								setParameter(materialStmt, 3, material.getNumRequired(), Integer.class);
+								setParameter(materialStmt, 4, material.getCost(), BigDecimal.class);
+								materialStmt.addBatch();
+								materials.add(material);
+
+								if (materials.size() % BATCH_SIZE == 0) {
+									executeMaterialBatch(materialStmt, materials);
+								}
+							}
+
+							// steps are ranked in the order of the list. The project row was inserted
+							// with the last of these ranks as its step_rank_seq
+							int stepRank = 0;
+
+							for (Step step : project.getSteps()) {
+								stepRank += StepRankAllocator.GAP;
+								step.setProjectId(projectId);
+								step.setStepOrder(stepRank);
+
+								setParameter(stepStmt, 1, projectId, Integer.class);
+								setParameter(stepStmt, 2, step.getStepText(), String.class);
+								setParameter(stepStmt, 3, step.getStepOrder(), Integer.class);
+								stepStmt.addBatch();
+								steps.add(step);
+
+								if (steps.size() % BATCH_SIZE == 0) {
+									executeStepBatch(stepStmt, steps);
+								}
+							}
+
+							for (Category category : project.getCategories()) {
+								if (Objects.nonNull(category.getCategoryId())) {
+									setParameter(categoryStmt, 1, projectId, Integer.class);
+									setParameter(categoryStmt, 2, category.getCategoryId(), Integer.class);
+									categoryStmt.addBatch();
+
+									if (++pendingCategories == BATCH_SIZE) {
+										categoryStmt.executeBatch();
+										pendingCategories = 0;
+									}
+								}
+							}
+						}
+
+						if (materials.size() % BATCH_SIZE != 0) {
+							executeMaterialBatch(materialStmt, materials);
+						}
+
+						if (steps.size() % BATCH_SIZE != 0) {
+							executeStepBatch(stepStmt, steps);
+						}
+
+						if (pendingCategories > 0) {
+							categoryStmt.executeBatch();
+						}
+					}
+
+					commitTransaction(conn);
+					DbConnection.recordWrite();
+					return result;
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
+
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}, List::size);
+	} // end of insertProjects
+
+	/*
+	 * Insert the project_rollup rows of new projects. If withDetails is false the
+	 * projects' materials and steps are not being inserted, so they are not
+	 * counted.
+	 */
+	private void insertRollups(Connection conn, List<Project> projects, boolean withDetails) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(INSERT_PROJECT_ROLLUP)) {
+			int pending = 0;
+
+			for (Project project : projects) {
+				setParameter(stmt, 1, project.getProjectId(), Integer.class);
+				setParameter(stmt, 2, withDetails ? totalCost(project) : BigDecimal.ZERO, BigDecimal.class);
+				setParameter(stmt, 3, withDetails ? project.getMaterials().size() : 0, Integer.class);
+				setParameter(stmt, 4, withDetails ? project.getSteps().size() : 0, Integer.class);
+				setParameter(stmt, 5, hoursVariance(project), BigDecimal.class);
+				stmt.addBatch();
+
+				if (++pending == BATCH_SIZE) {
+					stmt.executeBatch();
+					pending = 0;
+				}
+			}
+
+			if (pending > 0) {
+				stmt.executeBatch();
+			}
 		}
+	}
 
-	} // end of insertProject
+	// the sum of num_required * cost, skipping materials where either is unknown
+	private static BigDecimal totalCost(Project project) {
+		BigDecimal total = BigDecimal.ZERO;
+
+		for (Material material : project.getMaterials()) {
+			if (Objects.nonNull(material.getNumRequired()) && Objects.nonNull(material.getCost())) {
+				total = total.add(material.getCost().multiply(BigDecimal.valueOf(material.getNumRequired())));
+			}
+		}
+
+		return total;
+	}
+
+	// actual hours - estimated hours, or null if either is unknown
+	private static BigDecimal hoursVariance(Project project) {
+		if (Objects.isNull(project.getActualHours()) || Objects.isNull(project.getEstimatedHours())) {
+			return null;
+		}
+
+		return project.getActualHours().subtract(project.getEstimatedHours());
+	}
+
+	/*
+	 * Add to the step count of a project's rollup.
+	 */
+	private void addRollupSteps(Connection conn, Integer projectId, int steps) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(ADD_ROLLUP_STEPS)) {
+			setParameter(stmt, 1, steps, Integer.class);
+			setParameter(stmt, 2, projectId, Integer.class);
+			stmt.executeUpdate();
+		}
+	}
+
+	/*
+	 * Execute a batch of project inserts and set the generated IDs on the
+	 * projects, starting at the given position in the list. Returns the position
+	 * of the first project that has not been given an ID.
+	 */
+	private int executeProjectBatch(PreparedStatement stmt, List<Project> projects, int first)
+			throws SQLException {
+		stmt.executeBatch();
+		int index = first;
+
+		for (Integer projectId : getGeneratedKeys(stmt)) {
+			Project project = projects.get(index++);
+			project.setProjectId(projectId);
+			project.setVersion(0);
+		}
+
+		return index;
+	}
+
+	/*
+	 * Execute the pending material inserts. The pending rows are the last ones in
+	 * the list, so the generated IDs are matched from the end of the list.
+	 */
+	private void executeMaterialBatch(PreparedStatement stmt, List<Material> materials) throws SQLException {
+		stmt.executeBatch();
+		List<Integer> keys = getGeneratedKeys(stmt);
+		int index = materials.size() - keys.size();
+
+		for (Integer materialId : keys) {
+			materials.get(index++).setMaterialId(materialId);
+		}
+	}
+
+	private void executeStepBatch(PreparedStatement stmt, List<Step> steps) throws SQLException {
+		stmt.executeBatch();
+		List<Integer> keys = getGeneratedKeys(stmt);
+		int index = steps.size() - keys.size();
+
+		for (Integer stepId : keys) {
+			steps.get(index++).setStepId(stepId);
+		}
+	}
 
 	/*
 	 * Now you need to write the code to retrieve all the projects from the
@@ -147,112 +436,471 @@ public class ProjectDao extends DaoBase {
 	 * over the ResultSet to create a Project object for each row returned.
 	 */
 	public List<Project> fetchAllProjects() {
-		// @formatter:off
-		String sql = "SELECT * FROM " + PROJECT_TABLE
-				+ " ORDER BY project_name";				
-		// @formatter:on
+		return FETCH_ALL_PROJECTS_OP.time(() -> {
+			/*
+			 * create and return a List of Projects. The rows are streamed by
+			 * forEachProject() and each Project is added to the list.
+			 */
+			List<Project> projects = new LinkedList<>();
+			forEachProject(projects::add);
 
-		try (Connection conn = DbConnection.getConnection();) {
-			startTransaction(conn);
+			return projects;
+		}, List::size);
+	} // end of fetchAllProjects
 
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				/*
-				 * Add a try-with-resource statement to obtain a ResultSet from the
-				 * PreparedStatement. Include the import statement for ResultSet. It is in the
-				 * java.sql package.
-				 */
-				try (ResultSet rs = stmt.executeQuery()) {
-					/*
-					 * create and return a List of Projects. Loop through the result set, create and
-					 * assign each result row to a new Project object. Add the Project object to the
-					 * List of Projects. You can do this by calling the extract method.
-					 */
-					List<Project> projects = new LinkedList<>();
-					while (rs.next()) {
-						projects.add(extract(rs, Project.class));
+	/*
+	 * Stream every project row (without materials, steps, or categories), in
+	 * project name order, to the given consumer. Setting a fetch size makes the
+	 * driver read the rows through a server-side cursor (useCursorFetch is set on
+	 * the connection URI), FETCH_SIZE rows at a time, so memory use does not grow
+	 * with the size of the table. The connection is held until the consumer has
+	 * seen the last row, so the consumer should not block for long. Returns the
+	 * number of projects passed to the consumer.
+	 */
+	public int forEachProject(Consumer<? super Project> consumer) {
+		return FOR_EACH_PROJECT_OP.time(() -> {
+			try (Connection conn = DbConnection.getReadConnection();) {
+				startReadOnlyTransaction(conn);
+
+				try (PreparedStatement stmt = conn.prepareStatement(SELECT_ALL_PROJECTS)) {
+					stmt.setFetchSize(FETCH_SIZE);
+					int count = 0;
+
+					try (ResultSet rs = stmt.executeQuery()) {
+						RowMapper<Project> mapper = rowMapper(rs, Project.class);
+
+						while (rs.next()) {
+							consumer.accept(mapper.map(rs));
+							count++;
+						}
 					}
 
-					return projects;
+					commitTransaction(conn);
+					return count;
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
 				}
 
-			} catch (Exception e) {
-				rollbackTransaction(conn);
+			} catch (SQLException e) {
 				throw new DbException(e);
 			}
+		}, Integer::longValue);
+	} // end of forEachProject
 
-		} catch (SQLException e) {
-			throw new DbException(e);
+	/*
+	 * Stream every material row, in no particular order, to the given consumer
+	 * through a server-side cursor, the same way as forEachProject(). Returns the
+	 * number of materials passed to the consumer.
+	 */
+	public int forEachMaterial(Consumer<? super Material> consumer) {
+		return FOR_EACH_MATERIAL_OP.time(() -> {
+			try (Connection conn = DbConnection.getReadConnection();) {
+				startReadOnlyTransaction(conn);
+
+				try (PreparedStatement stmt = conn.prepareStatement(SELECT_ALL_MATERIALS)) {
+					stmt.setFetchSize(FETCH_SIZE);
+					int count = 0;
+
+					try (ResultSet rs = stmt.executeQuery()) {
+						RowMapper<Material> mapper = rowMapper(rs, Material.class);
+
+						while (rs.next()) {
+							consumer.accept(mapper.map(rs));
+							count++;
+						}
+					}
+
+					commitTransaction(conn);
+					return count;
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
+
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}, Integer::longValue);
+	} // end of forEachMaterial
+
+	/*
+	 * Pass every project and its materials, steps, and categories to the handler,
+	 * one project at a time, reading straight from four result set cursors. Each
+	 * cursor is ordered by project ID, so the child rows of a project are merged
+	 * in as the project rows go by (a merge join), and only one row of each table
+	 * is in memory at a time. The cursors share one read-only transaction, so the
+	 * export is a consistent snapshot. Returns the number of projects.
+	 */
+	public int exportProjects(ProjectRowHandler handler) {
+		return EXPORT_PROJECTS_OP.time(() -> {
+			try (Connection conn = DbConnection.getReadConnection()) {
+				startReadOnlyTransaction(conn);
+
+				try (PreparedStatement projectStmt = conn.prepareStatement(EXPORT_PROJECTS);
+						PreparedStatement materialStmt = conn.prepareStatement(EXPORT_MATERIALS);
+						PreparedStatement stepStmt = conn.prepareStatement(EXPORT_STEPS);
+						PreparedStatement categoryStmt = conn.prepareStatement(EXPORT_CATEGORIES)) {
+					int count = 0;
+
+					try (ResultSet projects = openCursor(projectStmt);
+							ResultSet materials = openCursor(materialStmt);
+							ResultSet steps = openCursor(stepStmt);
+							ResultSet categories = openCursor(categoryStmt)) {
+						ChildCursor materialCursor = new ChildCursor(materials);
+						ChildCursor stepCursor = new ChildCursor(steps);
+						ChildCursor categoryCursor = new ChildCursor(categories);
+
+						while (projects.next()) {
+							int projectId = projects.getInt(1);
+							handler.project(projects);
+
+							while (materialCursor.skipTo(projectId)) {
+								handler.material(materials);
+								materialCursor.advance();
+							}
+
+							while (stepCursor.skipTo(projectId)) {
+								handler.step(steps);
+								stepCursor.advance();
+							}
+
+							while (categoryCursor.skipTo(projectId)) {
+								handler.category(categories);
+								categoryCursor.advance();
+							}
+
+							handler.endProject();
+							count++;
+						}
+					}
+
+					commitTransaction(conn);
+					return count;
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
+
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}, Integer::longValue);
+	} // end of exportProjects
+
+	private ResultSet openCursor(PreparedStatement stmt) throws SQLException {
+		stmt.setFetchSize(FETCH_SIZE);
+		return stmt.executeQuery();
+	}
+
+	/*
+	 * A child table cursor ordered by project ID, with its first column holding
+	 * the project ID.
+	 */
+	private static class ChildCursor {
+		private final ResultSet rs;
+		private boolean hasRow;
+		private int projectId;
+
+		ChildCursor(ResultSet rs) throws SQLException {
+			this.rs = rs;
+			advance();
 		}
 
-	} // end of fetchAllProjects
+		void advance() throws SQLException {
+			hasRow = rs.next();
+			projectId = hasRow ? rs.getInt(1) : Integer.MAX_VALUE;
+		}
 
-	public Optional<Project> fetchProjectById(Integer projectId) {
 		/*
-		 * SQL statement to return all columns from the project table in the row that
-		 * matches the given projectId. Use the "?" placeholder
+		 * Skip rows of earlier projects (there are none while the foreign keys hold)
+		 * and return whether the current row belongs to the given project.
 		 */
-		// @formatter:off
-		String sql = "SELECT * FROM " + PROJECT_TABLE
-				+ " WHERE project_id = ?";
-		// @formatter:on
+		boolean skipTo(int targetId) throws SQLException {
+			while (hasRow && projectId < targetId) {
+				advance();
+			}
 
-		/*
-		 * Obtain a Connection object in a try-with-resource statement. Add the catch
-		 * block to handle the SQLException. In the catch block throw a new DbException
-		 * passing the SQLException object as a parameter.
-		 */
-		try (Connection conn = DbConnection.getConnection()) {
-			startTransaction(conn);
+			return hasRow && projectId == targetId;
+		}
+	}
 
-			/*
-			 * Inside the try block, create a variable of type Project and set it to null.
-			 * Return the Project object as an Optional object using Optional.ofNullable().
-			 * Save the file. You should have no compilation errors at this point but you
-			 * may see some warnings. This is OK.
-			 */
-			try {
-				Project project = null;
+	/*
+	 * Return one page of projects (without materials, steps, or categories) in
+	 * project name order. This uses keyset pagination: the caller passes the name
+	 * and ID of the last project on the previous page, or nulls for the first
+	 * page, and the query seeks directly to the next row through the
+	 * (project_name, project_id) index. Unlike LIMIT/OFFSET, the cost of a page
+	 * does not grow with how far into the list it is.
+	 */
+	public List<Project> fetchProjectsPage(String afterName, Integer afterId, int limit) {
+		return FETCH_PROJECTS_PAGE_OP.time(() -> {
+			boolean firstPage = Objects.isNull(afterName) || Objects.isNull(afterId);
+			String sql = firstPage ? SELECT_PROJECTS_FIRST_PAGE : SELECT_PROJECTS_NEXT_PAGE;
+
+			try (Connection conn = DbConnection.getReadConnection();) {
+				startReadOnlyTransaction(conn);
 
-				/*
-				 * Inside the inner try block, obtain a PreparedStatement from the Connection
-				 * object in a try-with-resource statement. Pass the SQL statement in the method
-				 * call to prepareStatement().
-				 */
 				try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-					// Add the projectId method parameter as a parameter to the PreparedStatement.
-					setParameter(stmt, 1, projectId, Integer.class);
-					/*
-					 * Obtain a ResultSet in a try-with-resource statement. If the ResultSet has a
-					 * row in it (rs.next()) set the Project variable to a new Project object and
-					 * set all fields from values in the ResultSet. You can call the extract()
-					 * method for this.
-					 */
+					int index = 1;
+
+					if (!firstPage) {
+						setParameter(stmt, index++, afterName, String.class);
+						setParameter(stmt, index++, afterName, String.class);
+						setParameter(stmt, index++, afterId, Integer.class);
+					}
+
+					setParameter(stmt, index, limit, Integer.class);
+
+					List<Project> projects;
+
 					try (ResultSet rs = stmt.executeQuery()) {
-						if (rs.next()) {
-							project = extract(rs, Project.class);
+						projects = extractAll(rs, Project.class);
+					}
+
+					commitTransaction(conn);
+					return projects;
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
+
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}, List::size);
+	} // end of fetchProjectsPage
+
+	public Optional<Project> fetchProjectById(Integer projectId) {
+		return FETCH_PROJECT_BY_ID_OP.time(() -> {
+			/*
+			 * The project and its materials, steps, and categories are read with four
+			 * SELECT statements sent to MySQL as one multi-statement query
+			 * (allowMultiQueries is set on the connection URI). MySQL returns one result
+			 * set per statement, so the whole Project graph is loaded in a single round
+			 * trip instead of four. Each child table is filtered on its own project_id
+			 * column, so no join back to the project table is needed.
+			 */
+
+			/*
+			 * Obtain a Connection object in a try-with-resource statement. Add the catch
+			 * block to handle the SQLException. In the catch block throw a new DbException
+			 * passing the SQLException object as a parameter.
+			 */
+			try (Connection conn = DbConnection.getReadConnection()) {
+				startReadOnlyTransaction(conn);
+
+				try {
+					Project project = null;
+
+					try (PreparedStatement stmt = conn.prepareStatement(SELECT_PROJECT_GRAPH)) {
+						// every statement in the query takes the project ID
+						for (int index = 1; index <= 4; index++) {
+							setParameter(stmt, index, projectId, Integer.class);
+						}
+
+						stmt.execute();
+
+						// the first result set holds the project row, if there is one
+						try (ResultSet rs = stmt.getResultSet()) {
+							if (rs.next()) {
+								project = extract(rs, Project.class);
+							}
+						}
+
+						/*
+						 * The remaining result sets hold the materials, steps, and categories, in
+						 * that order. If there is no project the statement is closed without reading
+						 * them.
+						 */
+						if (Objects.nonNull(project)) {
+							project.getMaterials().addAll(extractAll(nextResultSet(stmt), Material.class));
+							project.getSteps().addAll(extractAll(nextResultSet(stmt), Step.class));
+							project.getCategories().addAll(extractAll(nextResultSet(stmt), Category.class));
 						}
 					}
+
+					commitTransaction(conn);
+					return Optional.ofNullable(project);
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
 				}
-				/*
-				 * Below the try-with-resource statement that obtains the PreparedStatement but
-				 * inside the try block that manages the rollback, add three method calls to
-				 * obtain the list of materials, steps, and categories. Since each method
-				 * returns a List of the appropriate type, you can call addAll() to add the
-				 * entire List to the List in the Project object
-				 */
+
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}, project -> project.isPresent() ? 1 : 0);
+	}
+
+	/*
+	 * Load the full graph (materials, steps, and categories) of every project with
+	 * one of the given IDs. The IDs are split into chunks of IN_LIST_SIZE. Each
+	 * chunk is loaded with one multi-statement query: one SELECT ... WHERE
+	 * project_id IN (...) per table, so a chunk costs one round trip however many
+	 * projects it holds. The child rows are attached to their projects through a
+	 * map keyed by project ID.
+	 * 
+	 * The projects are returned in the order of the given IDs. IDs that do not
+	 * exist are skipped and duplicate IDs are loaded once.
+	 */
+	public List<Project> fetchProjectsByIds(Collection<Integer> projectIds) {
+		return FETCH_PROJECTS_BY_IDS_OP.time(() -> {
+			List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(projectIds));
+			Map<Integer, Project> projects = new HashMap<>();
+
+			if (ids.isEmpty()) {
+				return new ArrayList<Project>();
+			}
+
+			try (Connection conn = DbConnection.getReadConnection()) {
+				startReadOnlyTransaction(conn);
+
+				try {
+					for (int from = 0; from < ids.size(); from += IN_LIST_SIZE) {
+						List<Integer> chunk = ids.subList(from, Math.min(from + IN_LIST_SIZE, ids.size()));
+						fetchProjectGraphs(conn, chunk, projects);
+					}
+
+					commitTransaction(conn);
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
+
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+
+			List<Project> result = new ArrayList<>(projects.size());
+
+			for (Integer projectId : ids) {
+				Project project = projects.get(projectId);
+
 				if (Objects.nonNull(project)) {
-					project.getMaterials().addAll(fetchMaterialsForProject(conn, projectId));
-					project.getSteps().addAll(fetchStepsForProject(conn, projectId));
-					project.getCategories().addAll(fetchCategoriesForProject(conn, projectId));
+					result.add(project);
 				}
+			}
 
-				commitTransaction(conn);
-				return Optional.ofNullable(project);
+			return result;
+		}, List::size);
+	}
 
-			} catch (Exception e) {
-				rollbackTransaction(conn);
+	/*
+	 * Load the graphs of one chunk of project IDs into the map.
+	 */
+	private void fetchProjectGraphs(Connection conn, List<Integer> chunk, Map<Integer, Project> projects)
+			throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(selectProjectGraphs(chunk.size()))) {
+			// the four statements each take the whole list of IDs
+			int index = 1;
+
+			for (int statement = 0; statement < 4; statement++) {
+				for (Integer projectId : chunk) {
+					setParameter(stmt, index++, projectId, Integer.class);
+				}
+			}
+
+			stmt.execute();
+
+			for (Project project : extractAll(stmt.getResultSet(), Project.class)) {
+				projects.put(project.getProjectId(), project);
+			}
+
+			for (Material material : extractAll(nextResultSet(stmt), Material.class)) {
+				projects.get(material.getProjectId()).getMaterials().add(material);
+			}
+
+			for (Step step : extractAll(nextResultSet(stmt), Step.class)) {
+				projects.get(step.getProjectId()).getSteps().add(step);
+			}
+
+			// the first column of the category rows is the project ID from the link
+			// table
+			try (ResultSet rs = nextResultSet(stmt)) {
+				RowMapper<Category> mapper = rowMapper(rs, Category.class);
+
+				while (rs.next()) {
+					projects.get(rs.getInt(1)).getCategories().add(mapper.map(rs));
+				}
+			}
+		}
+	}
+
+	/*
+	 * Save the fields of a project that have changed (see Project.Field). Only
+	 * those columns are written, and nothing is written if no field has changed;
+	 * a project with a version is then only checked against the stored version.
+	 * If the project has a version, the row is only updated if it still has that
+	 * version, so a change made since the project was read is never overwritten.
+	 * On success the project is given its new version; its changed fields are
+	 * left for the caller to clear.
+	 *
+	 * Unless an hours field changed, the UPDATE is sent on its own in auto-commit
+	 * mode: one round trip, and the row lock is released as soon as the
+	 * statement ends. The new version comes back with the statement's result
+	 * (see ProjectSql.updateProject()). Changed hours also have to update the
+	 * rollup, so those two UPDATEs run in a transaction. Only an update that
+	 * missed costs another round trip, to tell a conflict from a missing
+	 * project, and that is read after the UPDATE has finished.
+	 */
+	public UpdateResult modifyProjectDetails(Project project) {
+		return MODIFY_PROJECT_DETAILS_OP.time(() -> {
+			Set<Field> fields = project.getChangedFields();
+			boolean checkVersion = Objects.nonNull(project.getVersion());
+
+			if (fields.isEmpty()) {
+				return checkVersion ? checkUnchanged(project) : UpdateResult.UNCHANGED;
+			}
+
+			boolean hoursChanged = fields.contains(Field.ESTIMATED_HOURS) || fields.contains(Field.ACTUAL_HOURS);
+
+			try (Connection conn = DbConnection.getConnection();) {
+				boolean updated;
+
+				if (hoursChanged) {
+					updated = updateDetailsAndRollup(conn, project, fields, checkVersion);
+				} else {
+					updated = updateDetails(conn, project, fields, checkVersion);
+				}
+
+				if (updated) {
+					DbConnection.recordWrite();
+					return UpdateResult.UPDATED;
+				}
+
+				// the project is there, so it has moved on to another version
+				if (checkVersion && fetchVersion(conn, project.getProjectId()).isPresent()) {
+					return UpdateResult.CONFLICT;
+				}
+
+				return UpdateResult.NOT_FOUND;
+
+			} catch (SQLException e) {
 				throw new DbException(e);
 			}
+		}, result -> result == UpdateResult.UPDATED ? 1 : 0);
+	}
+
+	/*
+	 * Nothing changed, but the caller still expects the project to be at its
+	 * version. One read tells whether it is.
+	 */
+	private UpdateResult checkUnchanged(Project project) {
+		try (Connection conn = DbConnection.getConnection();) {
+			Optional<Integer> version = fetchVersion(conn, project.getProjectId());
+
+			if (version.isEmpty()) {
+				return UpdateResult.NOT_FOUND;
+			}
+
+			return version.get().equals(project.getVersion()) ? UpdateResult.UNCHANGED : UpdateResult.CONFLICT;
 
 		} catch (SQLException e) {
 			throw new DbException(e);
@@ -260,154 +908,398 @@ public class ProjectDao extends DaoBase {
 	}
 
 	/*
-	 * Write the three methods to return materials, steps, and categories. Each
-	 * method should return a List of the appropriate type. Each method should take
-	 * the Connection and the project ID as parameters.
-	 * 
-	 * Each method is written in the same way as the other query methods with the
-	 * exception that the Connection is passed as a parameter, so you don't need to
-	 * call DbConnection.getConnection() to obtain it.
-	 * 
-	 * Each method can add throws SQLException to the method declaration. This is
-	 * because the method call to each method is within a try/catch block.
+	 * Run the project UPDATE and the rollup UPDATE in one transaction. A miss is
+	 * rolled back at once, and the connection is put back in auto-commit mode
+	 * either way, so fetchVersion() runs outside the transaction.
 	 */
-	private List<Material> fetchMaterialsForProject(Connection conn, Integer projectId) throws SQLException {
-		// @formatter:off
-		String sql = "SELECT m.* FROM " + MATERIAL_TABLE + " m " 
-				+ "JOIN " + PROJECT_TABLE 
-				+ " p USING (project_id) "
-				+ "WHERE project_id = ?";
-		// @formatter:on
-
-		// prepare the sql statement
-		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-			// set the parameter (?) within the sql statement
-			setParameter(stmt, 1, projectId, Integer.class);
+	private boolean updateDetailsAndRollup(Connection conn, Project project, Set<Field> fields,
+			boolean checkVersion) throws SQLException {
+		startTransaction(conn);
 
-			// execute the query
-			try (ResultSet rs = stmt.executeQuery()) {
-				// instantiate the list of materials (or steps/categories)
-				List<Material> materials = new LinkedList<>();
+		try {
+			boolean updated = updateDetails(conn, project, fields, checkVersion);
 
-				// loop through all of the rows and add them to the list
-				while (rs.next()) {
-					materials.add(extract(rs, Material.class));
+			if (updated) {
+				try (PreparedStatement rollupStmt = conn.prepareStatement(UPDATE_ROLLUP_HOURS_VARIANCE)) {
+					setParameter(rollupStmt, 1, project.getProjectId(), Integer.class);
+					rollupStmt.executeUpdate();
 				}
 
-				return materials;
+				commitTransaction(conn);
+			} else {
+				rollbackTransaction(conn);
 			}
+
+			conn.setAutoCommit(true);
+			return updated;
+
+		} catch (Exception e) {
+			rollbackTransaction(conn);
+			throw new DbException(e);
 		}
 	}
 
-	private List<Step> fetchStepsForProject(Connection conn, Integer projectId) throws SQLException {
-		// @formatter:off
-		String sql = "SELECT s.* FROM " + STEP_TABLE + " s " 
-				+ "JOIN " + PROJECT_TABLE 
-				+ " p USING (project_id) "
-				+ "WHERE project_id = ?";
-		// @formatter:on
-
-		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-			setParameter(stmt, 1, projectId, Integer.class);
+	/*
+	 * Run the project UPDATE. On success the project is given the version the
+	 * statement set, which the driver returns as the generated key.
+	 */
+	private boolean updateDetails(Connection conn, Project project, Set<Field> fields, boolean checkVersion)
+			throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(updateProject(fields, checkVersion),
+				Statement.RETURN_GENERATED_KEYS)) {
+			int index = 1;
+
+			for (Field field : fields) {
+				setField(stmt, index++, project, field);
+			}
 
-			try (ResultSet rs = stmt.executeQuery()) {
-				List<Step> steps = new LinkedList<>();
+			setParameter(stmt, index++, project.getProjectId(), Integer.class);
 
-				while (rs.next()) {
-					steps.add(extract(rs, Step.class));
-				}
+			if (checkVersion) {
+				setParameter(stmt, index, project.getVersion(), Integer.class);
+			}
 
-				return steps;
+			if (stmt.executeUpdate() != 1) {
+				return false;
 			}
+
+			project.setVersion(getGeneratedKey(stmt));
+			return true;
 		}
 	}
 
-	private List<Category> fetchCategoriesForProject(Connection conn, Integer projectId) throws SQLException {
-		// @formatter:off
-		String sql = "SELECT c.* FROM " + CATEGORY_TABLE + " c " 
-				+ "JOIN " + PROJECT_CATEGORY_TABLE
-				+ " pc USING (category_id) " 
-				+ "WHERE project_id = ?";
-		// @formatter:on
+	private void setField(PreparedStatement stmt, int index, Project project, Field field) throws SQLException {
+		switch (field) {
+		case PROJECT_NAME:
+			setParameter(stmt, index, project.getProjectName(), String.class);
+			break;
+		case ESTIMATED_HOURS:
+			setParameter(stmt, index, project.getEstimatedHours(), BigDecimal.class);
+			break;
+		case ACTUAL_HOURS:
+			setParameter(stmt, index, project.getActualHours(), BigDecimal.class);
+			break;
+		case DIFFICULTY:
+			setParameter(stmt, index, project.getDifficulty(), Integer.class);
+			break;
+		case NOTES:
+			setParameter(stmt, index, project.getNotes(), String.class);
+			break;
+		}
+	}
 
-		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	// the version a project has now. Only read after a versioned update missed,
+	// in a statement of its own, or to check a versioned update with no changes
+	private Optional<Integer> fetchVersion(Connection conn, Integer projectId) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(SELECT_PROJECT_VERSION)) {
 			setParameter(stmt, 1, projectId, Integer.class);
 
 			try (ResultSet rs = stmt.executeQuery()) {
-				List<Category> categories = new LinkedList<>();
+				return rs.next() ? Optional.of(rs.getInt(1)) : Optional.empty();
+			}
+		}
+	}
 
-				while (rs.next()) {
-					categories.add(extract(rs, Category.class));
+	public boolean deleteProject(Integer projectId) {
+		return deleteProjects(List.of(projectId)) == 1;
+	}
+
+	/*
+	 * Delete the projects with the given IDs, with their materials, steps,
+	 * category links, and rollups, in one transaction. Returns the number of
+	 * projects deleted; IDs that do not exist are skipped.
+	 *
+	 * The IDs are sorted and split into chunks of IN_LIST_SIZE. Each chunk is one
+	 * multi-statement DELETE ... WHERE project_id IN (...) per table, so a chunk
+	 * costs one round trip however many rows it removes. Every row deleted stays
+	 * locked until the final commit, so the locks taken by the first chunk are
+	 * held for all ceil(N / IN_LIST_SIZE) round trips; 5,000 IDs hold their locks
+	 * for ten. Callers that can give up all-or-nothing and must keep lock times
+	 * short should call this with smaller groups of IDs. Sorting makes every bulk
+	 * delete lock projects in primary key order, so two of them can't deadlock on
+	 * each other.
+	 */
+	public int deleteProjects(Collection<Integer> projectIds) {
+		return DELETE_PROJECTS_OP.time(() -> {
+			List<Integer> ids = new ArrayList<>(new TreeSet<>(projectIds));
+			int deleted = 0;
+
+			if (ids.isEmpty()) {
+				return deleted;
+			}
+
+			try (Connection conn = DbConnection.getConnection();) {
+				startTransaction(conn);
+
+				try {
+					for (int from = 0; from < ids.size(); from += IN_LIST_SIZE) {
+						List<Integer> chunk = ids.subList(from, Math.min(from + IN_LIST_SIZE, ids.size()));
+						deleted += deleteProjectChunk(conn, chunk);
+					}
+
+					commitTransaction(conn);
+					DbConnection.recordWrite();
+
+					return deleted;
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
 				}
 
-				return categories;
+			} catch (SQLException e) {
+				throw new DbException(e);
 			}
-		}
+		}, deleted -> deleted);
 	}
 
-	public boolean modifyProjectDetails(Project project) {
-		// this method has a similar structure to insertProject
-		// @formatter:off
-		String sql = ""
-				+ "UPDATE " + PROJECT_TABLE + " SET "
-				+ "project_name = ?, "
-				+ "estimated_hours = ?, "
-				+ "actual_hours = ?, "
-				+ "difficulty = ?, "
-				+ "notes = ? "
-				+ "WHERE project_id = ? ";
-		// @formatter:on
+	/*
+	 * Delete one chunk of projects. Returns the number of projects deleted, which
+	 * is the update count of the last statement.
+	 */
+	private int deleteProjectChunk(Connection conn, List<Integer> chunk) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(deleteProjectGraphs(chunk.size()))) {
+			// the five statements each take the whole list of IDs
+			int index = 1;
+
+			for (int statement = 0; statement < 5; statement++) {
+				for (Integer projectId : chunk) {
+					setParameter(stmt, index++, projectId, Integer.class);
+				}
+			}
 
-		try (Connection conn = DbConnection.getConnection();) {
-			startTransaction(conn);
+			stmt.execute();
+			int deleted = stmt.getUpdateCount();
 
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			while (stmt.getMoreResults() || stmt.getUpdateCount() != -1) {
+				deleted = stmt.getUpdateCount();
+			}
 
-				setParameter(stmt, 1, project.getProjectName(), String.class);
-				setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
-				setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
-				setParameter(stmt, 4, project.getDifficulty(), Integer.class);
-				setParameter(stmt, 5, project.getNotes(), String.class);
-				setParameter(stmt, 6, project.getProjectId(), Integer.class);
+			return deleted;
+		}
+	}
 
-				boolean updated = stmt.executeUpdate() == 1;
+	/*
+	 * Add a step to the end of its project's steps. The step's projectId and
+	 * stepText must be set. The step ID and rank are set on the step.
+	 */
+	public Step addStep(Step step) {
+		return ADD_STEP_OP.time(() -> {
+			try (Connection conn = DbConnection.getConnection()) {
+				startTransaction(conn);
+
+				try {
+					int rank = stepRanks.append(conn, step.getProjectId(), 1);
+					insertStep(conn, step, rank);
+					addRollupSteps(conn, step.getProjectId(), 1);
+
+					commitTransaction(conn);
+					DbConnection.recordWrite();
+					return step;
+
+				} catch (DbException e) {
+					// keep the type of a NotFoundException from the rank allocator
+					rollbackTransaction(conn);
+					throw e;
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
 
-				commitTransaction(conn);
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}, added -> 1);
+	}
 
-				return updated;
+	/*
+	 * Add a step directly after another step of the same project, or first if
+	 * afterStepId is null. The step ID and rank are set on the step.
+	 */
+	public Step insertStepAfter(Step step, Integer afterStepId) {
+		return INSERT_STEP_AFTER_OP.time(() -> {
+			try (Connection conn = DbConnection.getConnection()) {
+				startTransaction(conn);
+
+				try {
+					stepRanks.lock(conn, step.getProjectId());
+
+					int rank = stepRanks.rankAfter(conn, step.getProjectId(), afterStepId);
+					insertStep(conn, step, rank);
+					addRollupSteps(conn, step.getProjectId(), 1);
+
+					commitTransaction(conn);
+					DbConnection.recordWrite();
+					return step;
+
+				} catch (DbException e) {
+					// keep the type of a NotFoundException from the rank allocator
+					rollbackTransaction(conn);
+					throw e;
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
 
-			} catch (Exception e) {
-				rollbackTransaction(conn);
+			} catch (SQLException e) {
 				throw new DbException(e);
 			}
+		}, inserted -> 1);
+	}
 
-		} catch (SQLException e) {
-			throw new DbException(e);
+	private void insertStep(Connection conn, Step step, int rank) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(INSERT_STEP, Statement.RETURN_GENERATED_KEYS)) {
+			setParameter(stmt, 1, step.getProjectId(), Integer.class);
+			setParameter(stmt, 2, step.getStepText(), String.class);
+			setParameter(stmt, 3, rank, Integer.class);
+			stmt.executeUpdate();
+
+			step.setStepId(getGeneratedKey(stmt));
+			step.setStepOrder(rank);
 		}
 	}
 
-	public boolean deleteProject(Integer projectId) {
-		// @formatter:off
-		String sql = "DELETE FROM " + PROJECT_TABLE + " WHERE project_id = ? ";
-		// @formatter:on
+	/*
+	 * Move a step so that it comes directly after another step of the same
+	 * project, or first if afterStepId is null. Only the moved step is updated,
+	 * unless its new neighbours have no room between them. Returns false if the
+	 * step does not exist, and then nothing is written.
+	 */
+	public boolean moveStepAfter(Integer projectId, Integer stepId, Integer afterStepId) {
+		return MOVE_STEP_AFTER_OP.time(() -> {
+			if (Objects.equals(stepId, afterStepId)) {
+				return false;
+			}
 
-		try (Connection conn = DbConnection.getConnection();) {
-			startTransaction(conn);
+			try (Connection conn = DbConnection.getConnection()) {
+				startTransaction(conn);
 
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				try (PreparedStatement stmt = conn.prepareStatement(UPDATE_STEP_RANK)) {
+					stepRanks.lock(conn, projectId);
 
-				setParameter(stmt, 1, projectId, Integer.class);
+					// check before rankAfter, which can take ranks or renumber the steps
+					if (!stepRanks.hasStep(conn, projectId, stepId)) {
+						rollbackTransaction(conn);
+						return false;
+					}
 
-				boolean deleted = stmt.executeUpdate() == 1;
+					int rank = stepRanks.rankAfter(conn, projectId, afterStepId);
 
-				commitTransaction(conn);
+					setParameter(stmt, 1, rank, Integer.class);
+					setParameter(stmt, 2, stepId, Integer.class);
+					setParameter(stmt, 3, projectId, Integer.class);
 
-				return deleted;
+					// a project delete that started first can still remove the step
+					if (stmt.executeUpdate() != 1) {
+						rollbackTransaction(conn);
+						return false;
+					}
 
-			} catch (Exception e) {
-				rollbackTransaction(conn);
+					commitTransaction(conn);
+					DbConnection.recordWrite();
+					return true;
+
+				} catch (DbException e) {
+					// keep the type of a NotFoundException from the rank allocator
+					rollbackTransaction(conn);
+					throw e;
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
+
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}, moved -> moved ? 1 : 0);
+	}
+
+	/*
+	 * Return a project's summary figures with one primary key read.
+	 */
+	public Optional<ProjectRollup> fetchProjectRollup(Integer projectId) {
+		return FETCH_PROJECT_ROLLUP_OP.time(() -> {
+			try (Connection conn = DbConnection.getReadConnection()) {
+				startReadOnlyTransaction(conn);
+
+				try (PreparedStatement stmt = conn.prepareStatement(SELECT_PROJECT_ROLLUP)) {
+					setParameter(stmt, 1, projectId, Integer.class);
+
+					ProjectRollup rollup = null;
+
+					try (ResultSet rs = stmt.executeQuery()) {
+						if (rs.next()) {
+							rollup = extract(rs, ProjectRollup.class);
+						}
+					}
+
+					commitTransaction(conn);
+					return Optional.ofNullable(rollup);
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
+
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}, rollup -> rollup.isPresent() ? 1 : 0);
+	}
+
+	/*
+	 * Return the summary figures of the limit projects with the highest total
+	 * material cost, most expensive first. The rows are read in order from the
+	 * total_cost index, so only limit rows are touched.
+	 */
+	public List<ProjectRollup> fetchMostExpensiveProjects(int limit) {
+		return FETCH_MOST_EXPENSIVE_PROJECTS_OP.time(() -> {
+			try (Connection conn = DbConnection.getReadConnection()) {
+				startReadOnlyTransaction(conn);
+
+				try (PreparedStatement stmt = conn.prepareStatement(SELECT_MOST_EXPENSIVE_PROJECTS)) {
+					setParameter(stmt, 1, limit, Integer.class);
+
+					List<ProjectRollup> rollups;
+
+					try (ResultSet rs = stmt.executeQuery()) {
+						rollups = extractAll(rs, ProjectRollup.class);
+					}
+
+					commitTransaction(conn);
+					return rollups;
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
+
+			} catch (SQLException e) {
 				throw new DbException(e);
 			}
+		}, List::size);
+	}
+
+	/*
+	 * Read the server's prepared statement counters. See StatementCacheStats for
+	 * how to interpret them.
+	 */
+	public StatementCacheStats fetchStatementCacheStats() {
+		try (Connection conn = DbConnection.getConnection();
+				PreparedStatement stmt = conn.prepareStatement(SELECT_STATEMENT_STATUS);
+				ResultSet rs = stmt.executeQuery()) {
+			Map<String, Long> status = new HashMap<>();
+
+			while (rs.next()) {
+				status.put(rs.getString(1), rs.getLong(2));
+			}
+
+			return new StatementCacheStats(status.getOrDefault("Com_stmt_prepare", 0L),
+					status.getOrDefault("Com_stmt_execute", 0L), status.getOrDefault("Com_stmt_reprepare", 0L),
+					status.getOrDefault("Prepared_stmt_count", 0L));
 
 		} catch (SQLException e) {
 			throw new DbException(e);
@@ -0,0 +1,33 @@
+package projects.dao;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/*
+ * This receives the rows of ProjectDao.exportProjects() straight from the
+ * result set cursors, without creating entities. Each method is called with the
+ * result set positioned on the row and must only read it. The columns are in
+ * the order listed for each method.
+ *
+ * For each project, project() is called, then material(), step(), and
+ * category() for each of its children, then endProject(). Projects come in
+ * project ID order, materials in material ID order, steps in step order, and
+ * categories in category ID order.
+ */
+public interface ProjectRowHandler {
+
+	// project_id, project_name, estimated_hours, actual_hours, difficulty, notes
+	void project(ResultSet rs) throws SQLException, IOException;
+
+	// project_id, material_id, material_name, num_required, cost
+	void material(ResultSet rs) throws SQLException, IOException;
+
+	// project_id, step_id, step_text, step_order
+	void step(ResultSet rs) throws SQLException, IOException;
+
+	// project_id, category_id, category_name
+	void category(ResultSet rs) throws SQLException, IOException;
+
+	void endProject() throws IOException;
+}
@@ -0,0 +1,272 @@
+package projects.dao;
+
+import java.util.Collections;
+import java.util.Set;
+
+import projects.entity.Project.Field;
+
+/*
+ * This is the registry of every SQL statement ProjectDao runs. Each statement
+ * is built once, when the class is loaded, instead of being concatenated on
+ * every call. Because the same String is always passed to prepareStatement(),
+ * the driver's prepared statement cache (cachePrepStmts on the connection URI)
+ * finds it on every call after the first one on a pooled connection, and MySQL
+ * does not have to parse it again (useServerPrepStmts).
+ *
+ * Statements that can't be server-side prepared (the multi-statement graph
+ * query) are prepared on the client by the driver, which is what
+ * allowMultiQueries requires anyway.
+ */
+final class ProjectSql {
+
+	// create constants for the table names by using static final
+	static final String CATEGORY_TABLE = "category";
+	static final String MATERIAL_TABLE = "material";
+	static final String PROJECT_TABLE = "project";
+	static final String PROJECT_CATEGORY_TABLE = "project_category";
+	static final String PROJECT_ROLLUP_TABLE = "project_rollup";
+	static final String STEP_TABLE = "step";
+
+	// @formatter:off
+	static final String INSERT_PROJECT = ""
+			+ "INSERT INTO " + PROJECT_TABLE + " "
+			+ "(project_name, estimated_hours, actual_hours, difficulty, notes, step_rank_seq) "
+			+ "VALUES "
+			+ "(?, ?, ?, ?, ?, ?)";
+
+	static final String INSERT_MATERIAL = ""
+			+ "INSERT INTO " + MATERIAL_TABLE + " "
+			+ "(project_id, material_name, num_required, cost) "
+			+ "VALUES "
+			+ "(?, ?, ?, ?)";
+
+	static final String INSERT_STEP = ""
+			+ "INSERT INTO " + STEP_TABLE + " "
+			+ "(project_id, step_text, step_order) "
+			+ "VALUES "
+			+ "(?, ?, ?)";
+
+	static final String INSERT_PROJECT_CATEGORY = ""
+			+ "INSERT INTO " + PROJECT_CATEGORY_TABLE + " "
+			+ "(project_id, category_id) "
+			+ "VALUES "
+			+ "(?, ?)";
+
+	// without the hint MySQL prefers to scan the table and sort it, which holds
+	// back the first row until every row has been read
+	static final String SELECT_ALL_PROJECTS = ""
+			+ "SELECT * FROM " + PROJECT_TABLE + " FORCE INDEX (project_name_idx) "
+			+ "ORDER BY project_name, project_id";
+
+	static final String SELECT_ALL_MATERIALS = ""
+			+ "SELECT * FROM " + MATERIAL_TABLE;
+
+	static final String SELECT_PROJECTS_FIRST_PAGE = ""
+			+ "SELECT * FROM " + PROJECT_TABLE + " "
+			+ "ORDER BY project_name, project_id "
+			+ "LIMIT ?";
+
+	static final String SELECT_PROJECTS_NEXT_PAGE = ""
+			+ "SELECT * FROM " + PROJECT_TABLE + " "
+			+ "WHERE project_name > ? OR (project_name = ? AND project_id > ?) "
+			+ "ORDER BY project_name, project_id "
+			+ "LIMIT ?";
+
+	static final String SELECT_PROJECT_GRAPH = ""
+			+ "SELECT * FROM " + PROJECT_TABLE + " WHERE project_id = ?; "
+			+ "SELECT * FROM " + MATERIAL_TABLE + " WHERE project_id = ?; "
+			+ "SELECT * FROM " + STEP_TABLE + " WHERE project_id = ? ORDER BY step_order, step_id; "
+			+ "SELECT c.* FROM " + CATEGORY_TABLE + " c "
+			+ "JOIN " + PROJECT_CATEGORY_TABLE + " pc USING (category_id) "
+			+ "WHERE pc.project_id = ?";
+
+	// take the next ranks from the project's counter. See StepRankAllocator
+	static final String ALLOCATE_STEP_RANKS = ""
+			+ "UPDATE " + PROJECT_TABLE + " "
+			+ "SET step_rank_seq = LAST_INSERT_ID(step_rank_seq + ?) "
+			+ "WHERE project_id = ?";
+
+	static final String LOCK_STEP_RANKS = ""
+			+ "SELECT step_rank_seq FROM " + PROJECT_TABLE + " WHERE project_id = ? FOR UPDATE";
+
+	static final String SELECT_STEP_RANK = ""
+			+ "SELECT step_order FROM " + STEP_TABLE + " WHERE step_id = ? AND project_id = ?";
+
+	static final String SELECT_NEXT_STEP_RANK = ""
+			+ "SELECT MIN(step_order) FROM " + STEP_TABLE + " WHERE project_id = ? AND step_order > ?";
+
+	static final String SELECT_STEP_IDS_IN_ORDER = ""
+			+ "SELECT step_id FROM " + STEP_TABLE + " WHERE project_id = ? ORDER BY step_order, step_id";
+
+	static final String UPDATE_STEP_RANK = ""
+			+ "UPDATE " + STEP_TABLE + " SET step_order = ? WHERE step_id = ? AND project_id = ?";
+
+	static final String UPDATE_STEP_RANK_SEQ = ""
+			+ "UPDATE " + PROJECT_TABLE + " SET step_rank_seq = ? WHERE project_id = ?";
+
+	static final String SELECT_PROJECT_VERSION = ""
+			+ "SELECT version FROM " + PROJECT_TABLE + " WHERE project_id = ?";
+
+	static final String INSERT_PROJECT_ROLLUP = ""
+			+ "INSERT INTO " + PROJECT_ROLLUP_TABLE + " "
+			+ "(project_id, total_cost, material_count, step_count, hours_variance) "
+			+ "VALUES "
+			+ "(?, ?, ?, ?, ?)";
+
+	// the variance is taken from the project row, because an update may have
+	// changed only one of the hours
+	static final String UPDATE_ROLLUP_HOURS_VARIANCE = ""
+			+ "UPDATE " + PROJECT_ROLLUP_TABLE + " r "
+			+ "JOIN " + PROJECT_TABLE + " p USING (project_id) "
+			+ "SET r.hours_variance = p.actual_hours - p.estimated_hours "
+			+ "WHERE r.project_id = ?";
+
+	static final String ADD_ROLLUP_STEPS = ""
+			+ "UPDATE " + PROJECT_ROLLUP_TABLE + " SET step_count = step_count + ? WHERE project_id = ?";
+
+	static final String SELECT_PROJECT_ROLLUP = ""
+			+ "SELECT r.*, p.project_name FROM " + PROJECT_ROLLUP_TABLE + " r "
+			+ "JOIN " + PROJECT_TABLE + " p USING (project_id) "
+			+ "WHERE r.project_id = ?";
+
+	// reads rollup_total_cost_idx backwards and stops after the limit
+	static final String SELECT_MOST_EXPENSIVE_PROJECTS = ""
+			+ "SELECT r.*, p.project_name FROM " + PROJECT_ROLLUP_TABLE + " r "
+			+ "JOIN " + PROJECT_TABLE + " p USING (project_id) "
+			+ "ORDER BY r.total_cost DESC, r.project_id DESC "
+			+ "LIMIT ?";
+
+	// the export cursors. Each is read in project ID order through an index, so
+	// they can be merged without sorting. See ProjectRowHandler for the columns
+	static final String EXPORT_PROJECTS = ""
+			+ "SELECT project_id, project_name, estimated_hours, actual_hours, difficulty, notes "
+			+ "FROM " + PROJECT_TABLE + " "
+			+ "ORDER BY project_id";
+
+	static final String EXPORT_MATERIALS = ""
+			+ "SELECT project_id, material_id, material_name, num_required, cost "
+			+ "FROM " + MATERIAL_TABLE + " FORCE INDEX (material_project_idx) "
+			+ "ORDER BY project_id, material_id";
+
+	static final String EXPORT_STEPS = ""
+			+ "SELECT project_id, step_id, step_text, step_order "
+			+ "FROM " + STEP_TABLE + " FORCE INDEX (step_project_order_idx) "
+			+ "ORDER BY project_id, step_order, step_id";
+
+	static final String EXPORT_CATEGORIES = ""
+			+ "SELECT STRAIGHT_JOIN pc.project_id, c.category_id, c.category_name "
+			+ "FROM " + PROJECT_CATEGORY_TABLE + " pc FORCE INDEX (PRIMARY) "
+			+ "JOIN " + CATEGORY_TABLE + " c USING (category_id) "
+			+ "ORDER BY pc.project_id, pc.category_id";
+
+	static final String SELECT_STATEMENT_STATUS = ""
+			+ "SHOW GLOBAL STATUS WHERE Variable_name IN "
+			+ "('Com_stmt_prepare', 'Com_stmt_execute', 'Com_stmt_reprepare', 'Prepared_stmt_count')";
+	// @formatter:on
+
+	// an UPDATE_PROJECT statement for every set of fields, with and without the
+	// version check. See updateProject()
+	private static final String[] UPDATE_PROJECT_STATEMENTS = buildUpdateProjectStatements();
+
+	/*
+	 * The UPDATE that writes the given project fields, in Field order, followed by
+	 * the project ID and, with checkVersion, the version the row must still have.
+	 * Every update moves the version on through LAST_INSERT_ID(expr). MySQL sends
+	 * that value back in the statement's OK packet, where the driver reads it as
+	 * the generated key, so the new version costs no extra query. There is
+	 * a statement for each of the few combinations, built when the class is
+	 * loaded, so the same String goes to the statement cache every time.
+	 */
+	static String updateProject(Set<Field> fields, boolean checkVersion) {
+		int index = checkVersion ? 1 : 0;
+
+		for (Field field : fields) {
+			index |= 2 << field.ordinal();
+		}
+
+		return UPDATE_PROJECT_STATEMENTS[index];
+	}
+
+	private static String[] buildUpdateProjectStatements() {
+		Field[] fields = Field.values();
+		String[] statements = new String[2 << fields.length];
+
+		for (int index = 0; index < statements.length; index++) {
+			StringBuilder sql = new StringBuilder("UPDATE " + PROJECT_TABLE + " SET ");
+
+			for (Field field : fields) {
+				if ((index & 2 << field.ordinal()) != 0) {
+					sql.append(columnOf(field)).append(" = ?, ");
+				}
+			}
+
+			sql.append("version = LAST_INSERT_ID(version + 1) WHERE project_id = ?");
+
+			if ((index & 1) != 0) {
+				sql.append(" AND version = ?");
+			}
+
+			statements[index] = sql.toString();
+		}
+
+		return statements;
+	}
+
+	private static String columnOf(Field field) {
+		switch (field) {
+		case PROJECT_NAME:
+			return "project_name";
+		case ESTIMATED_HOURS:
+			return "estimated_hours";
+		case ACTUAL_HOURS:
+			return "actual_hours";
+		case DIFFICULTY:
+			return "difficulty";
+		default:
+			return "notes";
+		}
+	}
+
+	/*
+	 * The multi-statement graph query for a list of project IDs. The list size
+	 * varies, so the statement is built per call with that many placeholders in
+	 * each IN list. The category rows start with the project ID of the link.
+	 */
+	static String selectProjectGraphs(int idCount) {
+		String in = "IN (" + String.join(", ", Collections.nCopies(idCount, "?")) + ")";
+
+		// @formatter:off
+		return ""
+				+ "SELECT * FROM " + PROJECT_TABLE + " WHERE project_id " + in + "; "
+				+ "SELECT * FROM " + MATERIAL_TABLE + " WHERE project_id " + in + "; "
+				+ "SELECT * FROM " + STEP_TABLE + " WHERE project_id " + in + " "
+				+ "ORDER BY project_id, step_order, step_id; "
+				+ "SELECT pc.project_id, c.* FROM " + PROJECT_CATEGORY_TABLE + " pc "
+				+ "JOIN " + CATEGORY_TABLE + " c USING (category_id) "
+				+ "WHERE pc.project_id " + in;
+		// @formatter:on
+	}
+
+	/*
+	 * The multi-statement delete for a list of project IDs: the rows that refer
+	 * to the projects, then the projects. Only material and project_rollup have
+	 * ON DELETE CASCADE, so every child table is cleared explicitly. Each DELETE
+	 * finds its rows through an index on project_id, so only those rows are
+	 * locked.
+	 */
+	static String deleteProjectGraphs(int idCount) {
+		String in = "IN (" + String.join(", ", Collections.nCopies(idCount, "?")) + ")";
+
+		// @formatter:off
+		return ""
+				+ "DELETE FROM " + PROJECT_CATEGORY_TABLE + " WHERE project_id " + in + "; "
+				+ "DELETE FROM " + STEP_TABLE + " WHERE project_id " + in + "; "
+				+ "DELETE FROM " + MATERIAL_TABLE + " WHERE project_id " + in + "; "
+				+ "DELETE FROM " + PROJECT_ROLLUP_TABLE + " WHERE project_id " + in + "; "
+				+ "DELETE FROM " + PROJECT_TABLE + " WHERE project_id " + in;
+		// @formatter:on
+	}
+
+	private ProjectSql() {
+	}
+}
@@ -0,0 +1,211 @@
+package projects.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import javax.sql.DataSource;
+
+import projects.exception.DbException;
+
+/*
+ * This brings the projects schema up to date by applying the versioned scripts
+ * in src/main/resources/db/migration. A script named V<n>__<description>.sql is
+ * applied once, in version order, and recorded in the schema_version table.
+ *
+ * MySQL commits DDL statements as it runs them, so a script can't be rolled
+ * back. Each script is recorded as soon as it has run. If a script fails part
+ * way through, fix the database by hand and run the migrator again.
+ *
+ * Several copies of the application can start at once. The migrator holds a
+ * named lock (GET_LOCK) while it works so that only one of them applies
+ * scripts; the others wait and then find nothing left to do.
+ */
+public class SchemaMigrator {
+
+	private static final String MIGRATION_DIRECTORY = "db/migration/";
+	private static final String LOCK_NAME = "projects_schema_migration";
+	private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+	// the scripts in version order. Add new scripts to the end
+	// @formatter:off
+	private static final List<String> MIGRATIONS = List.of(
+			"V1__create_tables.sql",
+			"V2__access_path_indexes.sql",
+			"V3__step_rank_sequence.sql",
+			"V4__project_rollup.sql",
+			"V5__material_project_index.sql",
+			"V6__project_version.sql"
+			);
+	// @formatter:on
+
+	private final DataSource dataSource;
+
+	public SchemaMigrator(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	/*
+	 * Apply every script newer than the current schema version. Returns the
+	 * number of scripts applied.
+	 */
+	public int migrate() {
+		try (Connection conn = dataSource.getConnection()) {
+			lock(conn);
+
+			try {
+				createVersionTable(conn);
+
+				int current = getCurrentVersion(conn);
+				int applied = 0;
+
+				for (String script : MIGRATIONS) {
+					int version = versionOf(script);
+
+					if (version > current) {
+						apply(conn, script);
+						recordVersion(conn, version, descriptionOf(script));
+						applied++;
+					}
+				}
+
+				return applied;
+			} finally {
+				unlock(conn);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/*
+	 * The highest version applied to the database, or zero if none has been.
+	 */
+	public int getCurrentVersion() {
+		try (Connection conn = dataSource.getConnection()) {
+			createVersionTable(conn);
+			return getCurrentVersion(conn);
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	private void lock(Connection conn) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+			stmt.setString(1, LOCK_NAME);
+			stmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (!rs.next() || rs.getInt(1) != 1) {
+					throw new DbException("Timed out waiting for another process to finish migrating the schema");
+				}
+			}
+		}
+	}
+
+	private void unlock(Connection conn) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+			stmt.setString(1, LOCK_NAME);
+			stmt.executeQuery().close();
+		}
+	}
+
+	private void createVersionTable(Connection conn) throws SQLException {
+		// @formatter:off
+		String sql = ""
+				+ "CREATE TABLE IF NOT EXISTS schema_version ("
+				+ "version INT NOT NULL, "
+				+ "description VARCHAR(128) NOT NULL, "
+				+ "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+				+ "PRIMARY KEY (version))";
+		// @formatter:on
+
+		try (Statement stmt = conn.createStatement()) {
+			stmt.execute(sql);
+		}
+	}
+
+	private int getCurrentVersion(Connection conn) throws SQLException {
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+	private void apply(Connection conn, String script) throws SQLException {
+		try (Statement stmt = conn.createStatement()) {
+			for (String sql : readStatements(script)) {
+				try {
+					stmt.execute(sql);
+				} catch (SQLException e) {
+					throw new DbException("Migration " + script + " failed on: " + sql, e);
+				}
+			}
+		}
+	}
+
+	private void recordVersion(Connection conn, int version, String description) throws SQLException {
+		String sql = "INSERT INTO schema_version (version, description) VALUES (?, ?)";
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			stmt.setInt(1, version);
+			stmt.setString(2, description);
+			stmt.executeUpdate();
+		}
+	}
+
+	/*
+	 * Read a script and split it into statements. Lines starting with "--" are
+	 * comments. Statements end with a semicolon, so a semicolon can't appear
+	 * inside a string literal in a migration.
+	 */
+	static List<String> readStatements(String script) {
+		String text;
+
+		try (InputStream in = SchemaMigrator.class.getClassLoader()
+				.getResourceAsStream(MIGRATION_DIRECTORY + script)) {
+			if (Objects.isNull(in)) {
+				throw new DbException("Migration script " + script + " was not found on the classpath");
+			}
+
+			text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new DbException("Unable to read migration script " + script, e);
+		}
+
+		StringBuilder withoutComments = new StringBuilder(text.length());
+
+		for (String line : text.split("\\R")) {
+			if (!line.strip().startsWith("--")) {
+				withoutComments.append(line).append('\n');
+			}
+		}
+
+		List<String> statements = new ArrayList<>();
+
+		for (String sql : withoutComments.toString().split(";")) {
+			if (!sql.isBlank()) {
+				statements.add(sql.strip());
+			}
+		}
+
+		return statements;
+	}
+
+	private static int versionOf(String script) {
+		return Integer.parseInt(script.substring(1, script.indexOf("__")));
+	}
+
+	private static String descriptionOf(String script) {
+		return script.substring(script.indexOf("__") + 2, script.lastIndexOf(".sql")).replace('_', ' ');
+	}
+}
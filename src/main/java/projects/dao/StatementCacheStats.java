@@ -0,0 +1,65 @@
+package projects.dao;
+
+/*
+ * A snapshot of MySQL's prepared statement counters, read with SHOW GLOBAL
+ * STATUS. With server-side prepares and the driver's statement cache enabled,
+ * a statement is prepared (parsed) once per pooled connection and then only
+ * executed, so prepares should stay flat while executes grow. The cache hit
+ * rate is the share of executes that did not need a prepare.
+ *
+ * The counters are server-wide, so they include other clients of the same
+ * MySQL server. Compare two snapshots taken around a workload to see its
+ * effect.
+ */
+public class StatementCacheStats {
+	private final long prepares;
+	private final long executes;
+	private final long reprepares;
+	private final long openStatements;
+
+	StatementCacheStats(long prepares, long executes, long reprepares, long openStatements) {
+		this.prepares = prepares;
+		this.executes = executes;
+		this.reprepares = reprepares;
+		this.openStatements = openStatements;
+	}
+
+	// Com_stmt_prepare: statements parsed by the server
+	public long getPrepares() {
+		return prepares;
+	}
+
+	// Com_stmt_execute: executions of server-side prepared statements
+	public long getExecutes() {
+		return executes;
+	}
+
+	// Com_stmt_reprepare: statements re-parsed after a metadata change
+	public long getReprepares() {
+		return reprepares;
+	}
+
+	// Prepared_stmt_count: statements currently prepared on the server
+	public long getOpenStatements() {
+		return openStatements;
+	}
+
+	public double getHitRate() {
+		return executes == 0 ? 0.0 : Math.max(0.0, 1.0 - (double) (prepares + reprepares) / executes);
+	}
+
+	/*
+	 * Return the change in the counters since an earlier snapshot. The open
+	 * statement count is taken from this snapshot.
+	 */
+	public StatementCacheStats since(StatementCacheStats earlier) {
+		return new StatementCacheStats(prepares - earlier.prepares, executes - earlier.executes,
+				reprepares - earlier.reprepares, openStatements);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("prepares=%d, executes=%d, reprepares=%d, hitRate=%.3f, openStatements=%d", prepares,
+				executes, reprepares, getHitRate(), openStatements);
+	}
+}
@@ -0,0 +1,204 @@
+package projects.dao;
+
+import static projects.dao.ProjectSql.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import projects.exception.NotFoundException;
+import provided.util.DaoBase;
+
+/*
+ * This hands out step_order values. Steps are sorted by step_order, but the
+ * values are sparse ranks rather than 1, 2, 3, ... so that a step can be put
+ * between two others without renumbering the rest.
+ *
+ * - Appending takes the next ranks from project.step_rank_seq with a single
+ *   UPDATE ... SET step_rank_seq = LAST_INSERT_ID(step_rank_seq + n). The new
+ *   value comes back with the update as its generated key, so no query is
+ *   needed to read it. The UPDATE is atomic and locks the project row until the
+ *   transaction ends, so writers adding steps to the same project at the same
+ *   time get different ranks.
+ * - Inserting between two steps uses the midpoint of their ranks. The caller
+ *   locks the project row first so that the neighbours can't change underneath.
+ * - When two neighbours have no rank left between them, the project's steps are
+ *   renumbered GAP apart (a rebalance). With a GAP of 1024 that takes at least
+ *   ten inserts at the same spot.
+ *
+ * The methods run on the caller's connection and transaction.
+ */
+class StepRankAllocator extends DaoBase {
+
+	// the distance between the ranks of appended steps
+	static final int GAP = 1024;
+
+	// SQLSTATE for a value out of range for its column
+	private static final String OUT_OF_RANGE = "22003";
+
+	/*
+	 * Reserve count ranks at the end of the project's steps and return the first.
+	 * The others follow it GAP apart.
+	 */
+	int append(Connection conn, Integer projectId, int count) throws SQLException {
+		try {
+			return allocate(conn, projectId, count);
+		} catch (SQLException e) {
+			// step_rank_seq has reached the top of the INT range
+			if (!OUT_OF_RANGE.equals(e.getSQLState())) {
+				throw e;
+			}
+
+			rebalance(conn, projectId);
+			return allocate(conn, projectId, count);
+		}
+	}
+
+	private int allocate(Connection conn, Integer projectId, int count) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(ALLOCATE_STEP_RANKS, Statement.RETURN_GENERATED_KEYS)) {
+			setParameter(stmt, 1, count * GAP, Integer.class);
+			setParameter(stmt, 2, projectId, Integer.class);
+
+			if (stmt.executeUpdate() == 0) {
+				throw new NotFoundException("Project with ID=" + projectId + " does not exist.");
+			}
+
+			return getGeneratedKey(stmt) - (count - 1) * GAP;
+		}
+	}
+
+	/*
+	 * Return a rank that sorts directly after the given step, or first if
+	 * afterStepId is null. The project must have been locked with lock(). Steps
+	 * may be renumbered to make room, so ranks read before this call can be out of
+	 * date afterwards.
+	 */
+	int rankAfter(Connection conn, Integer projectId, Integer afterStepId) throws SQLException {
+		Integer rank = midpointAfter(conn, projectId, afterStepId);
+
+		if (Objects.isNull(rank)) {
+			rebalance(conn, projectId);
+			rank = midpointAfter(conn, projectId, afterStepId);
+		}
+
+		return rank;
+	}
+
+	/*
+	 * The midpoint between the given step and the one after it, or null if there
+	 * is no room between them. If the step is the last one, a new rank is
+	 * appended.
+	 */
+	private Integer midpointAfter(Connection conn, Integer projectId, Integer afterStepId) throws SQLException {
+		int lower = Objects.isNull(afterStepId) ? 0 : getRank(conn, projectId, afterStepId);
+		Integer upper = getNextRank(conn, projectId, lower);
+
+		if (Objects.isNull(upper)) {
+			return append(conn, projectId, 1);
+		}
+
+		if (upper - lower < 2) {
+			return null;
+		}
+
+		return lower + (upper - lower) / 2;
+	}
+
+	// lock the project row until the transaction ends, so its step ranks can't change
+	void lock(Connection conn, Integer projectId) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(LOCK_STEP_RANKS)) {
+			setParameter(stmt, 1, projectId, Integer.class);
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (!rs.next()) {
+					throw new NotFoundException("Project with ID=" + projectId + " does not exist.");
+				}
+			}
+		}
+	}
+
+	boolean hasStep(Connection conn, Integer projectId, Integer stepId) throws SQLException {
+		return Objects.nonNull(findRank(conn, projectId, stepId));
+	}
+
+	private int getRank(Connection conn, Integer projectId, Integer stepId) throws SQLException {
+		Integer rank = findRank(conn, projectId, stepId);
+
+		if (Objects.isNull(rank)) {
+			throw new NotFoundException("Step with ID=" + stepId + " does not exist in project " + projectId + ".");
+		}
+
+		return rank;
+	}
+
+	// the step's rank, or null if the project has no such step
+	private Integer findRank(Connection conn, Integer projectId, Integer stepId) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(SELECT_STEP_RANK)) {
+			setParameter(stmt, 1, stepId, Integer.class);
+			setParameter(stmt, 2, projectId, Integer.class);
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				return rs.next() ? rs.getInt(1) : null;
+			}
+		}
+	}
+
+	// the lowest rank above the given one, or null if there is none
+	private Integer getNextRank(Connection conn, Integer projectId, int rank) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(SELECT_NEXT_STEP_RANK)) {
+			setParameter(stmt, 1, projectId, Integer.class);
+			setParameter(stmt, 2, rank, Integer.class);
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				rs.next();
+				int next = rs.getInt(1);
+				return rs.wasNull() ? null : next;
+			}
+		}
+	}
+
+	/*
+	 * Renumber the project's steps GAP, 2 * GAP, ... in their current order, and
+	 * reset the counter to the last rank. Steps with the same rank are ordered by
+	 * ID. This rewrites every step of one project, so it is kept for when there
+	 * is no room left.
+	 */
+	void rebalance(Connection conn, Integer projectId) throws SQLException {
+		List<Integer> stepIds = new ArrayList<>();
+
+		try (PreparedStatement stmt = conn.prepareStatement(SELECT_STEP_IDS_IN_ORDER)) {
+			setParameter(stmt, 1, projectId, Integer.class);
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					stepIds.add(rs.getInt(1));
+				}
+			}
+		}
+
+		try (PreparedStatement stmt = conn.prepareStatement(UPDATE_STEP_RANK)) {
+			int rank = 0;
+
+			for (Integer stepId : stepIds) {
+				rank += GAP;
+				setParameter(stmt, 1, rank, Integer.class);
+				setParameter(stmt, 2, stepId, Integer.class);
+				setParameter(stmt, 3, projectId, Integer.class);
+				stmt.addBatch();
+			}
+
+			stmt.executeBatch();
+		}
+
+		try (PreparedStatement stmt = conn.prepareStatement(UPDATE_STEP_RANK_SEQ)) {
+			setParameter(stmt, 1, stepIds.size() * GAP, Integer.class);
+			setParameter(stmt, 2, projectId, Integer.class);
+			stmt.executeUpdate();
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package projects.dao;
+
+/*
+ * What happened to an update of a project's details.
+ */
+public enum UpdateResult {
+	// the row was changed
+	UPDATED,
+
+	// there is no project with the ID
+	NOT_FOUND,
+
+	// the project has been changed since the version the update was based on
+	CONFLICT,
+
+	// no field had changed, so nothing was written. A versioned update was still
+	// checked against the stored version
+	UNCHANGED
+}
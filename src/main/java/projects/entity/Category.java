@@ -29,6 +29,18 @@ public class Category {
 
   @Override
   public String toString() {
-    return "ID=" + categoryId + ", categoryName=" + categoryName;
+    return appendTo(new StringBuilder(32)).toString();
+  }
+
+  /**
+   * Appends the same text as {@link #toString()} without creating intermediate strings.
+   * 
+   * @param out The builder to append to.
+   * @return The builder.
+   */
+  public StringBuilder appendTo(StringBuilder out) {
+    out.append("ID=");
+    ProjectFormatter.appendInteger(out, categoryId);
+    return out.append(", categoryName=").append(categoryName);
   }
 }
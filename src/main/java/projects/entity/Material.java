@@ -58,7 +58,20 @@ public class Material {
 
   @Override
   public String toString() {
-    return "ID=" + materialId + ", materialName=" + materialName + ", numRequired=" + numRequired
-        + ", cost=" + cost;
+    return appendTo(new StringBuilder(64)).toString();
+  }
+
+  /**
+   * Appends the same text as {@link #toString()} without creating intermediate strings.
+   * 
+   * @param out The builder to append to.
+   * @return The builder.
+   */
+  public StringBuilder appendTo(StringBuilder out) {
+    out.append("ID=");
+    ProjectFormatter.appendInteger(out, materialId);
+    out.append(", materialName=").append(materialName).append(", numRequired=");
+    ProjectFormatter.appendInteger(out, numRequired);
+    return out.append(", cost=").append(cost);
   }
 }
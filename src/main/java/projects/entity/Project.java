@@ -4,25 +4,43 @@
 package projects.entity;
 
 import java.math.BigDecimal;
+import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 /**
+ * A project and its materials, steps, and categories. The setters for the details record which
+ * fields they change, so that an update only writes those columns. Objects created by the row
+ * mapper start with no changed fields.
+ * 
  * @author Promineo
  *
  */
 public class Project {
+  /**
+   * The details of a project that an update can change.
+   */
+  public enum Field {
+    PROJECT_NAME, ESTIMATED_HOURS, ACTUAL_HOURS, DIFFICULTY, NOTES
+  }
+
   private Integer projectId;
   private String projectName;
   private BigDecimal estimatedHours;
   private BigDecimal actualHours;
   private Integer difficulty;
   private String notes;
+  private Integer version;
 
   private List<Material> materials = new LinkedList<>();
   private List<Step> steps = new LinkedList<>();
   private List<Category> categories = new LinkedList<>();
 
+  // final, so the row mapper leaves it alone
+  private final EnumSet<Field> changedFields = EnumSet.noneOf(Field.class);
+
   public Integer getProjectId() {
     return projectId;
   }
@@ -36,6 +54,10 @@ public class Project {
   }
 
   public void setProjectName(String projectName) {
+    if(!Objects.equals(this.projectName, projectName)) {
+      changedFields.add(Field.PROJECT_NAME);
+    }
+
     this.projectName = projectName;
   }
 
@@ -44,6 +66,10 @@ public class Project {
   }
 
   public void setEstimatedHours(BigDecimal estimatedHours) {
+    if(!sameDecimal(this.estimatedHours, estimatedHours)) {
+      changedFields.add(Field.ESTIMATED_HOURS);
+    }
+
     this.estimatedHours = estimatedHours;
   }
 
@@ -52,6 +78,10 @@ public class Project {
   }
 
   public void setActualHours(BigDecimal actualHours) {
+    if(!sameDecimal(this.actualHours, actualHours)) {
+      changedFields.add(Field.ACTUAL_HOURS);
+    }
+
     this.actualHours = actualHours;
   }
 
@@ -60,6 +90,10 @@ public class Project {
   }
 
   public void setDifficulty(Integer difficulty) {
+    if(!Objects.equals(this.difficulty, difficulty)) {
+      changedFields.add(Field.DIFFICULTY);
+    }
+
     this.difficulty = difficulty;
   }
 
@@ -68,9 +102,21 @@ public class Project {
   }
 
   public void setNotes(String notes) {
+    if(!Objects.equals(this.notes, notes)) {
+      changedFields.add(Field.NOTES);
+    }
+
     this.notes = notes;
   }
 
+  public Integer getVersion() {
+    return version;
+  }
+
+  public void setVersion(Integer version) {
+    this.version = version;
+  }
+
   public List<Material> getMaterials() {
     return materials;
   }
@@ -83,36 +129,141 @@ public class Project {
     return categories;
   }
 
+  /**
+   * Returns the fields that have been set to a different value since this project was read, copied,
+   * or last saved.
+   * 
+   * @return A copy of the set of changed fields.
+   */
+  public Set<Field> getChangedFields() {
+    return changedFields.clone();
+  }
+
+  /**
+   * Marks every field as changed, so that an update writes all of them. Use this for a project whose
+   * stored values are not known, such as one built from a request.
+   */
+  public void markAllFieldsChanged() {
+    changedFields.addAll(EnumSet.allOf(Field.class));
+  }
+
+  /**
+   * Forgets the changed fields, once they have been saved.
+   */
+  public void clearChangedFields() {
+    changedFields.clear();
+  }
+
+  /**
+   * Returns a copy of this project to make changes to. Use this to edit a project that may be shared,
+   * such as one from the project cache. The copy has the same materials, steps, and categories (in
+   * new lists) and no changed fields.
+   * 
+   * @return The copy.
+   */
+  public Project copy() {
+    Project copy = new Project();
+
+    copy.projectId = projectId;
+    copy.projectName = projectName;
+    copy.estimatedHours = estimatedHours;
+    copy.actualHours = actualHours;
+    copy.difficulty = difficulty;
+    copy.notes = notes;
+    copy.version = version;
+    copy.materials.addAll(materials);
+    copy.steps.addAll(steps);
+    copy.categories.addAll(categories);
+
+    return copy;
+  }
+
+  /**
+   * Returns a copy of this project with the changed fields and the version of another project. This
+   * is how a cached project is brought up to date after an update, without reading it again.
+   * 
+   * @param changes The project that was saved.
+   * @return The copy, with no changed fields.
+   */
+  public Project withChanges(Project changes) {
+    Project copy = copy();
+
+    for(Field field : changes.changedFields) {
+      switch(field) {
+        case PROJECT_NAME:
+          copy.projectName = changes.projectName;
+          break;
+
+        case ESTIMATED_HOURS:
+          copy.estimatedHours = changes.estimatedHours;
+          break;
+
+        case ACTUAL_HOURS:
+          copy.actualHours = changes.actualHours;
+          break;
+
+        case DIFFICULTY:
+          copy.difficulty = changes.difficulty;
+          break;
+
+        case NOTES:
+          copy.notes = changes.notes;
+          break;
+      }
+    }
+
+    copy.version = changes.version;
+    return copy;
+  }
+
+  // 10.0 and 10.00 are the same number of hours
+  private static boolean sameDecimal(BigDecimal a, BigDecimal b) {
+    return Objects.isNull(a) ? Objects.isNull(b) : Objects.nonNull(b) && a.compareTo(b) == 0;
+  }
+
   @Override
   public String toString() {
-    String result = "";
-    
-    result += "\n   ID=" + projectId;
-    result += "\n   name=" + projectName;
-    result += "\n   estimatedHours=" + estimatedHours;
-    result += "\n   actualHours=" + actualHours;
-    result += "\n   difficulty=" + difficulty;
-    result += "\n   notes=" + notes;
-    
-    result += "\n   Materials:";
-    
+    return appendTo(new StringBuilder(256)).toString();
+  }
+
+  /**
+   * Appends the same text as {@link #toString()}, including the materials, steps, and categories,
+   * without creating intermediate strings.
+   * 
+   * @param out The builder to append to.
+   * @return The builder.
+   */
+  public StringBuilder appendTo(StringBuilder out) {
+    out.append("\n   ID=");
+    ProjectFormatter.appendInteger(out, projectId);
+    out.append("\n   name=").append(projectName);
+    out.append("\n   estimatedHours=").append(estimatedHours);
+    out.append("\n   actualHours=").append(actualHours);
+    out.append("\n   difficulty=");
+    ProjectFormatter.appendInteger(out, difficulty);
+    out.append("\n   notes=").append(notes);
+    out.append("\n   version=");
+    ProjectFormatter.appendInteger(out, version);
+
+    out.append("\n   Materials:");
+
     for(Material material : materials) {
-      result += "\n      " + material;
+      material.appendTo(out.append("\n      "));
     }
-    
-    result += "\n   Steps:";
-    
+
+    out.append("\n   Steps:");
+
     for(Step step : steps) {
-      result += "\n      " + step;
+      step.appendTo(out.append("\n      "));
     }
-    
-    result += "\n   Categories:";
-    
+
+    out.append("\n   Categories:");
+
     for(Category category : categories) {
-      result += "\n      " + category;
+      category.appendTo(out.append("\n      "));
     }
-    
-    return result;
+
+    return out;
   }
 
 }
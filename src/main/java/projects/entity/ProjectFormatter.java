@@ -0,0 +1,88 @@
+/**
+ * 
+ */
+package projects.entity;
+
+import java.io.IOException;
+
+/**
+ * This renders lists of projects into a caller-supplied builder or {@link Appendable}. Each
+ * project is rendered with {@link Project#appendTo(StringBuilder)}, which appends field values
+ * directly, so a long report does not create a String per field.
+ * 
+ * @author Promineo
+ *
+ */
+public final class ProjectFormatter {
+  private ProjectFormatter() {
+  }
+
+  /**
+   * Appends one line per project: the ID and name, indented the way ProjectsApp lists projects.
+   * 
+   * @param out The builder to append to.
+   * @param projects The projects to list.
+   * @return The builder.
+   */
+  public static StringBuilder appendSummaries(StringBuilder out, Iterable<Project> projects) {
+    for(Project project : projects) {
+      appendSummary(out, project).append('\n');
+    }
+
+    return out;
+  }
+
+  /**
+   * Appends "   ID: name" for a project, with no line break.
+   * 
+   * @param out The builder to append to.
+   * @param project The project.
+   * @return The builder.
+   */
+  public static StringBuilder appendSummary(StringBuilder out, Project project) {
+    out.append("   ");
+    appendInteger(out, project.getProjectId());
+    return out.append(": ").append(project.getProjectName());
+  }
+
+  /**
+   * Appends the full text of each project ({@link Project#toString()}), one after another.
+   * 
+   * @param out The builder to append to.
+   * @param projects The projects to render.
+   * @return The builder.
+   */
+  public static StringBuilder appendDetails(StringBuilder out, Iterable<Project> projects) {
+    for(Project project : projects) {
+      project.appendTo(out).append('\n');
+    }
+
+    return out;
+  }
+
+  /**
+   * Writes the full text of each project to an {@link Appendable}, such as a Writer. Each project
+   * is rendered into one reused builder and then written, so the buffer does not grow with the
+   * number of projects.
+   * 
+   * @param out Where to write the text.
+   * @param projects The projects to render.
+   * @throws IOException Thrown if the Appendable throws it.
+   */
+  public static void writeDetails(Appendable out, Iterable<Project> projects) throws IOException {
+    StringBuilder buffer = new StringBuilder(1024);
+
+    for(Project project : projects) {
+      buffer.setLength(0);
+      out.append(project.appendTo(buffer).append('\n'));
+    }
+  }
+
+  /**
+   * Appends an Integer as "null" or its digits. StringBuilder.append(Object) would create a String
+   * for the number first.
+   */
+  static StringBuilder appendInteger(StringBuilder out, Integer value) {
+    return value == null ? out.append("null") : out.append(value.intValue());
+  }
+}
@@ -0,0 +1,82 @@
+/**
+ * 
+ */
+package projects.entity;
+
+import java.math.BigDecimal;
+
+/**
+ * Summary figures for one project, read from the project_rollup table.
+ * 
+ * @author Promineo
+ *
+ */
+public class ProjectRollup {
+  private Integer projectId;
+  private String projectName;
+  private BigDecimal totalCost;
+  private Integer materialCount;
+  private Integer stepCount;
+  private BigDecimal hoursVariance;
+
+  public Integer getProjectId() {
+    return projectId;
+  }
+
+  public void setProjectId(Integer projectId) {
+    this.projectId = projectId;
+  }
+
+  public String getProjectName() {
+    return projectName;
+  }
+
+  public void setProjectName(String projectName) {
+    this.projectName = projectName;
+  }
+
+  /**
+   * @return The sum of num_required * cost over the project's materials.
+   */
+  public BigDecimal getTotalCost() {
+    return totalCost;
+  }
+
+  public void setTotalCost(BigDecimal totalCost) {
+    this.totalCost = totalCost;
+  }
+
+  public Integer getMaterialCount() {
+    return materialCount;
+  }
+
+  public void setMaterialCount(Integer materialCount) {
+    this.materialCount = materialCount;
+  }
+
+  public Integer getStepCount() {
+    return stepCount;
+  }
+
+  public void setStepCount(Integer stepCount) {
+    this.stepCount = stepCount;
+  }
+
+  /**
+   * @return Actual hours minus estimated hours, or null if either is unknown.
+   */
+  public BigDecimal getHoursVariance() {
+    return hoursVariance;
+  }
+
+  public void setHoursVariance(BigDecimal hoursVariance) {
+    this.hoursVariance = hoursVariance;
+  }
+
+  @Override
+  public String toString() {
+    return "ID=" + projectId + ", projectName=" + projectName + ", totalCost=" + totalCost
+        + ", materialCount=" + materialCount + ", stepCount=" + stepCount + ", hoursVariance="
+        + hoursVariance;
+  }
+}
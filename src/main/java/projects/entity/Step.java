@@ -47,6 +47,18 @@ public class Step {
 
   @Override
   public String toString() {
-    return "ID=" + stepId + ", stepText=" + stepText;
+    return appendTo(new StringBuilder(64)).toString();
+  }
+
+  /**
+   * Appends the same text as {@link #toString()} without creating intermediate strings.
+   * 
+   * @param out The builder to append to.
+   * @return The builder.
+   */
+  public StringBuilder appendTo(StringBuilder out) {
+    out.append("ID=");
+    ProjectFormatter.appendInteger(out, stepId);
+    return out.append(", stepText=").append(stepText);
   }
 }
@@ -0,0 +1,13 @@
+package projects.exception;
+
+/*
+ * Thrown when an update is based on a version of a project that has since been
+ * changed by someone else. Read the project again and reapply the change.
+ */
+@SuppressWarnings("serial")
+public class ConflictException extends DbException {
+
+	public ConflictException(String message) {
+		super(message);
+	}
+}
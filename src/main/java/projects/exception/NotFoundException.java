@@ -0,0 +1,12 @@
+package projects.exception;
+
+/*
+ * Thrown when a write names a project or step that does not exist.
+ */
+@SuppressWarnings("serial")
+public class NotFoundException extends DbException {
+
+	public NotFoundException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,160 @@
+package projects.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * This is an Appendable that encodes text as UTF-8 into a fixed byte buffer
+ * and writes the buffer to a channel whenever it fills. The buffers are
+ * allocated once, so the memory used does not depend on how much is written,
+ * and appending a field does not create any objects.
+ *
+ * Characters are collected in a char buffer, encoded into a direct byte buffer
+ * when it fills, and the byte buffer is written to the channel when it fills.
+ * close() writes what is left and closes the channel.
+ */
+public final class ByteBufferSink implements Appendable, Closeable {
+
+	private static final int CHAR_BUFFER_SIZE = 16 * 1024;
+	private static final int BYTE_BUFFER_SIZE = 64 * 1024;
+
+	private final WritableByteChannel channel;
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+	private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+	private final ByteBuffer bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+
+	private long bytesWritten;
+
+	public ByteBufferSink(WritableByteChannel channel) {
+		this.channel = channel;
+	}
+
+	/*
+	 * Open a sink that writes to a file, replacing it. With gzip the bytes are
+	 * compressed on the way to the file.
+	 */
+	public static ByteBufferSink open(Path file, boolean gzip) throws IOException {
+		FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+
+		if (!gzip) {
+			return new ByteBufferSink(fileChannel);
+		}
+
+		OutputStream compressed = new GZIPOutputStream(Channels.newOutputStream(fileChannel), BYTE_BUFFER_SIZE);
+		return new ByteBufferSink(Channels.newChannel(compressed));
+	}
+
+	@Override
+	public ByteBufferSink append(CharSequence csq) throws IOException {
+		CharSequence text = csq == null ? "null" : csq;
+		return append(text, 0, text.length());
+	}
+
+	@Override
+	public ByteBufferSink append(CharSequence csq, int start, int end) throws IOException {
+		// as Appendable says, a null is treated as the four characters "null"
+		if (csq == null) {
+			csq = "null";
+		}
+
+		while (start < end) {
+			if (!chars.hasRemaining()) {
+				encode(false);
+			}
+
+			int count = Math.min(end - start, chars.remaining());
+
+			if (csq instanceof String) {
+				chars.put((String) csq, start, start + count);
+			} else {
+				for (int index = start; index < start + count; index++) {
+					chars.put(csq.charAt(index));
+				}
+			}
+
+			start += count;
+		}
+
+		return this;
+	}
+
+	@Override
+	public ByteBufferSink append(char c) throws IOException {
+		if (!chars.hasRemaining()) {
+			encode(false);
+		}
+
+		chars.put(c);
+		return this;
+	}
+
+	// the number of bytes given to the channel so far (before compression)
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/*
+	 * Write everything appended so far to the channel. A trailing half of a
+	 * surrogate pair waits for its other half.
+	 */
+	public void flush() throws IOException {
+		encode(false);
+		drain();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			encode(true);
+
+			while (encoder.flush(bytes).isOverflow()) {
+				drain();
+			}
+
+			drain();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void encode(boolean endOfInput) throws IOException {
+		chars.flip();
+
+		while (true) {
+			CoderResult result = encoder.encode(chars, bytes, endOfInput);
+
+			if (result.isOverflow()) {
+				drain();
+			} else if (result.isUnderflow()) {
+				break;
+			} else {
+				result.throwException();
+			}
+		}
+
+		chars.compact();
+	}
+
+	private void drain() throws IOException {
+		bytes.flip();
+
+		while (bytes.hasRemaining()) {
+			bytesWritten += channel.write(bytes);
+		}
+
+		bytes.clear();
+	}
+}
@@ -0,0 +1,99 @@
+package projects.export;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/*
+ * This writes the export as CSV with one line per row. The first field says
+ * what kind of row the line is, and the rest are the columns of that row:
+ *
+ *   project,project_id,project_name,estimated_hours,actual_hours,difficulty,notes
+ *   material,project_id,material_id,material_name,num_required,cost
+ *   step,project_id,step_id,step_text,step_order
+ *   category,project_id,category_id,category_name
+ *
+ * The child rows of a project follow its project line. A null is an empty
+ * field and an empty string is "", so the two read back differently. Fields
+ * with a comma, quote, or line break are quoted (RFC 4180).
+ */
+public class CsvRowWriter extends ExportRowWriter {
+
+	public CsvRowWriter(Appendable out) {
+		super(out);
+	}
+
+	@Override
+	public void project(ResultSet rs) throws SQLException, IOException {
+		writeRow("project", rs, 6);
+	}
+
+	@Override
+	public void material(ResultSet rs) throws SQLException, IOException {
+		writeRow("material", rs, 5);
+	}
+
+	@Override
+	public void step(ResultSet rs) throws SQLException, IOException {
+		writeRow("step", rs, 4);
+	}
+
+	@Override
+	public void category(ResultSet rs) throws SQLException, IOException {
+		writeRow("category", rs, 3);
+	}
+
+	@Override
+	public void endProject() {
+	}
+
+	private void writeRow(String type, ResultSet rs, int columns) throws SQLException, IOException {
+		out.append(type);
+
+		for (int column = 1; column <= columns; column++) {
+			out.append(',');
+			writeField(rs.getString(column));
+		}
+
+		out.append('\n');
+		rows++;
+	}
+
+	private void writeField(String value) throws IOException {
+		if (value == null) {
+			return;
+		}
+
+		if (!needsQuotes(value)) {
+			out.append(value);
+			return;
+		}
+
+		out.append('"');
+		int start = 0;
+
+		for (int index = value.indexOf('"'); index >= 0; index = value.indexOf('"', start)) {
+			out.append(value, start, index + 1).append('"');
+			start = index + 1;
+		}
+
+		out.append(value, start, value.length()).append('"');
+	}
+
+	// an empty string is quoted, because an empty field is a null
+	private static boolean needsQuotes(String value) {
+		if (value.isEmpty()) {
+			return true;
+		}
+
+		for (int index = 0; index < value.length(); index++) {
+			char ch = value.charAt(index);
+
+			if (ch == ',' || ch == '"' || ch == '\n' || ch == '\r') {
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,35 @@
+package projects.export;
+
+import java.util.function.Function;
+
+/*
+ * The formats ProjectExporter can write.
+ */
+public enum ExportFormat {
+	CSV(".csv", CsvRowWriter::new), JSON_LINES(".jsonl", JsonLinesRowWriter::new);
+
+	private final String extension;
+	private final Function<Appendable, ExportRowWriter> factory;
+
+	ExportFormat(String extension, Function<Appendable, ExportRowWriter> factory) {
+		this.extension = extension;
+		this.factory = factory;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	public ExportRowWriter newWriter(Appendable out) {
+		return factory.apply(out);
+	}
+
+	/*
+	 * The format for a file name: .jsonl (optionally followed by .gz) is JSON
+	 * Lines and anything else is CSV.
+	 */
+	public static ExportFormat forFileName(String fileName) {
+		String name = fileName.endsWith(".gz") ? fileName.substring(0, fileName.length() - 3) : fileName;
+		return name.endsWith(JSON_LINES.extension) ? JSON_LINES : CSV;
+	}
+}
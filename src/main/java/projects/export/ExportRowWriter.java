@@ -0,0 +1,22 @@
+package projects.export;
+
+import projects.dao.ProjectRowHandler;
+
+/*
+ * The base class of the export formats. A format writes each row it is given
+ * to the Appendable and counts the rows.
+ */
+public abstract class ExportRowWriter implements ProjectRowHandler {
+
+	protected final Appendable out;
+	protected long rows;
+
+	protected ExportRowWriter(Appendable out) {
+		this.out = out;
+	}
+
+	// the number of project, material, step, and category rows written
+	public long getRows() {
+		return rows;
+	}
+}
@@ -0,0 +1,103 @@
+package projects.export;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import projects.json.JsonWriter;
+
+/*
+ * This writes the export as JSON Lines: one JSON object per project, on its
+ * own line, with the materials, steps, and categories nested in arrays. The
+ * member names are the entity field names, for example:
+ *
+ *   {"projectId":1,"projectName":"Shelf",...,"materials":[{"materialId":3,...}],"steps":[],"categories":[]}
+ *
+ * Decimal columns are written as JSON numbers with the text MySQL returns, so
+ * no precision is lost.
+ */
+public class JsonLinesRowWriter extends ExportRowWriter {
+
+	private static final String[] SECTIONS = { "materials", "steps", "categories" };
+
+	private final JsonWriter json;
+
+	// the child array that is open: -1 for none, else an index into SECTIONS
+	private int section;
+
+	public JsonLinesRowWriter(Appendable out) {
+		super(out);
+		json = new JsonWriter(out);
+	}
+
+	@Override
+	public void project(ResultSet rs) throws SQLException, IOException {
+		json.reset().beginObject();
+		json.name("projectId").number(rs.getString(1));
+		json.name("projectName").value(rs.getString(2));
+		json.name("estimatedHours").number(rs.getString(3));
+		json.name("actualHours").number(rs.getString(4));
+		json.name("difficulty").number(rs.getString(5));
+		json.name("notes").value(rs.getString(6));
+		section = -1;
+		rows++;
+	}
+
+	@Override
+	public void material(ResultSet rs) throws SQLException, IOException {
+		openSection(0);
+		json.beginObject();
+		json.name("materialId").number(rs.getString(2));
+		json.name("materialName").value(rs.getString(3));
+		json.name("numRequired").number(rs.getString(4));
+		json.name("cost").number(rs.getString(5));
+		json.endObject();
+		rows++;
+	}
+
+	@Override
+	public void step(ResultSet rs) throws SQLException, IOException {
+		openSection(1);
+		json.beginObject();
+		json.name("stepId").number(rs.getString(2));
+		json.name("stepText").value(rs.getString(3));
+		json.name("stepOrder").number(rs.getString(4));
+		json.endObject();
+		rows++;
+	}
+
+	@Override
+	public void category(ResultSet rs) throws SQLException, IOException {
+		openSection(2);
+		json.beginObject();
+		json.name("categoryId").number(rs.getString(2));
+		json.name("categoryName").value(rs.getString(3));
+		json.endObject();
+		rows++;
+	}
+
+	@Override
+	public void endProject() throws IOException {
+		openSection(SECTIONS.length);
+		json.endObject();
+		out.append('\n');
+	}
+
+	/*
+	 * Close the open child array and open the arrays up to the given one, so that
+	 * every project has all three arrays even when they are empty.
+	 */
+	private void openSection(int target) throws IOException {
+		while (section < target) {
+			if (section >= 0) {
+				json.endArray();
+			}
+
+			section++;
+
+			if (section < SECTIONS.length) {
+				json.name(SECTIONS[section]).beginArray();
+			}
+		}
+	}
+}
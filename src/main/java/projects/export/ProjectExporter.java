@@ -0,0 +1,121 @@
+package projects.export;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Objects;
+
+import projects.dao.DbConnection;
+import projects.exception.DbException;
+import projects.service.ProjectService;
+
+/*
+ * This exports every project, with its materials, steps, and categories, to a
+ * file. The rows are streamed from the database cursors into a ByteBufferSink,
+ * so memory use is the same for ten projects or ten million. Run it from the
+ * command line with the output file name:
+ *
+ *   mvn -q compile exec:java -Dexec.mainClass=projects.export.ProjectExporter \
+ *       -Dexec.args="projects.jsonl.gz"
+ *
+ * The format comes from the file name (.csv or .jsonl) and a .gz suffix
+ * compresses the output. The number of rows and rows per second are printed
+ * when the export finishes.
+ */
+public class ProjectExporter {
+
+	private final ProjectService projectService;
+
+	public ProjectExporter(ProjectService projectService) {
+		this.projectService = projectService;
+	}
+
+	public static void main(String[] args) {
+		if (args.length != 1) {
+			System.out.println("Usage: ProjectExporter <file.csv|file.jsonl>[.gz]");
+			System.exit(2);
+		}
+
+		Path file = Path.of(args[0]);
+		String fileName = file.getFileName().toString();
+
+		try {
+			ExportResult result = new ProjectExporter(new ProjectService()).export(file,
+					ExportFormat.forFileName(fileName), fileName.endsWith(".gz"));
+			System.out.println("Exported " + result);
+		} finally {
+			DbConnection.close();
+		}
+	}
+
+	/*
+	 * Write every project to the file in the given format, replacing the file.
+	 */
+	public ExportResult export(Path file, ExportFormat format, boolean gzip) {
+		long start = System.nanoTime();
+
+		try (ByteBufferSink sink = ByteBufferSink.open(file, gzip)) {
+			ExportRowWriter writer = format.newWriter(sink);
+			int projects = projectService.exportProjects(writer);
+
+			sink.flush();
+			return new ExportResult(projects, writer.getRows(), sink.getBytesWritten(), System.nanoTime() - start);
+
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to write " + file, e);
+		} catch (DbException e) {
+			// the handler's IOExceptions come back wrapped by the DAO
+			Throwable cause = e.getCause();
+
+			if (Objects.nonNull(cause) && cause instanceof IOException) {
+				throw new UncheckedIOException("Unable to write " + file, (IOException) cause);
+			}
+
+			throw e;
+		}
+	}
+
+	/*
+	 * What an export wrote and how fast.
+	 */
+	public static class ExportResult {
+		private final int projects;
+		private final long rows;
+		private final long bytes;
+		private final long elapsedNanos;
+
+		ExportResult(int projects, long rows, long bytes, long elapsedNanos) {
+			this.projects = projects;
+			this.rows = rows;
+			this.bytes = bytes;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		public int getProjects() {
+			return projects;
+		}
+
+		public long getRows() {
+			return rows;
+		}
+
+		// uncompressed bytes
+		public long getBytes() {
+			return bytes;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		public double getRowsPerSecond() {
+			return elapsedNanos == 0 ? 0.0 : rows * 1_000_000_000.0 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d projects, %d rows, %d bytes in %.2f s (%.0f rows/s)", projects, rows, bytes,
+					elapsedNanos / 1e9, getRowsPerSecond());
+		}
+	}
+}
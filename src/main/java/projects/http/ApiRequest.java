@@ -0,0 +1,102 @@
+package projects.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import projects.http.ProjectServer.ApiException;
+import projects.json.JsonReader;
+
+/*
+ * The parts of an HTTP request ProjectApi uses: the method, the decoded path
+ * segments, the query parameters, and the body parsed as JSON.
+ */
+class ApiRequest {
+
+	private final HttpExchange exchange;
+	private final List<String> path;
+	private final Map<String, String> query = new HashMap<>();
+
+	ApiRequest(HttpExchange exchange) {
+		this.exchange = exchange;
+		this.path = Arrays.stream(exchange.getRequestURI().getRawPath().split("/")).filter(part -> !part.isEmpty())
+				.map(part -> URLDecoder.decode(part, StandardCharsets.UTF_8)).toList();
+
+		String rawQuery = exchange.getRequestURI().getRawQuery();
+
+		if (Objects.nonNull(rawQuery)) {
+			for (String pair : rawQuery.split("&")) {
+				int equals = pair.indexOf('=');
+				String name = equals < 0 ? pair : pair.substring(0, equals);
+				String value = equals < 0 ? "" : pair.substring(equals + 1);
+
+				query.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+						URLDecoder.decode(value, StandardCharsets.UTF_8));
+			}
+		}
+	}
+
+	String getMethod() {
+		return exchange.getRequestMethod();
+	}
+
+	// the path segments, so /projects/7/steps is [projects, 7, steps]
+	List<String> getPath() {
+		return path;
+	}
+
+	// a query parameter, or null if it is missing
+	String getParameter(String name) {
+		return query.get(name);
+	}
+
+	int getIntParameter(String name, int defaultValue) {
+		String value = query.get(name);
+		return Objects.isNull(value) || value.isEmpty() ? defaultValue : parseInt(value, name);
+	}
+
+	Integer getIntParameter(String name) {
+		String value = query.get(name);
+		return Objects.isNull(value) || value.isEmpty() ? null : parseInt(value, name);
+	}
+
+	/*
+	 * Read the body and parse it as JSON. A body larger than
+	 * projects.http.maxBodyBytes is refused with 413.
+	 */
+	Object readJson() {
+		try (InputStream in = exchange.getRequestBody()) {
+			byte[] body = in.readNBytes(ProjectServer.MAX_BODY_BYTES + 1);
+
+			if (body.length > ProjectServer.MAX_BODY_BYTES) {
+				throw new ApiException(413, "The request body is larger than " + ProjectServer.MAX_BODY_BYTES
+						+ " bytes");
+			}
+
+			if (body.length == 0) {
+				throw new IllegalArgumentException("The request has no body");
+			}
+
+			return JsonReader.parse(new String(body, StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	static int parseInt(String value, String name) {
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(name + " must be a whole number, not " + value);
+		}
+	}
+}
@@ -0,0 +1,471 @@
+package projects.http;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+import projects.analytics.Aggregate;
+import projects.analytics.Measure;
+import projects.analytics.ProjectSnapshot;
+import projects.dao.StatementCacheStats;
+import projects.entity.Project;
+import projects.entity.ProjectRollup;
+import projects.entity.Step;
+import projects.export.JsonLinesRowWriter;
+import projects.http.ProjectServer.ApiException;
+import projects.http.ProjectServer.ApiResponse;
+import projects.json.JsonWriter;
+import projects.json.ProjectJson;
+import projects.service.ProjectCache.CacheStats;
+import projects.service.ProjectService;
+import projects.service.ProjectValidator;
+
+/*
+ * The endpoints of ProjectServer. Request and response bodies are JSON, with
+ * the member names of ProjectJson.
+ *
+ *   GET    /projects                       every project, without details, in name order
+ *   GET    /projects?limit=n[&afterName=&afterId=]   a page of projects
+ *   GET    /projects?ids=1,2,3             the given projects, with details
+ *   POST   /projects                       add a project, or an array of projects
+ *   DELETE /projects?ids=1,2,3             delete the given projects, all or none
+ *   GET    /projects/{id}                  a project with details
+ *   PUT    /projects/{id}                  replace a project's details, if "version" is current
+ *   DELETE /projects/{id}                  delete a project
+ *   POST   /projects/{id}/steps            add a step {"stepText":..., "afterStepId":...}
+ *   PUT    /projects/{id}/steps/{stepId}   move a step {"afterStepId":...}
+ *   GET    /projects/{id}/rollup           a project's cost and counts
+ *   GET    /rollups?limit=n                the most expensive projects
+ *   GET    /search?q=words[&limit=n]       projects matching every word
+ *   POST   /search/rebuild                 rebuild the search index
+ *   GET    /analytics?measure=m[&minDifficulty=&maxDifficulty=&name=]   totals from the snapshot
+ *   POST   /analytics/reload               reload the analytics snapshot
+ *   GET    /export                         every project with details, as JSON Lines
+ *   GET    /stats                          cache and statement cache counters
+ *
+ * Without afterStepId a step is added at the end; a null afterStepId puts it
+ * first. A PUT with the version the project was read at answers 409 if the
+ * project has been changed since; a PUT without a version always saves.
+ */
+class ProjectApi {
+
+	private static final String JSON_LINES = "application/x-ndjson; charset=utf-8";
+	private static final int DEFAULT_LIMIT = 20;
+
+	private final ProjectService projectService;
+
+	ProjectApi(ProjectService projectService) {
+		this.projectService = projectService;
+	}
+
+	ApiResponse handle(ApiRequest request) {
+		List<String> path = request.getPath();
+		String method = request.getMethod();
+		String resource = path.isEmpty() ? "" : path.get(0);
+
+		switch (resource) {
+		case "projects":
+			if (path.size() == 1) {
+				if ("DELETE".equals(method)) {
+					return deleteProjects(request);
+				}
+
+				return route(method, "GET", () -> listProjects(request), "POST", () -> addProjects(request));
+			}
+
+			return project(request, method, path);
+
+		case "rollups":
+			return route(path, 1, method, "GET", () -> mostExpensiveProjects(request));
+
+		case "search":
+			if (path.size() == 2 && "rebuild".equals(path.get(1))) {
+				return route(method, "POST", () -> count("indexed", projectService.rebuildSearchIndex()));
+			}
+
+			return route(path, 1, method, "GET", () -> search(request));
+
+		case "analytics":
+			if (path.size() == 2 && "reload".equals(path.get(1))) {
+				return route(method, "POST", () -> count("projects", projectService.reloadAnalyticsSnapshot().size()));
+			}
+
+			return route(path, 1, method, "GET", () -> analytics(request));
+
+		case "export":
+			return route(path, 1, method, "GET", this::export);
+
+		case "stats":
+			return route(path, 1, method, "GET", this::stats);
+
+		default:
+			throw notFound();
+		}
+	}
+
+	// /projects/{id}...
+	private ApiResponse project(ApiRequest request, String method, List<String> path) {
+		Integer projectId = ApiRequest.parseInt(path.get(1), "The project ID");
+
+		if (path.size() == 2) {
+			switch (method) {
+			case "GET":
+				Project project = projectService.fetchProjectById(projectId);
+				return ApiResponse.json(200, json -> ProjectJson.writeProject(json, project, true));
+			case "PUT":
+				return modifyProject(request, projectId);
+			case "DELETE":
+				projectService.deleteProject(projectId);
+				return ApiResponse.noContent();
+			default:
+				throw methodNotAllowed();
+			}
+		}
+
+		switch (path.get(2)) {
+		case "steps":
+			if (path.size() == 3) {
+				return route(method, "POST", () -> addStep(request, projectId));
+			}
+
+			if (path.size() == 4) {
+				Integer stepId = ApiRequest.parseInt(path.get(3), "The step ID");
+				return route(method, "PUT", () -> moveStep(request, projectId, stepId));
+			}
+
+			throw notFound();
+
+		case "rollup":
+			return route(path, 3, method, "GET", () -> {
+				ProjectRollup rollup = projectService.fetchProjectRollup(projectId);
+				return ApiResponse.json(200, json -> ProjectJson.writeRollup(json, rollup));
+			});
+
+		default:
+			throw notFound();
+		}
+	}
+
+	/*
+	 * The projects are written as the DAO reads them, so the list is never held in
+	 * memory. That keeps a connection while the client reads, so the response is
+	 * streamed within the server's stream limit. A page or a list of IDs is loaded
+	 * first.
+	 */
+	private ApiResponse listProjects(ApiRequest request) {
+		String ids = request.getParameter("ids");
+
+		if (Objects.nonNull(ids)) {
+			return projectArray(200, projectService.fetchProjectsByIds(projectIds(ids)), true);
+		}
+
+		Integer limit = request.getIntParameter("limit");
+
+		if (Objects.nonNull(limit)) {
+			return projectArray(200, projectService.fetchProjectsPage(request.getParameter("afterName"),
+					request.getIntParameter("afterId"), limit), false);
+		}
+
+		return ApiResponse.json(200, json -> {
+			json.beginArray();
+
+			projectService.forEachProject(project -> {
+				try {
+					ProjectJson.writeProject(json, project, false);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+
+			json.endArray();
+		}).streamed();
+	}
+
+	/*
+	 * Add one project (an object) or several (an array) in one transaction.
+	 * Projects without details are added with addProject(), the rest with
+	 * addProjects(), which also inserts materials, steps, and category links.
+	 */
+	private ApiResponse addProjects(ApiRequest request) {
+		Object body = request.readJson();
+
+		if (body instanceof List) {
+			List<Project> projects = new ArrayList<>();
+
+			for (Object element : (List<?>) body) {
+				projects.add(readProject(element));
+			}
+
+			return projectArray(201, projectService.addProjects(projects), true);
+		}
+
+		Project project = readProject(body);
+		boolean hasDetails = !project.getMaterials().isEmpty() || !project.getSteps().isEmpty()
+				|| !project.getCategories().isEmpty();
+		Project added = hasDetails ? projectService.addProjects(List.of(project)).get(0)
+				: projectService.addProject(project);
+
+		return ApiResponse.json(201, json -> ProjectJson.writeProject(json, added, true));
+	}
+
+	private ApiResponse modifyProject(ApiRequest request, Integer projectId) {
+		Object body = request.readJson();
+		Project details = readProject(body);
+		Integer version = ProjectJson.asInteger(ProjectJson.asObject(body, "The project").get("version"), "version");
+		Project current = projectService.fetchProjectById(projectId);
+		Project project;
+
+		if (Objects.nonNull(version) && version.equals(current.getVersion())) {
+			// the client read the version that is cached, so the cached values are the
+			// ones it changed. Set the details on a copy, so only the ones that differ
+			// are written
+			project = current.copy();
+			project.setProjectName(details.getProjectName());
+			project.setEstimatedHours(details.getEstimatedHours());
+			project.setActualHours(details.getActualHours());
+			project.setDifficulty(details.getDifficulty());
+			project.setNotes(details.getNotes());
+		} else {
+			// the cached copy may be older or newer than what the client read, so it
+			// can't say what changed. Write every field
+			project = details;
+			project.setProjectId(projectId);
+			project.markAllFieldsChanged();
+		}
+
+		project.setVersion(version);
+
+		Project saved = projectService.modifyProjectDetails(project);
+
+		// a project built from the request has no materials, steps, or categories,
+		// so read it unless the service returned the cached one brought up to date
+		Project modified = saved == details ? projectService.fetchProjectById(projectId) : saved;
+		return ApiResponse.json(200, json -> ProjectJson.writeProject(json, modified, true));
+	}
+
+	private static Project readProject(Object json) {
+		Project project = ProjectJson.readProject(json);
+		ProjectValidator.validate(project);
+		return project;
+	}
+
+	private ApiResponse addStep(ApiRequest request, Integer projectId) {
+		Map<String, Object> body = ProjectJson.asObject(request.readJson(), "The step");
+		Step step = ProjectJson.readStep(body);
+
+		if (Objects.isNull(step.getStepText()) || step.getStepText().isBlank()) {
+			throw new IllegalArgumentException("The step has no text");
+		}
+
+		step.setProjectId(projectId);
+
+		if (body.containsKey("afterStepId")) {
+			projectService.insertStepAfter(step, ProjectJson.asInteger(body.get("afterStepId"), "afterStepId"));
+		} else {
+			projectService.addStep(step);
+		}
+
+		return ApiResponse.json(201, json -> ProjectJson.writeStep(json, step));
+	}
+
+	private ApiResponse moveStep(ApiRequest request, Integer projectId, Integer stepId) {
+		Map<String, Object> body = ProjectJson.asObject(request.readJson(), "The move");
+
+		projectService.moveStepAfter(projectId, stepId,
+				ProjectJson.asInteger(body.get("afterStepId"), "afterStepId"));
+		return ApiResponse.noContent();
+	}
+
+	private ApiResponse mostExpensiveProjects(ApiRequest request) {
+		List<ProjectRollup> rollups = projectService.fetchMostExpensiveProjects(limit(request));
+
+		return ApiResponse.json(200, json -> {
+			json.beginArray();
+
+			for (ProjectRollup rollup : rollups) {
+				ProjectJson.writeRollup(json, rollup);
+			}
+
+			json.endArray();
+		});
+	}
+
+	private ApiResponse search(ApiRequest request) {
+		String query = request.getParameter("q");
+
+		if (Objects.isNull(query) || query.isBlank()) {
+			throw new IllegalArgumentException("Give the words to search for as q");
+		}
+
+		List<Integer> projectIds = projectService.searchProjects(query, limit(request));
+		return projectArray(200, projectService.fetchProjectsByIds(projectIds), false);
+	}
+
+	/*
+	 * The count and totals of a measure over the projects that match the filters,
+	 * overall and by difficulty.
+	 */
+	private ApiResponse analytics(ApiRequest request) {
+		String measureName = request.getParameter("measure");
+		Measure measure;
+
+		try {
+			measure = Objects.isNull(measureName) ? Measure.ESTIMATED_HOURS : Measure.valueOf(measureName);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("measure must be one of " + List.of(Measure.values()));
+		}
+
+		ProjectSnapshot snapshot = projectService.getAnalyticsSnapshot();
+		IntPredicate filter = snapshot.difficultyBetween(request.getIntParameter("minDifficulty", Integer.MIN_VALUE),
+				request.getIntParameter("maxDifficulty", Integer.MAX_VALUE));
+		String name = request.getParameter("name");
+
+		if (Objects.nonNull(name)) {
+			filter = filter.and(snapshot.nameContains(name));
+		}
+
+		Aggregate total = snapshot.aggregate(measure, filter);
+		Map<Integer, Aggregate> byDifficulty = snapshot.aggregateByDifficulty(measure, filter);
+
+		return ApiResponse.json(200, json -> {
+			json.beginObject().name("measure").value(measure.name()).name("total");
+			writeAggregate(json, total);
+			json.name("byDifficulty").beginObject();
+
+			for (Map.Entry<Integer, Aggregate> entry : byDifficulty.entrySet()) {
+				json.name(String.valueOf(entry.getKey()));
+				writeAggregate(json, entry.getValue());
+			}
+
+			json.endObject().endObject();
+		});
+	}
+
+	private static void writeAggregate(JsonWriter json, Aggregate aggregate) throws IOException {
+		json.beginObject();
+		json.name("count").value(aggregate.getCount());
+		json.name("sum").value(aggregate.getSum());
+		json.name("min").value(aggregate.getMin());
+		json.name("max").value(aggregate.getMax());
+		json.name("average").value(aggregate.getAverage());
+		json.endObject();
+	}
+
+	// every project with details, streamed from the export cursors
+	private ApiResponse export() {
+		return new ApiResponse(200, JSON_LINES, out -> projectService.exportProjects(new JsonLinesRowWriter(out)))
+				.streamed();
+	}
+
+	private ApiResponse stats() {
+		CacheStats cache = projectService.getCacheStats();
+		StatementCacheStats statements = projectService.getStatementCacheStats();
+
+		return ApiResponse.json(200, json -> {
+			json.beginObject().name("projectCache").beginObject();
+			json.name("hits").value(cache.getHits());
+			json.name("misses").value(cache.getMisses());
+			json.name("hitRate").value(BigDecimal.valueOf(cache.getHitRate()));
+			json.name("evictions").value(cache.getEvictions());
+			json.name("size").value(cache.getSize());
+			json.name("maxSize").value(cache.getMaxSize());
+			json.endObject().name("statementCache").beginObject();
+			json.name("prepares").value(statements.getPrepares());
+			json.name("executes").value(statements.getExecutes());
+			json.name("reprepares").value(statements.getReprepares());
+			json.name("hitRate").value(BigDecimal.valueOf(statements.getHitRate()));
+			json.endObject().endObject();
+		});
+	}
+
+	private static ApiResponse projectArray(int status, List<Project> projects, boolean withDetails) {
+		return ApiResponse.json(status, json -> {
+			json.beginArray();
+
+			for (Project project : projects) {
+				ProjectJson.writeProject(json, project, withDetails);
+			}
+
+			json.endArray();
+		});
+	}
+
+	// the projects named by ?ids=, in one transaction
+	private ApiResponse deleteProjects(ApiRequest request) {
+		String ids = request.getParameter("ids");
+
+		if (Objects.isNull(ids)) {
+			throw new IllegalArgumentException("ids is required");
+		}
+
+		return count("deleted", projectService.deleteProjects(projectIds(ids)));
+	}
+
+	private static List<Integer> projectIds(String ids) {
+		List<Integer> projectIds = new ArrayList<>();
+
+		for (String id : ids.split(",")) {
+			projectIds.add(ApiRequest.parseInt(id.strip(), "ids"));
+		}
+
+		return projectIds;
+	}
+
+	private static ApiResponse count(String name, int count) {
+		return ApiResponse.json(200, json -> json.beginObject().name(name).value(count).endObject());
+	}
+
+	private static int limit(ApiRequest request) {
+		int limit = request.getIntParameter("limit", DEFAULT_LIMIT);
+
+		if (limit < 1) {
+			throw new IllegalArgumentException("limit must be at least 1");
+		}
+
+		return limit;
+	}
+
+	@FunctionalInterface
+	private interface Route {
+		ApiResponse run();
+	}
+
+	private static ApiResponse route(String method, String allowed, Route route) {
+		if (!allowed.equals(method)) {
+			throw methodNotAllowed();
+		}
+
+		return route.run();
+	}
+
+	private static ApiResponse route(String method, String first, Route firstRoute, String second,
+			Route secondRoute) {
+		if (first.equals(method)) {
+			return firstRoute.run();
+		}
+
+		return route(method, second, secondRoute);
+	}
+
+	// a route for a path with exactly length segments
+	private static ApiResponse route(List<String> path, int length, String method, String allowed, Route route) {
+		if (path.size() != length) {
+			throw notFound();
+		}
+
+		return route(method, allowed, route);
+	}
+
+	private static ApiException notFound() {
+		return new ApiException(404, "No such resource");
+	}
+
+	private static ApiException methodNotAllowed() {
+		return new ApiException(405, "Method not allowed");
+	}
+}
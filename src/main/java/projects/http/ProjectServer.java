@@ -0,0 +1,319 @@
+package projects.http;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import projects.dao.DbConnection;
+import projects.dao.SchemaMigrator;
+import projects.exception.ConflictException;
+import projects.exception.NotFoundException;
+import projects.json.JsonWriter;
+import projects.service.ProjectService;
+
+/*
+ * This serves ProjectService as a JSON API over HTTP, using the HTTP server
+ * built into the JDK. See ProjectApi for the endpoints. Start it with:
+ *
+ *   mvn -q compile exec:java -Dexec.mainClass=projects.http.ProjectServer
+ *
+ * Each request is handled on its own virtual thread, so a request that waits
+ * for the database does not hold a platform thread. Responses are written as
+ * they are produced, so a list of every project is never built in memory.
+ * Connections are kept alive between requests (HTTP/1.1 persistent
+ * connections), so a client only pays the TCP handshake once.
+ *
+ * The number of requests handled at once is limited
+ * (-Dprojects.http.maxConcurrency). A request that can't start within
+ * -Dprojects.http.queueTimeoutMs is answered with 503 and Retry-After, so an
+ * overloaded server sheds load instead of queuing without bound. The database
+ * work itself is still limited by the connection pool.
+ *
+ * A response streamed from the database holds a pooled connection until the
+ * client has read all of it, so a few slow clients could take every
+ * connection. These responses have their own, smaller limit
+ * (-Dprojects.http.maxStreams, by default half the pool and always below it),
+ * and wait for it for the same queue timeout.
+ */
+public class ProjectServer {
+
+	private static final int PORT = Integer.getInteger("projects.http.port", 8080);
+	private static final int MAX_CONCURRENCY = Integer.getInteger("projects.http.maxConcurrency", 256);
+	private static final long QUEUE_TIMEOUT_MS = Long.getLong("projects.http.queueTimeoutMs", 100L);
+	private static final int BACKLOG = Integer.getInteger("projects.http.backlog", 1024);
+	private static final int MAX_STREAMS = Integer.getInteger("projects.http.maxStreams",
+			DbConnection.getMaxPoolSize() / 2);
+
+	// the largest request body accepted
+	static final int MAX_BODY_BYTES = Integer.getInteger("projects.http.maxBodyBytes", 1024 * 1024);
+
+	private static final int RESPONSE_BUFFER_SIZE = 8 * 1024;
+
+	private static final Logger LOG = LoggerFactory.getLogger(ProjectServer.class);
+
+	static {
+		// the JDK server leaves Nagle's algorithm on unless told otherwise. A response
+		// is written as headers and then chunks, and with Nagle on each small response
+		// waits for the client's delayed ACK (about 40 ms) on a kept-alive connection
+		if (Objects.isNull(System.getProperty("sun.net.httpserver.nodelay"))) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final Semaphore permits;
+
+	// responses that stream from the database. Kept below the pool size, so other
+	// requests can still get a connection while slow clients read
+	private final Semaphore streams = new Semaphore(
+			Math.max(1, Math.min(MAX_STREAMS, DbConnection.getMaxPoolSize() - 1)));
+	private final ProjectApi api;
+
+	public ProjectServer(ProjectService projectService, int port, int maxConcurrency) throws IOException {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("maxConcurrency must be at least 1 but was " + maxConcurrency);
+		}
+
+		this.api = new ProjectApi(projectService);
+		this.permits = new Semaphore(maxConcurrency);
+		this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+	}
+
+	public static void main(String[] args) throws IOException {
+		// bring the schema up to date unless -Dprojects.migrate=false
+		if (Boolean.parseBoolean(System.getProperty("projects.migrate", "true"))) {
+			new SchemaMigrator(DbConnection.getDataSource()).migrate();
+		}
+
+		ProjectServer server = new ProjectServer(new ProjectService(), PORT, MAX_CONCURRENCY);
+
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			server.stop(1);
+			DbConnection.close();
+		}));
+
+		server.start();
+		System.out.println("Serving projects on port " + server.getPort());
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	/*
+	 * Stop accepting connections, wait up to delaySeconds for the requests that
+	 * are running, then stop.
+	 */
+	public void stop(int delaySeconds) {
+		server.stop(delaySeconds);
+		executor.shutdown();
+	}
+
+	// the port the server listens on, which is useful when it was started on port 0
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	private void handle(HttpExchange exchange) {
+		try (exchange) {
+			if (!acquire(permits)) {
+				exchange.getResponseHeaders().set("Retry-After", "1");
+				send(exchange, ApiResponse.error(503, "The server is busy"));
+				return;
+			}
+
+			try {
+				ApiResponse response = respond(exchange);
+
+				if (response.isStreamed()) {
+					sendStreamed(exchange, response);
+				} else {
+					send(exchange, response);
+				}
+			} finally {
+				permits.release();
+			}
+		} catch (IOException | UncheckedIOException e) {
+			// the client went away. Closing the exchange drops the connection
+		} catch (RuntimeException e) {
+			// a streamed response failed after its status was sent. Closing the exchange
+			// drops the connection, so the client sees a truncated response
+			LOG.error("{} {} failed after the response started", exchange.getRequestMethod(),
+					exchange.getRequestURI(), e);
+		}
+	}
+
+	private static boolean acquire(Semaphore semaphore) {
+		try {
+			return semaphore.tryAcquire(QUEUE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/*
+	 * Run the request and turn exceptions into error responses. The work that can
+	 * fail runs here, before the status is sent, except for responses that stream
+	 * from the database.
+	 */
+	private ApiResponse respond(HttpExchange exchange) {
+		try {
+			return api.handle(new ApiRequest(exchange));
+		} catch (ApiException e) {
+			return ApiResponse.error(e.getStatus(), e.getMessage());
+		} catch (IllegalArgumentException e) {
+			return ApiResponse.error(400, e.getMessage());
+		} catch (NotFoundException | NoSuchElementException e) {
+			return ApiResponse.error(404, e.getMessage());
+		} catch (ConflictException e) {
+			return ApiResponse.error(409, e.getMessage());
+		} catch (RuntimeException e) {
+			LOG.error("{} {} failed", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+			return ApiResponse.error(500, "Internal error");
+		}
+	}
+
+	// send a response that holds a connection while it is written, within the stream limit
+	private void sendStreamed(HttpExchange exchange, ApiResponse response) throws IOException {
+		if (!acquire(streams)) {
+			exchange.getResponseHeaders().set("Retry-After", "1");
+			send(exchange, ApiResponse.error(503, "Too many responses are streaming"));
+			return;
+		}
+
+		try {
+			send(exchange, response);
+		} finally {
+			streams.release();
+		}
+	}
+
+	/*
+	 * Send the status and headers, then write the body straight to the response.
+	 * The length isn't known in advance, so the body is sent with chunked transfer
+	 * encoding. Closing the exchange reads what is left of the request body, so
+	 * the connection can be reused.
+	 */
+	private static void send(HttpExchange exchange, ApiResponse response) throws IOException {
+		if (Objects.isNull(response.getBody())) {
+			exchange.sendResponseHeaders(response.getStatus(), -1);
+			return;
+		}
+
+		exchange.getResponseHeaders().set("Content-Type", response.getContentType());
+		exchange.sendResponseHeaders(response.getStatus(), 0);
+
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(),
+				StandardCharsets.UTF_8), RESPONSE_BUFFER_SIZE)) {
+			response.getBody().write(out);
+		}
+	}
+
+	/*
+	 * A response with a status and, optionally, a body that is written when the
+	 * response is sent.
+	 */
+	static class ApiResponse {
+		private static final String JSON = "application/json; charset=utf-8";
+
+		private final int status;
+		private final String contentType;
+		private final Body body;
+		private final boolean streamed;
+
+		ApiResponse(int status, String contentType, Body body) {
+			this(status, contentType, body, false);
+		}
+
+		private ApiResponse(int status, String contentType, Body body, boolean streamed) {
+			this.status = status;
+			this.contentType = contentType;
+			this.body = body;
+			this.streamed = streamed;
+		}
+
+		static ApiResponse json(int status, JsonBody body) {
+			return new ApiResponse(status, JSON, out -> body.write(new JsonWriter(out)));
+		}
+
+		static ApiResponse noContent() {
+			return new ApiResponse(204, null, null);
+		}
+
+		static ApiResponse error(int status, String message) {
+			return json(status, json -> json.beginObject().name("error").value(message).endObject());
+		}
+
+		/*
+		 * The same response, marked as reading from the database while its body is
+		 * written. It is sent within the stream limit.
+		 */
+		ApiResponse streamed() {
+			return new ApiResponse(status, contentType, body, true);
+		}
+
+		int getStatus() {
+			return status;
+		}
+
+		boolean isStreamed() {
+			return streamed;
+		}
+
+		String getContentType() {
+			return contentType;
+		}
+
+		Body getBody() {
+			return body;
+		}
+	}
+
+	@FunctionalInterface
+	interface Body {
+		void write(Appendable out) throws IOException;
+	}
+
+	@FunctionalInterface
+	interface JsonBody {
+		void write(JsonWriter json) throws IOException;
+	}
+
+	/*
+	 * Thrown by ProjectApi to answer with a specific status.
+	 */
+	@SuppressWarnings("serial")
+	static class ApiException extends RuntimeException {
+		private final int status;
+
+		ApiException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+
+		int getStatus() {
+			return status;
+		}
+	}
+}
@@ -0,0 +1,467 @@
+package projects.importer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import projects.dao.DbConnection;
+import projects.entity.Project;
+import projects.exception.DbException;
+import projects.export.ExportFormat;
+import projects.service.ProjectService;
+
+/*
+ * This imports projects, with their materials, steps, and categories, from a
+ * CSV or JSON Lines file in the layout ProjectExporter writes. Run it from the
+ * command line with the file name:
+ *
+ *   mvn -q compile exec:java -Dexec.mainClass=projects.importer.ProjectImporter \
+ *       -Dexec.args="projects.jsonl.gz"
+ *
+ * The import is a pipeline:
+ *
+ * 1. The file is read through a large buffer (and gunzipped if it ends in .gz)
+ *    and split into records, one per project, by RecordReader.
+ * 2. Groups of records are parsed and validated in parallel by RecordParser.
+ * 3. The groups are inserted in file order, each with a single call to
+ *    ProjectService.addProjects(), which batches the rows into multi-row
+ *    INSERTs in one transaction. The group size is the commit interval
+ *    (-Dprojects.import.commitInterval, 500 by default).
+ *
+ * A record that fails to parse or validate, or that the database refuses as
+ * bad data (a category that doesn't exist, for example), is written unchanged to
+ * <name>.rejects.csv or <name>.rejects.jsonl, and the reason to
+ * <name>.rejects.log. The rejects file can be fixed and imported on its own.
+ * Any other database error (a lost connection, a pool timeout) stops the
+ * import without moving the checkpoint, so it can be run again once the
+ * database is back.
+ *
+ * After each commit the number of records read so far is saved to
+ * <file>.checkpoint. If the import stops, running it again resumes after the
+ * last commit; delete the checkpoint to import the file again from the start.
+ * A crash between a commit and saving the checkpoint imports that one group
+ * twice, and so does an error that stops the import while a failed group is
+ * being inserted one project at a time.
+ */
+public class ProjectImporter {
+
+	private static final int COMMIT_INTERVAL = Integer.getInteger("projects.import.commitInterval", 500);
+	private static final int PARSER_THREADS = Integer.getInteger("projects.import.threads",
+			Runtime.getRuntime().availableProcessors());
+
+	private final ProjectService projectService;
+	private final int commitInterval;
+	private final int parserThreads;
+
+	public ProjectImporter(ProjectService projectService) {
+		this(projectService, COMMIT_INTERVAL, PARSER_THREADS);
+	}
+
+	public ProjectImporter(ProjectService projectService, int commitInterval, int parserThreads) {
+		if (commitInterval < 1 || parserThreads < 1) {
+			throw new IllegalArgumentException("The commit interval and parser threads must be at least 1");
+		}
+
+		this.projectService = projectService;
+		this.commitInterval = commitInterval;
+		this.parserThreads = parserThreads;
+	}
+
+	public static void main(String[] args) {
+		if (args.length != 1) {
+			System.out.println("Usage: ProjectImporter <file.csv|file.jsonl>[.gz]");
+			System.exit(2);
+		}
+
+		Path file = Path.of(args[0]);
+
+		try {
+			ImportResult result = new ProjectImporter(new ProjectService()).importFile(file,
+					ExportFormat.forFileName(file.getFileName().toString()));
+			System.out.println("Imported " + result);
+		} finally {
+			DbConnection.close();
+		}
+	}
+
+	/*
+	 * Import the file, resuming from its checkpoint if there is one.
+	 */
+	public ImportResult importFile(Path file, ExportFormat format) {
+		long start = System.nanoTime();
+		Checkpoint checkpoint = new Checkpoint(file);
+		ExecutorService parsers = Executors.newFixedThreadPool(parserThreads);
+
+		try (RecordReader reader = RecordReader.open(file, format);
+				Quarantine quarantine = new Quarantine(file, format)) {
+			long skipped = checkpoint.load();
+
+			while (reader.getRecordNumber() < skipped && reader.next() != null) {
+				// already imported
+			}
+
+			ImportResult result = new ImportResult(reader.getRecordNumber());
+
+			// parse ahead of the inserts, but only so far, so memory use stays bounded
+			Deque<Future<Batch>> parsing = new ArrayDeque<>();
+			Batch batch;
+
+			while ((batch = readBatch(reader)) != null) {
+				Batch next = batch;
+				parsing.add(parsers.submit(() -> next.parse(format)));
+
+				if (parsing.size() > parserThreads * 2) {
+					write(await(parsing.poll()), quarantine, checkpoint, result);
+				}
+			}
+
+			while (!parsing.isEmpty()) {
+				write(await(parsing.poll()), quarantine, checkpoint, result);
+			}
+
+			result.elapsedNanos = System.nanoTime() - start;
+			return result;
+
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to import " + file, e);
+		} finally {
+			parsers.shutdownNow();
+		}
+	}
+
+	private Batch readBatch(RecordReader reader) throws IOException {
+		List<String> records = new ArrayList<>(commitInterval);
+		String record;
+
+		while (records.size() < commitInterval && (record = reader.next()) != null) {
+			records.add(record);
+		}
+
+		return records.isEmpty() ? null : new Batch(reader.getRecordNumber() - records.size() + 1, records);
+	}
+
+	// a parse only fails here on an Error, as Batch.parse() rejects records that throw
+	private static Batch await(Future<Batch> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while parsing the import", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Unable to parse the import", e.getCause());
+		}
+	}
+
+	/*
+	 * Insert the valid projects of a batch in one transaction. If the transaction
+	 * fails on bad data, one bad record fails all of them, so the projects are
+	 * inserted again one at a time to find the records to reject. Then the
+	 * rejects are written and the checkpoint is moved past the batch. Any other
+	 * failure is thrown, and the checkpoint stays where it was.
+	 */
+	private void write(Batch batch, Quarantine quarantine, Checkpoint checkpoint, ImportResult result)
+			throws IOException {
+		List<Project> accepted = new ArrayList<>();
+
+		for (Project project : batch.projects) {
+			if (Objects.nonNull(project)) {
+				accepted.add(project);
+			}
+		}
+
+		try {
+			projectService.addProjects(accepted);
+		} catch (DbException e) {
+			if (!isDataError(e)) {
+				throw e;
+			}
+
+			for (int index = 0; index < batch.projects.length; index++) {
+				Project project = batch.projects[index];
+
+				if (Objects.nonNull(project)) {
+					try {
+						projectService.addProjects(List.of(project));
+					} catch (DbException single) {
+						if (!isDataError(single)) {
+							throw single;
+						}
+
+						batch.projects[index] = null;
+						batch.errors[index] = rootMessage(single);
+					}
+				}
+			}
+		}
+
+		for (int index = 0; index < batch.projects.length; index++) {
+			Project project = batch.projects[index];
+
+			if (Objects.nonNull(project)) {
+				result.projects++;
+				result.rows += 1 + project.getMaterials().size() + project.getSteps().size()
+						+ project.getCategories().size();
+			} else {
+				result.rejected++;
+				quarantine.reject(batch.firstRecord + index, batch.records.get(index), batch.errors[index]);
+			}
+		}
+
+		quarantine.flush();
+		result.records += batch.records.size();
+		checkpoint.save(batch.firstRecord + batch.records.size() - 1);
+	}
+
+	/*
+	 * Whether the database refused the data itself: SQLState class 22 (data
+	 * exception, such as a value out of range) or 23 (integrity constraint
+	 * violation, such as a missing category). Those are the record's fault.
+	 */
+	private static boolean isDataError(Throwable e) {
+		for (Throwable cause = e; Objects.nonNull(cause); cause = cause.getCause()) {
+			if (cause instanceof SQLException) {
+				String state = ((SQLException) cause).getSQLState();
+
+				if (Objects.nonNull(state) && (state.startsWith("22") || state.startsWith("23"))) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private static String rootMessage(Throwable e) {
+		while (Objects.nonNull(e.getCause())) {
+			e = e.getCause();
+		}
+
+		return e.getMessage();
+	}
+
+	/*
+	 * A group of records, numbered from firstRecord, and what they parsed to. A
+	 * rejected record has a null project and an error.
+	 */
+	private static class Batch {
+		final long firstRecord;
+		final List<String> records;
+		final Project[] projects;
+		final String[] errors;
+
+		Batch(long firstRecord, List<String> records) {
+			this.firstRecord = firstRecord;
+			this.records = records;
+			this.projects = new Project[records.size()];
+			this.errors = new String[records.size()];
+		}
+
+		/*
+		 * Parse every record. A record the parser can't handle for any reason is
+		 * rejected, so that one odd record doesn't stop the import. An unexpected
+		 * exception is named in the reason, as its message may not say much.
+		 */
+		Batch parse(ExportFormat format) {
+			for (int index = 0; index < projects.length; index++) {
+				try {
+					projects[index] = RecordParser.parse(format, records.get(index));
+				} catch (IllegalArgumentException e) {
+					errors[index] = e.getMessage();
+				} catch (RuntimeException e) {
+					errors[index] = e.toString();
+				}
+			}
+
+			return this;
+		}
+	}
+
+	/*
+	 * The rejects files. They are appended to, so that a resumed import adds to
+	 * them, and are only created when there is something to reject.
+	 */
+	private static class Quarantine implements AutoCloseable {
+		private final Path rejectsFile;
+		private final Path logFile;
+		private BufferedWriter rejects;
+		private BufferedWriter log;
+
+		Quarantine(Path file, ExportFormat format) {
+			String name = file.getFileName().toString();
+
+			if (name.endsWith(".gz")) {
+				name = name.substring(0, name.length() - 3);
+			}
+
+			if (name.endsWith(format.getExtension())) {
+				name = name.substring(0, name.length() - format.getExtension().length());
+			}
+
+			rejectsFile = file.resolveSibling(name + ".rejects" + format.getExtension());
+			logFile = file.resolveSibling(name + ".rejects.log");
+		}
+
+		void reject(long recordNumber, String record, String reason) throws IOException {
+			if (Objects.isNull(rejects)) {
+				rejects = Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+						StandardOpenOption.APPEND);
+				log = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+						StandardOpenOption.APPEND);
+			}
+
+			rejects.write(record);
+
+			if (!record.endsWith("\n")) {
+				rejects.write('\n');
+			}
+
+			log.write("record " + recordNumber + ": " + reason + "\n");
+		}
+
+		void flush() throws IOException {
+			if (Objects.nonNull(rejects)) {
+				rejects.flush();
+				log.flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (Objects.nonNull(rejects)) {
+				try {
+					rejects.close();
+				} finally {
+					log.close();
+				}
+			}
+		}
+	}
+
+	/*
+	 * The number of records imported from a file, saved next to it. The file's
+	 * size and last-modified time are saved too, so a checkpoint is not applied to
+	 * a different file, such as an export written again since that happens to
+	 * have the same size.
+	 */
+	private static class Checkpoint {
+		private final Path checkpointFile;
+		private final Path file;
+
+		Checkpoint(Path file) {
+			this.file = file;
+			this.checkpointFile = file.resolveSibling(file.getFileName() + ".checkpoint");
+		}
+
+		// the number of records already imported
+		long load() throws IOException {
+			if (!Files.exists(checkpointFile)) {
+				return 0;
+			}
+
+			Properties properties = new Properties();
+
+			try (InputStream in = Files.newInputStream(checkpointFile)) {
+				properties.load(in);
+			}
+
+			if (!String.valueOf(Files.size(file)).equals(properties.getProperty("fileSize"))
+					|| !String.valueOf(lastModified()).equals(properties.getProperty("lastModified"))) {
+				throw new IllegalStateException(checkpointFile + " was saved for a different version of " + file
+						+ ". Delete it to import the file from the start.");
+			}
+
+			return Long.parseLong(properties.getProperty("records"));
+		}
+
+		// replace the checkpoint atomically, so a crash leaves the old or the new one
+		void save(long records) throws IOException {
+			Properties properties = new Properties();
+			properties.setProperty("records", Long.toString(records));
+			properties.setProperty("fileSize", Long.toString(Files.size(file)));
+			properties.setProperty("lastModified", Long.toString(lastModified()));
+
+			Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+
+			try (OutputStream out = Files.newOutputStream(temp)) {
+				properties.store(out, "ProjectImporter checkpoint");
+			}
+
+			Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+
+		private long lastModified() throws IOException {
+			return Files.getLastModifiedTime(file).toMillis();
+		}
+	}
+
+	/*
+	 * What an import did and how fast. The counts cover this run only; records
+	 * skipped because of the checkpoint are counted in skipped.
+	 */
+	public static class ImportResult {
+		private final long skipped;
+		private long records;
+		private long projects;
+		private long rejected;
+		private long rows;
+		private long elapsedNanos;
+
+		ImportResult(long skipped) {
+			this.skipped = skipped;
+		}
+
+		public long getSkipped() {
+			return skipped;
+		}
+
+		public long getRecords() {
+			return records;
+		}
+
+		public long getProjects() {
+			return projects;
+		}
+
+		public long getRejected() {
+			return rejected;
+		}
+
+		// project, material, step, and category rows inserted
+		public long getRows() {
+			return rows;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		public double getRowsPerSecond() {
+			return elapsedNanos == 0 ? 0.0 : rows * 1_000_000_000.0 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d projects (%d rows) from %d records, %d rejected, %d skipped, in %.2f s "
+					+ "(%.0f rows/s)", projects, rows, records, rejected, skipped, elapsedNanos / 1e9,
+					getRowsPerSecond());
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package projects.importer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+import projects.export.ExportFormat;
+import projects.json.JsonReader;
+import projects.json.ProjectJson;
+import projects.service.ProjectValidator;
+
+/*
+ * This turns the text of one record from RecordReader into a Project and checks
+ * it with ProjectValidator. The record layouts are the ones ProjectExporter
+ * writes (see CsvRowWriter and JsonLinesRowWriter). The IDs in the file are
+ * ignored, except for category IDs: the imported projects get new IDs, and
+ * their categories must already exist.
+ *
+ * A record that can't be parsed or fails validation throws an
+ * IllegalArgumentException that says why. Parsing has no shared state, so
+ * records can be parsed on any number of threads.
+ */
+final class RecordParser {
+
+	private RecordParser() {
+	}
+
+	static Project parse(ExportFormat format, String text) {
+		Project project = format == ExportFormat.CSV ? parseCsv(text) : parseJson(text);
+		ProjectValidator.validate(project);
+		return project;
+	}
+
+	/*
+	 * CSV: the first row is the project row and the rest are its children. See
+	 * CsvRowWriter for the columns.
+	 */
+	private static Project parseCsv(String text) {
+		List<List<String>> rows = splitCsv(text);
+		List<String> first = rows.get(0);
+
+		if (!"project".equals(first.get(0))) {
+			throw new IllegalArgumentException("The record does not start with a project row");
+		}
+
+		Project project = new Project();
+
+		checkColumns(first, 7);
+		project.setProjectName(first.get(2));
+		project.setEstimatedHours(toDecimal(first.get(3)));
+		project.setActualHours(toDecimal(first.get(4)));
+		project.setDifficulty(toInteger(first.get(5)));
+		project.setNotes(first.get(6));
+
+		for (List<String> row : rows.subList(1, rows.size())) {
+			switch (row.get(0)) {
+			case "material":
+				checkColumns(row, 6);
+				Material material = new Material();
+				material.setMaterialName(row.get(3));
+				material.setNumRequired(toInteger(row.get(4)));
+				material.setCost(toDecimal(row.get(5)));
+				project.getMaterials().add(material);
+				break;
+
+			case "step":
+				checkColumns(row, 5);
+				Step step = new Step();
+				step.setStepText(row.get(3));
+				project.getSteps().add(step);
+				break;
+
+			case "category":
+				checkColumns(row, 4);
+				Category category = new Category();
+				category.setCategoryId(toInteger(row.get(2)));
+				category.setCategoryName(row.get(3));
+				project.getCategories().add(category);
+				break;
+
+			default:
+				throw new IllegalArgumentException("Unknown row type " + row.get(0));
+			}
+		}
+
+		return project;
+	}
+
+	private static void checkColumns(List<String> row, int count) {
+		if (row.size() != count) {
+			throw new IllegalArgumentException(
+					"A " + row.get(0) + " row has " + row.size() + " fields instead of " + count);
+		}
+	}
+
+	/*
+	 * Split CSV text into rows of fields. Quoted fields can contain commas, line
+	 * breaks, and doubled quotes. An empty field is null.
+	 */
+	static List<List<String>> splitCsv(String text) {
+		List<List<String>> rows = new ArrayList<>();
+		List<String> row = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		boolean wasQuoted = false;
+		int length = text.length();
+
+		for (int index = 0; index < length; index++) {
+			char ch = text.charAt(index);
+
+			if (quoted) {
+				if (ch != '"') {
+					field.append(ch);
+				} else if (index + 1 < length && text.charAt(index + 1) == '"') {
+					field.append('"');
+					index++;
+				} else {
+					quoted = false;
+				}
+			} else if (ch == '"') {
+				quoted = true;
+				wasQuoted = true;
+			} else if (ch == ',' || ch == '\n') {
+				row.add(wasQuoted || field.length() > 0 ? field.toString() : null);
+				field.setLength(0);
+				wasQuoted = false;
+
+				if (ch == '\n') {
+					rows.add(row);
+					row = new ArrayList<>();
+				}
+			} else {
+				field.append(ch);
+			}
+		}
+
+		if (quoted) {
+			throw new IllegalArgumentException("A quoted field is not closed");
+		}
+
+		if (!row.isEmpty() || field.length() > 0 || wasQuoted) {
+			row.add(wasQuoted || field.length() > 0 ? field.toString() : null);
+			rows.add(row);
+		}
+
+		return rows;
+	}
+
+	/*
+	 * JSON Lines: one object with the project members and arrays of materials,
+	 * steps, and categories. See ProjectJson for the member names.
+	 */
+	private static Project parseJson(String text) {
+		return ProjectJson.readProject(JsonReader.parse(text));
+	}
+
+	private static BigDecimal toDecimal(String text) {
+		try {
+			return Objects.isNull(text) ? null : new BigDecimal(text);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Not a number: " + text);
+		}
+	}
+
+	private static Integer toInteger(String text) {
+		try {
+			return Objects.isNull(text) ? null : Integer.valueOf(text);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Not an integer: " + text);
+		}
+	}
+}
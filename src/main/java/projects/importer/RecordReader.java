@@ -0,0 +1,123 @@
+package projects.importer;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import projects.export.ExportFormat;
+
+/*
+ * This splits an import file into records, one per project, without parsing
+ * them. Splitting is cheap, so it is done by a single thread, and the records
+ * are parsed in parallel by RecordParser.
+ *
+ * - In JSON Lines each non-blank line is a record.
+ * - In CSV a record is a project line and the material, step, and category
+ *   lines that follow it. A quoted field can span lines, so a line only starts
+ *   a record when it is outside quotes.
+ *
+ * The text of a record is kept as it was read so that a rejected record can be
+ * written to the quarantine file unchanged. Line breaks are normalized to \n.
+ */
+class RecordReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String PROJECT_LINE = "project,";
+
+	private final BufferedReader reader;
+	private final ExportFormat format;
+
+	// the first line of the next CSV record, read while finishing the last one
+	private String pending;
+	private long recordNumber;
+
+	private RecordReader(BufferedReader reader, ExportFormat format) {
+		this.reader = reader;
+		this.format = format;
+	}
+
+	/*
+	 * Open a file for reading. A file name ending in .gz is decompressed.
+	 */
+	static RecordReader open(Path file, ExportFormat format) throws IOException {
+		InputStream in = Files.newInputStream(file);
+
+		if (file.getFileName().toString().endsWith(".gz")) {
+			in = new GZIPInputStream(in, BUFFER_SIZE);
+		}
+
+		return new RecordReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE),
+				format);
+	}
+
+	/*
+	 * Return the text of the next record, or null at the end of the file.
+	 */
+	String next() throws IOException {
+		String record = format == ExportFormat.CSV ? nextCsv() : nextLine();
+
+		if (record != null) {
+			recordNumber++;
+		}
+
+		return record;
+	}
+
+	// the number of the record last returned by next(), starting at 1
+	long getRecordNumber() {
+		return recordNumber;
+	}
+
+	private String nextLine() throws IOException {
+		String line;
+
+		while ((line = reader.readLine()) != null) {
+			if (!line.isBlank()) {
+				return line;
+			}
+		}
+
+		return null;
+	}
+
+	private String nextCsv() throws IOException {
+		StringBuilder record = new StringBuilder();
+		boolean inQuotes = false;
+		String line = pending != null ? pending : reader.readLine();
+
+		pending = null;
+
+		for (; line != null; line = reader.readLine()) {
+			if (!inQuotes) {
+				if (line.isEmpty()) {
+					continue;
+				}
+
+				if (line.startsWith(PROJECT_LINE) && record.length() > 0) {
+					pending = line;
+					break;
+				}
+			}
+
+			record.append(line).append('\n');
+
+			// a doubled quote toggles twice, so only the unmatched quotes count
+			for (int index = line.indexOf('"'); index >= 0; index = line.indexOf('"', index + 1)) {
+				inQuotes = !inQuotes;
+			}
+		}
+
+		return record.length() == 0 ? null : record.toString();
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
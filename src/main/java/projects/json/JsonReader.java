@@ -0,0 +1,261 @@
+package projects.json;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * This parses one JSON document into plain Java objects: an object becomes a
+ * Map<String, Object> (in member order), an array a List<Object>, a number a
+ * BigDecimal, and true, false, and null become Boolean and null. It reads the
+ * documents JsonWriter writes, such as the lines of an export file.
+ *
+ * A document that is not valid JSON throws an IllegalArgumentException that
+ * gives the offset of the problem. So does one with objects and arrays nested
+ * more than MAX_DEPTH deep, because each level is parsed by a recursive call
+ * and a request body of a million '[' characters would overflow the stack.
+ */
+public final class JsonReader {
+
+	// far deeper than any document JsonWriter writes
+	private static final int MAX_DEPTH = 64;
+
+	private final CharSequence text;
+	private int pos;
+	private int depth;
+
+	private JsonReader(CharSequence text) {
+		this.text = text;
+	}
+
+	public static Object parse(CharSequence text) {
+		JsonReader reader = new JsonReader(text);
+		Object value = reader.readValue();
+
+		reader.skipWhitespace();
+
+		if (reader.pos < text.length()) {
+			throw reader.error("Unexpected text after the document");
+		}
+
+		return value;
+	}
+
+	private Object readValue() {
+		skipWhitespace();
+
+		if (pos >= text.length()) {
+			throw error("Unexpected end of the document");
+		}
+
+		char ch = text.charAt(pos);
+
+		switch (ch) {
+		case '{':
+		case '[':
+			if (++depth > MAX_DEPTH) {
+				throw error("Objects and arrays are nested more than " + MAX_DEPTH + " deep");
+			}
+
+			Object nested = ch == '{' ? readObject() : readArray();
+			depth--;
+			return nested;
+		case '"':
+			return readString();
+		case 't':
+			expect("true");
+			return Boolean.TRUE;
+		case 'f':
+			expect("false");
+			return Boolean.FALSE;
+		case 'n':
+			expect("null");
+			return null;
+		default:
+			return readNumber();
+		}
+	}
+
+	private Map<String, Object> readObject() {
+		Map<String, Object> object = new LinkedHashMap<>();
+		pos++;
+		skipWhitespace();
+
+		if (peek() == '}') {
+			pos++;
+			return object;
+		}
+
+		while (true) {
+			skipWhitespace();
+
+			if (peek() != '"') {
+				throw error("Expected a member name");
+			}
+
+			String name = readString();
+			skipWhitespace();
+			consume(':');
+			object.put(name, readValue());
+			skipWhitespace();
+
+			if (peek() == ',') {
+				pos++;
+			} else {
+				consume('}');
+				return object;
+			}
+		}
+	}
+
+	private List<Object> readArray() {
+		List<Object> array = new ArrayList<>();
+		pos++;
+		skipWhitespace();
+
+		if (peek() == ']') {
+			pos++;
+			return array;
+		}
+
+		while (true) {
+			array.add(readValue());
+			skipWhitespace();
+
+			if (peek() == ',') {
+				pos++;
+			} else {
+				consume(']');
+				return array;
+			}
+		}
+	}
+
+	private String readString() {
+		pos++;
+		StringBuilder value = new StringBuilder();
+		int start = pos;
+
+		while (true) {
+			if (pos >= text.length()) {
+				throw error("Unterminated string");
+			}
+
+			char ch = text.charAt(pos);
+
+			if (ch == '"') {
+				value.append(text, start, pos++);
+				return value.toString();
+			}
+
+			if (ch < 0x20) {
+				throw error("Control character in a string");
+			}
+
+			if (ch != '\\') {
+				pos++;
+				continue;
+			}
+
+			value.append(text, start, pos++);
+			value.append(readEscape());
+			start = pos;
+		}
+	}
+
+	private char readEscape() {
+		char ch = peek();
+		pos++;
+
+		switch (ch) {
+		case '"':
+		case '\\':
+		case '/':
+			return ch;
+		case 'b':
+			return '\b';
+		case 'f':
+			return '\f';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		case 'u':
+			if (pos + 4 > text.length()) {
+				throw error("Incomplete \\u escape");
+			}
+
+			try {
+				char decoded = (char) Integer.parseInt(text.subSequence(pos, pos + 4).toString(), 16);
+				pos += 4;
+				return decoded;
+			} catch (NumberFormatException e) {
+				throw error("Invalid \\u escape");
+			}
+		default:
+			throw error("Invalid escape");
+		}
+	}
+
+	private BigDecimal readNumber() {
+		int start = pos;
+
+		while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+			pos++;
+		}
+
+		if (start == pos) {
+			throw error("Unexpected character '" + text.charAt(pos) + "'");
+		}
+
+		try {
+			return new BigDecimal(text.subSequence(start, pos).toString());
+		} catch (NumberFormatException e) {
+			pos = start;
+			throw error("Invalid number");
+		}
+	}
+
+	private void expect(String literal) {
+		for (int index = 0; index < literal.length(); index++) {
+			if (peek() != literal.charAt(index)) {
+				throw error("Expected " + literal);
+			}
+
+			pos++;
+		}
+	}
+
+	private void consume(char ch) {
+		if (peek() != ch) {
+			throw error("Expected '" + ch + "'");
+		}
+
+		pos++;
+	}
+
+	// the next character, or 0 at the end of the document
+	private char peek() {
+		return pos < text.length() ? text.charAt(pos) : 0;
+	}
+
+	private void skipWhitespace() {
+		while (pos < text.length()) {
+			char ch = text.charAt(pos);
+
+			if (ch != ' ' && ch != '\t' && ch != '\n' && ch != '\r') {
+				return;
+			}
+
+			pos++;
+		}
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at offset " + pos);
+	}
+}
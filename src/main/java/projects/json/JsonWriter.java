@@ -0,0 +1,197 @@
+package projects.json;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * This writes JSON text straight to an Appendable (a StringBuilder, a Writer,
+ * or a ByteBufferSink), so a document of any size is written without building
+ * it in memory first. The caller makes the calls in document order:
+ *
+ *   json.beginObject().name("projectId").value(1).name("steps").beginArray()...
+ *
+ * Commas and string escaping are handled here. The writer does not check that
+ * the calls make a valid document. reset() lets one writer be reused for a
+ * series of documents, such as the lines of a JSON Lines file.
+ */
+public class JsonWriter {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final Appendable out;
+
+	// whether the container at each depth already has a member
+	private boolean[] hasMember = new boolean[16];
+	private int depth;
+	private boolean afterName;
+
+	public JsonWriter(Appendable out) {
+		this.out = out;
+	}
+
+	// start a new document
+	public JsonWriter reset() {
+		depth = 0;
+		afterName = false;
+		return this;
+	}
+
+	public JsonWriter beginObject() throws IOException {
+		beforeValue();
+		out.append('{');
+		push();
+		return this;
+	}
+
+	public JsonWriter endObject() throws IOException {
+		depth--;
+		out.append('}');
+		return this;
+	}
+
+	public JsonWriter beginArray() throws IOException {
+		beforeValue();
+		out.append('[');
+		push();
+		return this;
+	}
+
+	public JsonWriter endArray() throws IOException {
+		depth--;
+		out.append(']');
+		return this;
+	}
+
+	// the name of the next member of the current object
+	public JsonWriter name(String name) throws IOException {
+		beforeValue();
+		writeString(name);
+		out.append(':');
+		afterName = true;
+		return this;
+	}
+
+	public JsonWriter value(String value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+
+		beforeValue();
+		writeString(value);
+		return this;
+	}
+
+	public JsonWriter value(long value) throws IOException {
+		beforeValue();
+		appendLong(value);
+		return this;
+	}
+
+	public JsonWriter value(Integer value) throws IOException {
+		return value == null ? nullValue() : value(value.longValue());
+	}
+
+	public JsonWriter value(Number value) throws IOException {
+		return value == null ? nullValue() : number(value.toString());
+	}
+
+	public JsonWriter value(boolean value) throws IOException {
+		beforeValue();
+		out.append(value ? "true" : "false");
+		return this;
+	}
+
+	/*
+	 * Write a number that is already in text form, such as a DECIMAL column read
+	 * with ResultSet.getString(). A null writes null.
+	 */
+	public JsonWriter number(CharSequence text) throws IOException {
+		if (text == null) {
+			return nullValue();
+		}
+
+		beforeValue();
+		out.append(text);
+		return this;
+	}
+
+	public JsonWriter nullValue() throws IOException {
+		beforeValue();
+		out.append("null");
+		return this;
+	}
+
+	private void push() {
+		if (++depth == hasMember.length) {
+			hasMember = Arrays.copyOf(hasMember, depth * 2);
+		}
+
+		hasMember[depth] = false;
+	}
+
+	// write the comma between members, unless this value follows a name
+	private void beforeValue() throws IOException {
+		if (afterName) {
+			afterName = false;
+			return;
+		}
+
+		if (depth > 0) {
+			if (hasMember[depth]) {
+				out.append(',');
+			}
+
+			hasMember[depth] = true;
+		}
+	}
+
+	private void writeString(String value) throws IOException {
+		out.append('"');
+
+		int length = value.length();
+		int start = 0;
+
+		for (int index = 0; index < length; index++) {
+			char ch = value.charAt(index);
+
+			if (ch >= 0x20 && ch != '"' && ch != '\\') {
+				continue;
+			}
+
+			// write the run of plain characters, then the escape
+			out.append(value, start, index);
+			start = index + 1;
+
+			switch (ch) {
+			case '"':
+				out.append("\\\"");
+				break;
+			case '\\':
+				out.append("\\\\");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			default:
+				out.append("\\u00").append(HEX[ch >> 4]).append(HEX[ch & 0xF]);
+				break;
+			}
+		}
+
+		out.append(value, start, length).append('"');
+	}
+
+	private void appendLong(long value) throws IOException {
+		if (out instanceof StringBuilder) {
+			((StringBuilder) out).append(value);
+		} else {
+			out.append(Long.toString(value));
+		}
+	}
+}
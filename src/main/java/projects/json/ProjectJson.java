@@ -0,0 +1,198 @@
+package projects.json;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.ProjectRollup;
+import projects.entity.Step;
+
+/*
+ * This converts the entities to and from JSON. The member names are the
+ * entity field names, the same as in a JSON Lines export:
+ *
+ *   {"projectId":1,"projectName":"Shelf",...,"materials":[...],"steps":[...],"categories":[...]}
+ *
+ * Writing goes straight to a JsonWriter. Reading takes the objects
+ * JsonReader.parse() returns and throws an IllegalArgumentException for a
+ * member of the wrong type. IDs are not read, except category IDs, because
+ * the projects, materials, and steps read are new ones that get their IDs
+ * when they are inserted.
+ */
+public final class ProjectJson {
+
+	private ProjectJson() {
+	}
+
+	/*
+	 * Write a project. With details, its materials, steps, and categories are
+	 * written too.
+	 */
+	public static void writeProject(JsonWriter json, Project project, boolean withDetails) throws IOException {
+		json.beginObject();
+		json.name("projectId").value(project.getProjectId());
+		json.name("projectName").value(project.getProjectName());
+		json.name("estimatedHours").value(project.getEstimatedHours());
+		json.name("actualHours").value(project.getActualHours());
+		json.name("difficulty").value(project.getDifficulty());
+		json.name("notes").value(project.getNotes());
+		json.name("version").value(project.getVersion());
+
+		if (withDetails) {
+			json.name("materials").beginArray();
+
+			for (Material material : project.getMaterials()) {
+				writeMaterial(json, material);
+			}
+
+			json.endArray().name("steps").beginArray();
+
+			for (Step step : project.getSteps()) {
+				writeStep(json, step);
+			}
+
+			json.endArray().name("categories").beginArray();
+
+			for (Category category : project.getCategories()) {
+				writeCategory(json, category);
+			}
+
+			json.endArray();
+		}
+
+		json.endObject();
+	}
+
+	public static void writeMaterial(JsonWriter json, Material material) throws IOException {
+		json.beginObject();
+		json.name("materialId").value(material.getMaterialId());
+		json.name("materialName").value(material.getMaterialName());
+		json.name("numRequired").value(material.getNumRequired());
+		json.name("cost").value(material.getCost());
+		json.endObject();
+	}
+
+	public static void writeStep(JsonWriter json, Step step) throws IOException {
+		json.beginObject();
+		json.name("stepId").value(step.getStepId());
+		json.name("stepText").value(step.getStepText());
+		json.name("stepOrder").value(step.getStepOrder());
+		json.endObject();
+	}
+
+	public static void writeCategory(JsonWriter json, Category category) throws IOException {
+		json.beginObject();
+		json.name("categoryId").value(category.getCategoryId());
+		json.name("categoryName").value(category.getCategoryName());
+		json.endObject();
+	}
+
+	public static void writeRollup(JsonWriter json, ProjectRollup rollup) throws IOException {
+		json.beginObject();
+		json.name("projectId").value(rollup.getProjectId());
+		json.name("projectName").value(rollup.getProjectName());
+		json.name("totalCost").value(rollup.getTotalCost());
+		json.name("materialCount").value(rollup.getMaterialCount());
+		json.name("stepCount").value(rollup.getStepCount());
+		json.name("hoursVariance").value(rollup.getHoursVariance());
+		json.endObject();
+	}
+
+	/*
+	 * Read a project, with any materials, steps, and categories it has.
+	 */
+	public static Project readProject(Object value) {
+		Map<String, Object> object = asObject(value, "The project");
+		Project project = new Project();
+
+		project.setProjectName(asString(object.get("projectName"), "projectName"));
+		project.setEstimatedHours(asDecimal(object.get("estimatedHours"), "estimatedHours"));
+		project.setActualHours(asDecimal(object.get("actualHours"), "actualHours"));
+		project.setDifficulty(asInteger(object.get("difficulty"), "difficulty"));
+		project.setNotes(asString(object.get("notes"), "notes"));
+
+		for (Object element : asList(object.get("materials"), "materials")) {
+			Map<String, Object> member = asObject(element, "A material");
+			Material material = new Material();
+			material.setMaterialName(asString(member.get("materialName"), "materialName"));
+			material.setNumRequired(asInteger(member.get("numRequired"), "numRequired"));
+			material.setCost(asDecimal(member.get("cost"), "cost"));
+			project.getMaterials().add(material);
+		}
+
+		for (Object element : asList(object.get("steps"), "steps")) {
+			project.getSteps().add(readStep(element));
+		}
+
+		for (Object element : asList(object.get("categories"), "categories")) {
+			Map<String, Object> member = asObject(element, "A category");
+			Category category = new Category();
+			category.setCategoryId(asInteger(member.get("categoryId"), "categoryId"));
+			category.setCategoryName(asString(member.get("categoryName"), "categoryName"));
+			project.getCategories().add(category);
+		}
+
+		return project;
+	}
+
+	// read a step's text. The order comes from where the step is put
+	public static Step readStep(Object value) {
+		Step step = new Step();
+		step.setStepText(asString(asObject(value, "A step").get("stepText"), "stepText"));
+		return step;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static Map<String, Object> asObject(Object value, String what) {
+		if (value instanceof Map) {
+			return (Map<String, Object>) value;
+		}
+
+		throw new IllegalArgumentException(what + " is not a JSON object");
+	}
+
+	// a missing array is empty
+	@SuppressWarnings("unchecked")
+	public static List<Object> asList(Object value, String name) {
+		if (Objects.isNull(value)) {
+			return List.of();
+		}
+
+		if (value instanceof List) {
+			return (List<Object>) value;
+		}
+
+		throw new IllegalArgumentException(name + " is not an array");
+	}
+
+	public static String asString(Object value, String name) {
+		if (Objects.isNull(value) || value instanceof String) {
+			return (String) value;
+		}
+
+		throw new IllegalArgumentException(name + " is not a string");
+	}
+
+	public static BigDecimal asDecimal(Object value, String name) {
+		if (Objects.isNull(value) || value instanceof BigDecimal) {
+			return (BigDecimal) value;
+		}
+
+		throw new IllegalArgumentException(name + " is not a number");
+	}
+
+	public static Integer asInteger(Object value, String name) {
+		BigDecimal decimal = asDecimal(value, name);
+
+		try {
+			return Objects.isNull(decimal) ? null : decimal.intValueExact();
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException(name + " is not an integer: " + decimal);
+		}
+	}
+}
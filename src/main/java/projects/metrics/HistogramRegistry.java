@@ -0,0 +1,69 @@
+package projects.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*
+ * The default metrics registry. It keeps an OperationStats for every operation
+ * in memory and, if requested, registers each one with the platform MBean
+ * server as projects:type=Operation,name=<operation>, so they can be watched
+ * with JConsole or any JMX collector.
+ */
+public class HistogramRegistry implements MetricsRegistry {
+	private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+	private final boolean registerMBeans;
+
+	public HistogramRegistry(boolean registerMBeans) {
+		this.registerMBeans = registerMBeans;
+	}
+
+	@Override
+	public void record(String operation, long latencyNanos, long rows, boolean error) {
+		OperationStats stats = operations.get(operation);
+
+		if (stats == null) {
+			stats = operations.computeIfAbsent(operation, this::createStats);
+		}
+
+		stats.record(latencyNanos, rows, error);
+	}
+
+	/*
+	 * Return the statistics for one operation, or null if it has not been
+	 * recorded yet.
+	 */
+	public OperationStats getStats(String operation) {
+		return operations.get(operation);
+	}
+
+	public Collection<OperationStats> getAllStats() {
+		return Collections.unmodifiableCollection(operations.values());
+	}
+
+	private OperationStats createStats(String operation) {
+		OperationStats stats = new OperationStats(operation);
+
+		if (registerMBeans) {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName name = new ObjectName("projects:type=Operation,name=" + ObjectName.quote(operation));
+
+				if (!server.isRegistered(name)) {
+					server.registerMBean(stats, name);
+				}
+			} catch (JMException e) {
+				// metrics must never break the operation being measured
+				System.err.println("Unable to register JMX metrics for " + operation + ": " + e);
+			}
+		}
+
+		return stats;
+	}
+}
@@ -0,0 +1,83 @@
+package projects.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * A fixed-size, lock-free latency histogram. Values below 16ns get a bucket
+ * each. Above that, every power of two is split into eight buckets, so a
+ * bucket is never wider than 12.5% of its value and percentiles are accurate to
+ * that precision. The whole range of a long fits in under 500 buckets, so
+ * recording is one array increment and needs no allocation.
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR_LIMIT = 16;
+	private static final int LINEAR_EXPONENT = 4;
+	private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - LINEAR_EXPONENT) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	public void record(long nanos) {
+		counts.incrementAndGet(bucketOf(Math.max(0, nanos)));
+	}
+
+	/*
+	 * Return the value (in nanoseconds) at the given percentile (0-100). The
+	 * result is the upper bound of the bucket the percentile falls in. Returns 0
+	 * if nothing has been recorded.
+	 */
+	public long percentile(double percentile) {
+		long total = 0;
+
+		for (int index = 0; index < BUCKET_COUNT; index++) {
+			total += counts.get(index);
+		}
+
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+		long seen = 0;
+
+		for (int index = 0; index < BUCKET_COUNT; index++) {
+			seen += counts.get(index);
+
+			if (seen >= rank) {
+				return upperBoundOf(index);
+			}
+		}
+
+		return upperBoundOf(BUCKET_COUNT - 1);
+	}
+
+	public void reset() {
+		for (int index = 0; index < BUCKET_COUNT; index++) {
+			counts.set(index, 0);
+		}
+	}
+
+	private static int bucketOf(long value) {
+		if (value < LINEAR_LIMIT) {
+			return (int) value;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+		return LINEAR_LIMIT + (exponent - LINEAR_EXPONENT) * SUB_BUCKETS + subBucket;
+	}
+
+	private static long upperBoundOf(int bucket) {
+		if (bucket < LINEAR_LIMIT) {
+			return bucket;
+		}
+
+		int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + LINEAR_EXPONENT;
+		int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+
+		return (1L << exponent) + (subBucket + 1) * width - 1;
+	}
+}
@@ -0,0 +1,98 @@
+package projects.metrics;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/*
+ * This is the entry point to the instrumentation layer. Code that wants to be
+ * measured declares an Operation once and wraps its work with it:
+ *
+ *   private static final Operation FETCH = Metrics.operation("ProjectDao.fetch");
+ *
+ *   return FETCH.time(() -> ..., project -> 1);
+ *
+ * Metrics are off unless the projects.metrics.enabled system property is true
+ * or a registry is installed with setRegistry(). When they are off, time() just
+ * runs the work: there is no clock read and nothing is recorded. When the
+ * property enables them, a HistogramRegistry that publishes to JMX is used.
+ */
+public final class Metrics {
+	private static volatile MetricsRegistry registry = Boolean.getBoolean("projects.metrics.enabled")
+			? new HistogramRegistry(true)
+			: null;
+
+	private Metrics() {
+	}
+
+	public static Operation operation(String name) {
+		return new Operation(name);
+	}
+
+	public static boolean isEnabled() {
+		return registry != null;
+	}
+
+	/*
+	 * Return the installed registry, or null if metrics are disabled.
+	 */
+	public static MetricsRegistry getRegistry() {
+		return registry;
+	}
+
+	/*
+	 * Install a registry (which enables metrics), or pass null to disable
+	 * metrics.
+	 */
+	public static void setRegistry(MetricsRegistry newRegistry) {
+		registry = newRegistry;
+	}
+
+	/*
+	 * A named, timed operation, such as one DAO or service method.
+	 */
+	public static final class Operation {
+		private final String name;
+
+		private Operation(String name) {
+			this.name = Objects.requireNonNull(name);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/*
+		 * Run the work and, if metrics are enabled, record its latency, whether it
+		 * failed, and the number of rows the result represents.
+		 */
+		public <T> T time(Supplier<T> work, ToLongFunction<? super T> rows) {
+			MetricsRegistry current = registry;
+
+			if (current == null) {
+				return work.get();
+			}
+
+			long start = System.nanoTime();
+			T result;
+
+			try {
+				result = work.get();
+			} catch (RuntimeException | Error e) {
+				current.record(name, System.nanoTime() - start, 0, true);
+				throw e;
+			}
+
+			current.record(name, System.nanoTime() - start, rows.applyAsLong(result), false);
+			return result;
+		}
+
+		// run work that has no row count
+		public void time(Runnable work) {
+			time(() -> {
+				work.run();
+				return null;
+			}, result -> 0);
+		}
+	}
+}
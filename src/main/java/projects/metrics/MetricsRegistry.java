@@ -0,0 +1,19 @@
+package projects.metrics;
+
+/*
+ * Receives one record per timed operation. Implement this to send the
+ * measurements to another metrics system and install it with
+ * Metrics.setRegistry(). Implementations are called from every thread that
+ * runs a DAO or service method, so they must be thread safe and fast.
+ */
+public interface MetricsRegistry {
+
+	/*
+	 * Record one call of the named operation.
+	 *
+	 * latencyNanos - how long the call took
+	 * rows - the number of rows (or entities) returned or written
+	 * error - true if the call ended with an exception
+	 */
+	void record(String operation, long latencyNanos, long rows, boolean error);
+}
@@ -0,0 +1,103 @@
+package projects.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * The statistics collected for one operation: call, error and row counts, and
+ * a latency histogram. All updates are lock free.
+ */
+public class OperationStats implements OperationStatsMBean {
+	private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+	private final String name;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LongAdder count = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder rows = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+	public OperationStats(String name) {
+		this.name = name;
+	}
+
+	public void record(long latencyNanos, long rowCount, boolean error) {
+		latency.record(latencyNanos);
+		count.increment();
+		totalNanos.add(latencyNanos);
+		maxNanos.accumulate(latencyNanos);
+		rows.add(rowCount);
+
+		if (error) {
+			errors.increment();
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public long getCount() {
+		return count.sum();
+	}
+
+	@Override
+	public long getErrorCount() {
+		return errors.sum();
+	}
+
+	@Override
+	public long getRowCount() {
+		return rows.sum();
+	}
+
+	@Override
+	public double getMeanMillis() {
+		long calls = count.sum();
+		return calls == 0 ? 0.0 : totalNanos.sum() / NANOS_PER_MILLI / calls;
+	}
+
+	@Override
+	public double getMaxMillis() {
+		return maxNanos.get() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getP50Millis() {
+		return percentile(50);
+	}
+
+	@Override
+	public double getP95Millis() {
+		return percentile(95);
+	}
+
+	@Override
+	public double getP99Millis() {
+		return percentile(99);
+	}
+
+	// bucket upper bounds can overshoot, so never report more than the maximum
+	private double percentile(double percentile) {
+		return Math.min(latency.percentile(percentile), maxNanos.get()) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public void reset() {
+		latency.reset();
+		count.reset();
+		errors.reset();
+		rows.reset();
+		totalNanos.reset();
+		maxNanos.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: count=%d, errors=%d, rows=%d, mean=%.3fms, p50=%.3fms, p95=%.3fms, p99=%.3fms, "
+				+ "max=%.3fms", name, getCount(), getErrorCount(), getRowCount(), getMeanMillis(), getP50Millis(),
+				getP95Millis(), getP99Millis(), getMaxMillis());
+	}
+}
@@ -0,0 +1,25 @@
+package projects.metrics;
+
+/*
+ * The JMX view of one operation's statistics. Latencies are in milliseconds.
+ */
+public interface OperationStatsMBean {
+
+	long getCount();
+
+	long getErrorCount();
+
+	long getRowCount();
+
+	double getMeanMillis();
+
+	double getMaxMillis();
+
+	double getP50Millis();
+
+	double getP95Millis();
+
+	double getP99Millis();
+
+	void reset();
+}
@@ -0,0 +1,304 @@
+package projects.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+/*
+ * This is an in-memory inverted index of projects. Each term maps to the
+ * projects that contain it, with a weight that says how strongly: a term in
+ * the project name counts more than one in a material name, which counts more
+ * than one in the notes or step text. A search returns the IDs of the projects
+ * that contain every query term, best match first, scored by the term weights
+ * times the inverse document frequency (rare terms count for more).
+ *
+ * The index is updated one project at a time with put() and remove(). Loading
+ * a project from the database and putting it in the index are not atomic, so
+ * an older copy could overwrite a newer one. To prevent that, callers take a
+ * stamp() before loading and pass it to put(). The put is ignored if the
+ * project was put or removed by someone else after the stamp was taken. A full
+ * rebuild uses the same rule, so it can run while writes are being indexed.
+ *
+ * Searches take a read lock and updates take a write lock, so many searches
+ * can run at once.
+ */
+public class SearchIndex {
+
+	// @formatter:off
+	private static final float PROJECT_NAME_WEIGHT = 4.0f;
+	private static final float MATERIAL_NAME_WEIGHT = 2.0f;
+	private static final float NOTES_WEIGHT = 1.0f;
+	private static final float STEP_TEXT_WEIGHT = 1.0f;
+	// @formatter:on
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// term -> project ID -> weight
+	private final Map<String, Map<Integer, Float>> postings = new HashMap<>();
+
+	// project ID -> the terms it was indexed with, so it can be removed
+	private final Map<Integer, Document> documents = new HashMap<>();
+
+	// project ID -> when it was removed, until the next complete rebuild
+	private final Map<Integer, Long> removed = new HashMap<>();
+
+	// bumped by every put and remove. See stamp()
+	private long modifications;
+
+	private static class Document {
+		final Map<String, Float> terms;
+		final long modified;
+
+		Document(Map<String, Float> terms, long modified) {
+			this.terms = terms;
+			this.modified = modified;
+		}
+	}
+
+	/*
+	 * Return a value to pass to put() for a project that is about to be loaded.
+	 */
+	public long stamp() {
+		lock.readLock().lock();
+
+		try {
+			return modifications;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * Index a fully loaded project (with materials and steps), replacing what was
+	 * indexed for it before. Nothing happens if the project was put or removed
+	 * since the stamp was taken. Returns true if the project was indexed.
+	 */
+	public boolean put(Project project, long stamp) {
+		Map<String, Float> terms = termsOf(project);
+		Integer projectId = project.getProjectId();
+
+		lock.writeLock().lock();
+
+		try {
+			if (changedSince(projectId, stamp)) {
+				return false;
+			}
+
+			unindex(projectId);
+			removed.remove(projectId);
+
+			for (Map.Entry<String, Float> term : terms.entrySet()) {
+				postings.computeIfAbsent(term.getKey(), key -> new HashMap<>()).put(projectId, term.getValue());
+			}
+
+			documents.put(projectId, new Document(terms, ++modifications));
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * Drop a project from the index.
+	 */
+	public void remove(Integer projectId) {
+		lock.writeLock().lock();
+
+		try {
+			unindex(projectId);
+			removed.put(projectId, ++modifications);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * Finish a rebuild that started with the given stamp and put every project in
+	 * the database. Projects that were not seen, and were not put since the
+	 * stamp, no longer exist and are dropped. Removals recorded before the stamp
+	 * are forgotten.
+	 */
+	public void retainOnly(Set<Integer> projectIds, long stamp) {
+		lock.writeLock().lock();
+
+		try {
+			List<Integer> gone = new ArrayList<>();
+
+			for (Map.Entry<Integer, Document> document : documents.entrySet()) {
+				if (!projectIds.contains(document.getKey()) && document.getValue().modified <= stamp) {
+					gone.add(document.getKey());
+				}
+			}
+
+			gone.forEach(this::unindex);
+			removed.values().removeIf(modified -> modified <= stamp);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * Return the IDs of up to limit projects that contain every term of the
+	 * query, best match first. A query without terms matches nothing.
+	 */
+	public List<Integer> search(String query, int limit) {
+		List<String> queryTerms = Tokenizer.tokenize(query);
+		List<Integer> result = new ArrayList<>();
+
+		if (queryTerms.isEmpty() || limit <= 0) {
+			return result;
+		}
+
+		lock.readLock().lock();
+
+		try {
+			List<Map<Integer, Float>> lists = new ArrayList<>(queryTerms.size());
+			List<Float> idfs = new ArrayList<>(queryTerms.size());
+
+			for (String term : queryTerms) {
+				Map<Integer, Float> list = postings.get(term);
+
+				if (Objects.isNull(list)) {
+					return result;
+				}
+
+				lists.add(list);
+				idfs.add((float) Math.log(1.0 + (double) documents.size() / list.size()));
+			}
+
+			// walk the shortest list and look the others up
+			Map<Integer, Float> shortest = lists.stream().min(Comparator.comparingInt(Map::size)).get();
+
+			// a min-heap of the best limit hits so far
+			PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1);
+
+			candidates: for (Integer projectId : shortest.keySet()) {
+				float score = 0;
+
+				for (int index = 0; index < lists.size(); index++) {
+					Float weight = lists.get(index).get(projectId);
+
+					if (Objects.isNull(weight)) {
+						continue candidates;
+					}
+
+					score += weight * idfs.get(index);
+				}
+
+				best.add(new Hit(projectId, score));
+
+				if (best.size() > limit) {
+					best.poll();
+				}
+			}
+
+			while (!best.isEmpty()) {
+				result.add(best.poll().projectId);
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		// the heap gives the worst hit first
+		Collections.reverse(result);
+		return result;
+	}
+
+	// the number of projects in the index
+	public int size() {
+		lock.readLock().lock();
+
+		try {
+			return documents.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private boolean changedSince(Integer projectId, long stamp) {
+		Document document = documents.get(projectId);
+
+		if (Objects.nonNull(document) && document.modified > stamp) {
+			return true;
+		}
+
+		Long removedAt = removed.get(projectId);
+		return Objects.nonNull(removedAt) && removedAt > stamp;
+	}
+
+	private void unindex(Integer projectId) {
+		Document document = documents.remove(projectId);
+
+		if (Objects.isNull(document)) {
+			return;
+		}
+
+		for (String term : document.terms.keySet()) {
+			Map<Integer, Float> list = postings.get(term);
+			list.remove(projectId);
+
+			if (list.isEmpty()) {
+				postings.remove(term);
+			}
+		}
+	}
+
+	/*
+	 * The weighted terms of a project. A term that appears more than once adds up
+	 * its weights.
+	 */
+	private static Map<String, Float> termsOf(Project project) {
+		Map<String, Float> terms = new HashMap<>();
+
+		addTerms(terms, project.getProjectName(), PROJECT_NAME_WEIGHT);
+		addTerms(terms, project.getNotes(), NOTES_WEIGHT);
+
+		for (Material material : project.getMaterials()) {
+			addTerms(terms, material.getMaterialName(), MATERIAL_NAME_WEIGHT);
+		}
+
+		for (Step step : project.getSteps()) {
+			addTerms(terms, step.getStepText(), STEP_TEXT_WEIGHT);
+		}
+
+		return terms;
+	}
+
+	private static void addTerms(Map<String, Float> terms, String text, float weight) {
+		for (String term : Tokenizer.tokenize(text)) {
+			terms.merge(term, weight, Float::sum);
+		}
+	}
+
+	/*
+	 * A project and its score. Hits compare by score, then by ID so that ties
+	 * come out in a stable order.
+	 */
+	private static class Hit implements Comparable<Hit> {
+		final Integer projectId;
+		final float score;
+
+		Hit(Integer projectId, float score) {
+			this.projectId = projectId;
+			this.score = score;
+		}
+
+		@Override
+		public int compareTo(Hit other) {
+			int byScore = Float.compare(score, other.score);
+			return byScore != 0 ? byScore : Integer.compare(other.projectId, projectId);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package projects.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/*
+ * This splits text into search terms. A term is a run of letters and digits,
+ * lower cased, so "Hang a 36\" door" becomes [hang, a, 36, door]. Documents and
+ * queries go through the same tokenizer, so they always agree on what a term
+ * is.
+ */
+public final class Tokenizer {
+
+	private Tokenizer() {
+	}
+
+	public static List<String> tokenize(String text) {
+		List<String> terms = new ArrayList<>();
+
+		if (Objects.isNull(text)) {
+			return terms;
+		}
+
+		int length = text.length();
+		int start = -1;
+
+		for (int index = 0; index <= length; index++) {
+			boolean termChar = index < length && Character.isLetterOrDigit(text.charAt(index));
+
+			if (termChar && start < 0) {
+				start = index;
+			} else if (!termChar && start >= 0) {
+				terms.add(text.substring(start, index).toLowerCase(Locale.ROOT));
+				start = -1;
+			}
+		}
+
+		return terms;
+	}
+}
@@ -0,0 +1,154 @@
+package projects.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+import projects.dao.DbConnection;
+import projects.entity.Project;
+import projects.entity.ProjectRollup;
+import projects.entity.Step;
+import projects.exception.DbException;
+
+/*
+ * This is an asynchronous facade over ProjectService. Each call runs the
+ * blocking JDBC work on its own virtual thread and returns a CompletableFuture,
+ * so a caller can have thousands of requests in flight without a platform
+ * thread for each one.
+ *
+ * A database call can't run without a pooled connection, so the number of
+ * calls that run at once is limited by a semaphore sized to the connection pool
+ * by default. Calls over the limit wait (on their virtual thread, which costs
+ * almost nothing) instead of queuing inside the pool and timing out.
+ *
+ * Close the service to stop accepting work. Calls that are already running are
+ * allowed to finish.
+ */
+public class AsyncProjectService implements AutoCloseable {
+
+	private final ProjectService projectService;
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final Semaphore permits;
+
+	// limit concurrency to the size of the connection pool
+	public AsyncProjectService() {
+		this(new ProjectService(), DbConnection.getMaxPoolSize());
+	}
+
+	public AsyncProjectService(ProjectService projectService, int maxConcurrency) {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("maxConcurrency must be at least 1 but was " + maxConcurrency);
+		}
+
+		this.projectService = projectService;
+		this.permits = new Semaphore(maxConcurrency, true);
+	}
+
+	public CompletableFuture<Project> addProject(Project project) {
+		return submit(() -> projectService.addProject(project));
+	}
+
+	public CompletableFuture<List<Project>> addProjects(Collection<Project> projects) {
+		return submit(() -> projectService.addProjects(projects));
+	}
+
+	public CompletableFuture<List<Project>> fetchAllProjects() {
+		return submit(projectService::fetchAllProjects);
+	}
+
+	public CompletableFuture<List<Project>> fetchProjectsPage(String afterName, Integer afterId, int limit) {
+		return submit(() -> projectService.fetchProjectsPage(afterName, afterId, limit));
+	}
+
+	/*
+	 * The future completes exceptionally with a NoSuchElementException if the
+	 * project does not exist.
+	 */
+	public CompletableFuture<Project> fetchProjectById(Integer projectId) {
+		return submit(() -> projectService.fetchProjectById(projectId));
+	}
+
+	public CompletableFuture<List<Project>> fetchProjectsByIds(Collection<Integer> projectIds) {
+		return submit(() -> projectService.fetchProjectsByIds(projectIds));
+	}
+
+	public CompletableFuture<Project> modifyProjectDetails(Project project) {
+		return submit(() -> projectService.modifyProjectDetails(project));
+	}
+
+	public CompletableFuture<Void> deleteProject(Integer projectId) {
+		return submit(() -> {
+			projectService.deleteProject(projectId);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Integer> deleteProjects(Collection<Integer> projectIds) {
+		return submit(() -> projectService.deleteProjects(projectIds));
+	}
+
+	public CompletableFuture<Step> addStep(Step step) {
+		return submit(() -> projectService.addStep(step));
+	}
+
+	public CompletableFuture<Step> insertStepAfter(Step step, Integer afterStepId) {
+		return submit(() -> projectService.insertStepAfter(step, afterStepId));
+	}
+
+	public CompletableFuture<Void> moveStepAfter(Integer projectId, Integer stepId, Integer afterStepId) {
+		return submit(() -> {
+			projectService.moveStepAfter(projectId, stepId, afterStepId);
+			return null;
+		});
+	}
+
+	public CompletableFuture<ProjectRollup> fetchProjectRollup(Integer projectId) {
+		return submit(() -> projectService.fetchProjectRollup(projectId));
+	}
+
+	public CompletableFuture<List<ProjectRollup>> fetchMostExpensiveProjects(int limit) {
+		return submit(() -> projectService.fetchMostExpensiveProjects(limit));
+	}
+
+	public CompletableFuture<List<Integer>> searchProjects(String query, int limit) {
+		return submit(() -> projectService.searchProjects(query, limit));
+	}
+
+	/*
+	 * Return the synchronous service this facade runs on.
+	 */
+	public ProjectService getProjectService() {
+		return projectService;
+	}
+
+	// the number of calls that can start right now without waiting
+	public int getAvailablePermits() {
+		return permits.availablePermits();
+	}
+
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	private <T> CompletableFuture<T> submit(Supplier<T> work) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				permits.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new DbException("Interrupted while waiting to run a database call", e);
+			}
+
+			try {
+				return work.get();
+			} finally {
+				permits.release();
+			}
+		}, executor);
+	}
+}
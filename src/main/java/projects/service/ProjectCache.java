@@ -0,0 +1,265 @@
+package projects.service;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import projects.entity.Project;
+
+/*
+ * This is an in-process cache of fully loaded Project objects (with materials,
+ * steps, and categories) keyed by project ID. It is bounded two ways:
+ *
+ * - by size. When the cache is full the least recently used project is evicted.
+ * - by age. A project is dropped once it has been cached longer than the TTL,
+ *   so changes made outside this process are picked up eventually.
+ *
+ * ProjectService invalidates an entry whenever it writes to that project. To
+ * stop a slow read from putting back a project that was invalidated while it
+ * was being loaded, callers take a stamp() before loading and pass it to put().
+ * The put is ignored if that project was invalidated in the meantime, the same
+ * rule SearchIndex uses, so writes to other projects don't stop loads from
+ * being cached.
+ *
+ * Cached projects are shared between callers, so they must not be modified.
+ */
+public class ProjectCache {
+
+	private final int maxSize;
+	private final long ttlNanos;
+
+	// access-ordered, so iteration starts with the least recently used entry
+	private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	// the most invalidations remembered one project at a time. See
+	// recordInvalidation()
+	static final int MAX_TRACKED_INVALIDATIONS = 4096;
+
+	// bumped on every invalidation. See stamp()
+	private long generation;
+
+	// project ID -> the generation it was last invalidated at
+	private final Map<Integer, Long> invalidated = new HashMap<>();
+
+	// loads stamped before this generation are not cached at all. Set by
+	// invalidateAll(), and when the invalidations are forgotten
+	private long floor;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	private static class Entry {
+		final Project project;
+		final long expiresAt;
+
+		Entry(Project project, long expiresAt) {
+			this.project = project;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/*
+	 * Create a cache holding at most maxSize projects, each for at most
+	 * ttlSeconds. A maxSize of zero disables caching.
+	 */
+	public ProjectCache(int maxSize, long ttlSeconds) {
+		this.maxSize = maxSize;
+		this.ttlNanos = ttlSeconds * 1_000_000_000L;
+	}
+
+	/*
+	 * Create a cache configured with the projects.cache.maxSize and
+	 * projects.cache.ttlSeconds system properties.
+	 */
+	public static ProjectCache fromSystemProperties() {
+		return new ProjectCache(Integer.getInteger("projects.cache.maxSize", 1000),
+				Long.getLong("projects.cache.ttlSeconds", 300L));
+	}
+
+	/*
+	 * Return the cached project, or null if it is not cached or has expired.
+	 */
+	public synchronized Project get(Integer projectId) {
+		Entry entry = entries.get(projectId);
+
+		if (Objects.isNull(entry)) {
+			misses.increment();
+			return null;
+		}
+
+		if (System.nanoTime() - entry.expiresAt >= 0) {
+			entries.remove(projectId);
+			expirations.increment();
+			misses.increment();
+			return null;
+		}
+
+		hits.increment();
+		return entry.project;
+	}
+
+	/*
+	 * Return a value to pass to put() for a project that is about to be loaded.
+	 */
+	public synchronized long stamp() {
+		return generation;
+	}
+
+	/*
+	 * Cache a project that was loaded after the given stamp was taken. Nothing is
+	 * cached if the project was invalidated since then.
+	 */
+	public synchronized void put(Integer projectId, Project project, long stamp) {
+		if (maxSize <= 0 || invalidatedSince(projectId, stamp)) {
+			return;
+		}
+
+		entries.put(projectId, new Entry(project, System.nanoTime() + ttlNanos));
+
+		Iterator<Map.Entry<Integer, Entry>> iterator = entries.entrySet().iterator();
+
+		while (entries.size() > maxSize && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+			evictions.increment();
+		}
+	}
+
+	/*
+	 * Swap a cached project for an updated copy of it, after a write. If the entry
+	 * is no longer the given project (it was evicted, expired, or replaced in the
+	 * meantime), it is dropped instead. Either way this counts as an invalidation,
+	 * so a load that was in progress is not cached.
+	 */
+	public synchronized void replace(Integer projectId, Project cached, Project updated) {
+		recordInvalidation(projectId);
+		Entry entry = entries.get(projectId);
+
+		if (Objects.nonNull(entry) && entry.project == cached) {
+			entries.put(projectId, new Entry(updated, System.nanoTime() + ttlNanos));
+		} else {
+			entries.remove(projectId);
+		}
+	}
+
+	/*
+	 * Drop the given project from the cache.
+	 */
+	public synchronized void invalidate(Integer projectId) {
+		recordInvalidation(projectId);
+		entries.remove(projectId);
+	}
+
+	/*
+	 * Drop every project from the cache.
+	 */
+	public synchronized void invalidateAll() {
+		floor = ++generation;
+		invalidations.increment();
+		invalidated.clear();
+		entries.clear();
+	}
+
+	/*
+	 * Remember when a project was invalidated. The map is bounded: once it is
+	 * full it is forgotten and every load in progress is treated as invalidated,
+	 * which only costs those loads their place in the cache.
+	 */
+	private void recordInvalidation(Integer projectId) {
+		invalidations.increment();
+
+		if (invalidated.size() >= MAX_TRACKED_INVALIDATIONS) {
+			invalidated.clear();
+			floor = generation + 1;
+		}
+
+		invalidated.put(projectId, ++generation);
+	}
+
+	private boolean invalidatedSince(Integer projectId, long stamp) {
+		if (stamp < floor) {
+			return true;
+		}
+
+		Long invalidatedAt = invalidated.get(projectId);
+		return Objects.nonNull(invalidatedAt) && invalidatedAt > stamp;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public CacheStats getStats() {
+		return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), invalidations.sum(),
+				size(), maxSize);
+	}
+
+	/*
+	 * A point-in-time copy of the cache counters.
+	 */
+	public static class CacheStats {
+		private final long hits;
+		private final long misses;
+		private final long evictions;
+		private final long expirations;
+		private final long invalidations;
+		private final int size;
+		private final int maxSize;
+
+		CacheStats(long hits, long misses, long evictions, long expirations, long invalidations, int size,
+				int maxSize) {
+			this.hits = hits;
+			this.misses = misses;
+			this.evictions = evictions;
+			this.expirations = expirations;
+			this.invalidations = invalidations;
+			this.size = size;
+			this.maxSize = maxSize;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public long getEvictions() {
+			return evictions;
+		}
+
+		public long getExpirations() {
+			return expirations;
+		}
+
+		public long getInvalidations() {
+			return invalidations;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		public int getMaxSize() {
+			return maxSize;
+		}
+
+		public double getHitRate() {
+			long requests = hits + misses;
+			return requests == 0 ? 0.0 : (double) hits / requests;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("hits=%d, misses=%d, hitRate=%.3f, evictions=%d, expirations=%d, invalidations=%d, "
+					+ "size=%d/%d", hits, misses, getHitRate(), evictions, expirations, invalidations, size, maxSize);
+		}
+	}
+}
@@ -1,12 +1,33 @@
 package projects.service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+import projects.analytics.ProjectSnapshot;
 import projects.dao.ProjectDao;
+import projects.dao.ProjectRowHandler;
+import projects.dao.StatementCacheStats;
+import projects.dao.UpdateResult;
 import projects.entity.Project;
+import projects.entity.ProjectRollup;
+import projects.entity.Step;
+import projects.exception.ConflictException;
 import projects.exception.DbException;
+import projects.exception.NotFoundException;
+import projects.metrics.Metrics;
+import projects.metrics.Metrics.Operation;
+import projects.search.SearchIndex;
 
 /*
  * This class is a service layer in the overall application. 
@@ -21,16 +42,125 @@ import projects.exception.DbException;
  */
 public class ProjectService {
 
+	// latency, error, and row metrics for each public method
+	private static final Operation ADD_PROJECT_OP = Metrics.operation("ProjectService.addProject");
+	private static final Operation ADD_PROJECTS_OP = Metrics.operation("ProjectService.addProjects");
+	private static final Operation FETCH_ALL_PROJECTS_OP = Metrics.operation("ProjectService.fetchAllProjects");
+	private static final Operation FOR_EACH_PROJECT_OP = Metrics.operation("ProjectService.forEachProject");
+	private static final Operation FETCH_PROJECTS_PAGE_OP = Metrics.operation("ProjectService.fetchProjectsPage");
+	private static final Operation FETCH_PROJECT_BY_ID_OP = Metrics.operation("ProjectService.fetchProjectById");
+	private static final Operation FETCH_PROJECTS_BY_IDS_OP = Metrics.operation("ProjectService.fetchProjectsByIds");
+	private static final Operation MODIFY_PROJECT_DETAILS_OP = Metrics
+			.operation("ProjectService.modifyProjectDetails");
+	private static final Operation DELETE_PROJECT_OP = Metrics.operation("ProjectService.deleteProject");
+	private static final Operation DELETE_PROJECTS_OP = Metrics.operation("ProjectService.deleteProjects");
+	private static final Operation ADD_STEP_OP = Metrics.operation("ProjectService.addStep");
+	private static final Operation INSERT_STEP_AFTER_OP = Metrics.operation("ProjectService.insertStepAfter");
+	private static final Operation MOVE_STEP_AFTER_OP = Metrics.operation("ProjectService.moveStepAfter");
+	private static final Operation FETCH_PROJECT_ROLLUP_OP = Metrics.operation("ProjectService.fetchProjectRollup");
+	private static final Operation FETCH_MOST_EXPENSIVE_PROJECTS_OP = Metrics
+			.operation("ProjectService.fetchMostExpensiveProjects");
+	private static final Operation GET_ANALYTICS_SNAPSHOT_OP = Metrics
+			.operation("ProjectService.getAnalyticsSnapshot");
+	private static final Operation RELOAD_ANALYTICS_SNAPSHOT_OP = Metrics
+			.operation("ProjectService.reloadAnalyticsSnapshot");
+	private static final Operation EXPORT_PROJECTS_OP = Metrics.operation("ProjectService.exportProjects");
+	private static final Operation SEARCH_PROJECTS_OP = Metrics.operation("ProjectService.searchProjects");
+	private static final Operation REBUILD_SEARCH_INDEX_OP = Metrics.operation("ProjectService.rebuildSearchIndex");
+
+	// the number of projects loaded at a time when the search index is rebuilt
+	private static final int SEARCH_REBUILD_PAGE_SIZE = 500;
+
 	private ProjectDao projectDao = new ProjectDao();
 
-	// add a new project
+	/*
+	 * Fully loaded projects, keyed by ID. Reads go through the cache and every
+	 * write to a project invalidates its entry.
+	 */
+	private ProjectCache projectCache = ProjectCache.fromSystemProperties();
+
+	/*
+	 * Search terms of every project. The index is built from the database the
+	 * first time it is searched and is kept up to date by the writes made through
+	 * this service after that. Until then writes don't touch it, so an
+	 * application that never searches pays nothing for it.
+	 */
+	private final SearchIndex searchIndex = new SearchIndex();
+	private final Object searchRebuildLock = new Object();
+	private volatile boolean searchIndexInUse;
+	private volatile boolean searchIndexBuilt;
+
+	/*
+	 * A columnar copy of the projects and materials for reporting. It is loaded
+	 * on first use. After that, writes made through this service record the IDs
+	 * of the projects they change, and the next call to getAnalyticsSnapshot()
+	 * reloads only those projects.
+	 */
+	private volatile ProjectSnapshot analyticsSnapshot;
+	private final Set<Integer> snapshotChanges = ConcurrentHashMap.newKeySet();
+	private final Object snapshotLock = new Object();
+	private volatile boolean snapshotInUse;
+
+	// add a new project. New projects get new IDs, so there is nothing in the
+	// cache to invalidate. Only the project row is inserted; use addProjects() for
+	// a project with materials, steps, or categories
 	public Project addProject(Project project) {
-		return projectDao.insertProject(project);
+		return ADD_PROJECT_OP.time(() -> {
+			long stamp = searchIndex.stamp();
+			Project added = projectDao.insertProject(project);
+
+			// the row holds everything that was inserted, so it is indexed as it is
+			// rather than read back
+			if (searchIndexInUse) {
+				searchIndex.put(added, stamp);
+			}
+
+			snapshotChanged(added.getProjectId());
+			return added;
+		}, added -> 1);
+	}
+
+	/*
+	 * Add a group of projects, including their materials, steps, and category
+	 * links, in one transaction. The returned projects have their IDs set.
+	 */
+	public List<Project> addProjects(Collection<Project> projects) {
+		return ADD_PROJECTS_OP.time(() -> {
+			long stamp = searchIndex.stamp();
+			List<Project> added = projectDao.insertProjects(projects);
+
+			// the projects were inserted with all of their details, so they can be
+			// indexed as they are
+			if (searchIndexInUse) {
+				added.forEach(project -> searchIndex.put(project, stamp));
+			}
+
+			added.forEach(project -> snapshotChanged(project.getProjectId()));
+
+			return added;
+		}, List::size);
 	}
 
 	// return the results of the method call to the DAO class
 	public List<Project> fetchAllProjects() {
-		return projectDao.fetchAllProjects();
+		return FETCH_ALL_PROJECTS_OP.time(projectDao::fetchAllProjects, List::size);
+	}
+
+	/*
+	 * Pass every project (without details) to the consumer, in name order,
+	 * without loading them all into memory. Returns the number of projects.
+	 */
+	public int forEachProject(Consumer<? super Project> consumer) {
+		return FOR_EACH_PROJECT_OP.time(() -> projectDao.forEachProject(consumer), Integer::longValue);
+	}
+
+	/*
+	 * Return up to limit projects (without details) that follow the given name
+	 * and ID in name order. Pass nulls to get the first page.
+	 */
+	public List<Project> fetchProjectsPage(String afterName, Integer afterId, int limit) {
+		return FETCH_PROJECTS_PAGE_OP.time(() -> projectDao.fetchProjectsPage(afterName, afterId, limit),
+				List::size);
 	}
 
 	/*
@@ -62,28 +192,396 @@ public class ProjectService {
 		 * NoSuchElementException with the custom message, "Project with project ID=" +
 		 * projectId + " does not exist."
 		 */
-		return projectDao.fetchProjectById(projectId).orElseThrow(
-				() -> new NoSuchElementException("Project with project ID=" + projectId + "does not exist."));
+		return FETCH_PROJECT_BY_ID_OP.time(() -> {
+			Project cached = projectCache.get(projectId);
+
+			if (Objects.nonNull(cached)) {
+				return cached;
+			}
 
+			long stamp = projectCache.stamp();
+			Project project = projectDao.fetchProjectById(projectId).orElseThrow(
+					() -> new NoSuchElementException("Project with project ID=" + projectId + "does not exist."));
+
+			projectCache.put(projectId, project, stamp);
+			return project;
+		}, project -> 1);
 	}
 
-	public void modifyProjectDetails(Project project) {
-		/*
-		 * Call projectDao.modifyProjectDetails(). Pass the Project object as a
-		 * parameter. The DAO method returns a boolean that indicates whether the UPDATE
-		 * operation was successful. Check the return value. If it is false, throw a
-		 * DbException with a message that says the project does not exist.
-		 */
-		if (!projectDao.modifyProjectDetails(project)) {
-			throw new DbException("Project with ID=" + project.getProjectId() + " does not exist.");
-		}
+	/*
+	 * Return the fully loaded projects with the given IDs, in the order given.
+	 * Projects in the cache are served from it; the rest are loaded together with
+	 * a fixed number of queries and then cached. IDs that do not exist are
+	 * skipped.
+	 */
+	public List<Project> fetchProjectsByIds(Collection<Integer> projectIds) {
+		return FETCH_PROJECTS_BY_IDS_OP.time(() -> {
+			Map<Integer, Project> found = new HashMap<>();
+			List<Integer> missing = new ArrayList<>();
+
+			for (Integer projectId : projectIds) {
+				Project cached = projectCache.get(projectId);
+
+				if (Objects.nonNull(cached)) {
+					found.put(projectId, cached);
+				} else {
+					missing.add(projectId);
+				}
+			}
+
+			if (!missing.isEmpty()) {
+				long stamp = projectCache.stamp();
+
+				for (Project project : projectDao.fetchProjectsByIds(missing)) {
+					found.put(project.getProjectId(), project);
+					projectCache.put(project.getProjectId(), project, stamp);
+				}
+			}
+
+			List<Project> projects = new ArrayList<>(found.size());
+
+			for (Integer projectId : new LinkedHashSet<>(projectIds)) {
+				Project project = found.get(projectId);
+
+				if (Objects.nonNull(project)) {
+					projects.add(project);
+				}
+			}
+
+			return projects;
+		}, List::size);
+	}
+
+	/*
+	 * Save the fields of the project that have changed. Edit a copy() of a fetched
+	 * project, because fetched projects may be shared through the cache. If the
+	 * project has a version, the save fails with a ConflictException if the
+	 * project has been changed since that version; read it again and reapply the
+	 * change. A project that does not exist throws a NotFoundException.
+	 *
+	 * Returns the project as saved, with its new version. When the project was
+	 * cached at the version the update was made to, the cached copy is brought up
+	 * to date and returned instead of reading the project again. Like any fetched
+	 * project, the returned one must not be modified.
+	 */
+	public Project modifyProjectDetails(Project project) {
+		return MODIFY_PROJECT_DETAILS_OP.time(() -> {
+			Integer projectId = project.getProjectId();
+			Integer version = project.getVersion();
+			Set<Project.Field> changed = project.getChangedFields();
+			Project cached = projectCache.get(projectId);
+			long indexStamp = searchIndex.stamp();
+			UpdateResult result;
+
+			try {
+				result = projectDao.modifyProjectDetails(project);
+			} catch (RuntimeException e) {
+				projectCache.invalidate(projectId);
+				throw e;
+			}
+
+			switch (result) {
+			case UNCHANGED:
+				return project;
+			case NOT_FOUND:
+				projectCache.invalidate(projectId);
+				throw new NotFoundException("Project with ID=" + projectId + " does not exist.");
+			case CONFLICT:
+				projectCache.invalidate(projectId);
+				throw new ConflictException(
+						"Project with ID=" + projectId + " has been changed since version " + version + " was read.");
+			default:
+				break;
+			}
+
+			// every update adds one to the version, so a cached project one version
+			// behind is the project as it was just before this update
+			Project saved = project;
+
+			if (Objects.nonNull(cached) && Objects.nonNull(cached.getVersion())
+					&& cached.getVersion() + 1 == project.getVersion()) {
+				saved = cached.withChanges(project);
+				projectCache.replace(projectId, cached, saved);
+			} else {
+				projectCache.invalidate(projectId);
+			}
+
+			project.clearChangedFields();
+
+			// only the name and notes are indexed. A brought up to date cached project
+			// is indexed as it is; otherwise the project is read for the index
+			if (changed.contains(Project.Field.PROJECT_NAME) || changed.contains(Project.Field.NOTES)) {
+				boolean indexed = saved != project && searchIndexInUse && searchIndex.put(saved, indexStamp);
+
+				if (!indexed) {
+					reindex(projectId);
+				}
+			}
+
+			snapshotChanged(projectId);
+			return saved;
+		}, saved -> 1);
 	}
 
 	public void deleteProject(Integer projectId) {
-		if (!projectDao.deleteProject(projectId)) {
-			throw new DbException("Project with ID= " + projectId + " does not exist");
+		DELETE_PROJECT_OP.time(() -> {
+			if (deleteProjects(List.of(projectId)) == 0) {
+				throw new NotFoundException("Project with ID= " + projectId + " does not exist");
+			}
+		});
+	}
+
+	/*
+	 * Delete the projects with the given IDs and everything that belongs to them,
+	 * in one transaction. Returns the number of projects deleted; IDs that do not
+	 * exist are skipped. The DAO sends the IDs in chunks, with one round trip
+	 * per chunk, and the deleted rows stay locked until the last chunk commits.
+	 */
+	public int deleteProjects(Collection<Integer> projectIds) {
+		return DELETE_PROJECTS_OP.time(() -> {
+			try {
+				return projectDao.deleteProjects(projectIds);
+			} finally {
+				for (Integer projectId : projectIds) {
+					projectCache.invalidate(projectId);
+					snapshotChanged(projectId);
+
+					// the index remembers removed IDs until the next rebuild, so don't record
+					// any before search is used. A rebuild sets the flag before it takes its
+					// stamp, so a delete that sees the flag unset can't be missed by it
+					if (searchIndexInUse) {
+						searchIndex.remove(projectId);
+					}
+				}
+			}
+		}, deleted -> deleted);
+	}
+
+	/*
+	 * Add a step to the end of its project's steps. The step's projectId and
+	 * stepText must be set. The returned step has its ID and order set.
+	 */
+	public Step addStep(Step step) {
+		return ADD_STEP_OP.time(() -> {
+			try {
+				projectDao.addStep(step);
+			} finally {
+				projectCache.invalidate(step.getProjectId());
+			}
+
+			reindex(step.getProjectId());
+			return step;
+		}, added -> 1);
+	}
+
+	/*
+	 * Add a step directly after another step of the same project. Pass a null
+	 * afterStepId to make it the first step.
+	 */
+	public Step insertStepAfter(Step step, Integer afterStepId) {
+		return INSERT_STEP_AFTER_OP.time(() -> {
+			try {
+				projectDao.insertStepAfter(step, afterStepId);
+			} finally {
+				projectCache.invalidate(step.getProjectId());
+			}
+
+			reindex(step.getProjectId());
+			return step;
+		}, inserted -> 1);
+	}
+
+	/*
+	 * Move a step so that it comes directly after another step of the same
+	 * project, or first if afterStepId is null.
+	 */
+	public void moveStepAfter(Integer projectId, Integer stepId, Integer afterStepId) {
+		MOVE_STEP_AFTER_OP.time(() -> {
+			try {
+				if (!projectDao.moveStepAfter(projectId, stepId, afterStepId)
+						&& !Objects.equals(stepId, afterStepId)) {
+					throw new NotFoundException(
+							"Step with ID=" + stepId + " does not exist in project " + projectId + ".");
+				}
+			} finally {
+				projectCache.invalidate(projectId);
+			}
+		});
+	}
+
+	/*
+	 * Return a project's total material cost, material and step counts, and hours
+	 * variance without loading its materials and steps. Throws an exception if
+	 * the project does not exist.
+	 */
+	public ProjectRollup fetchProjectRollup(Integer projectId) {
+		return FETCH_PROJECT_ROLLUP_OP.time(() -> projectDao.fetchProjectRollup(projectId).orElseThrow(
+				() -> new NoSuchElementException("Project with project ID=" + projectId + " does not exist.")),
+				rollup -> 1);
+	}
+
+	// return the limit projects with the highest total material cost
+	public List<ProjectRollup> fetchMostExpensiveProjects(int limit) {
+		return FETCH_MOST_EXPENSIVE_PROJECTS_OP.time(() -> projectDao.fetchMostExpensiveProjects(limit),
+				List::size);
+	}
+
+	/*
+	 * Stream every project with its materials, steps, and categories to the
+	 * handler, as rows, in project ID order. Returns the number of projects.
+	 */
+	public int exportProjects(ProjectRowHandler handler) {
+		return EXPORT_PROJECTS_OP.time(() -> projectDao.exportProjects(handler), Integer::longValue);
+	}
+
+	/*
+	 * Return the analytics snapshot, loading it the first time and otherwise
+	 * reloading the projects changed through this service since the last call.
+	 * Changes made by other processes are picked up by
+	 * reloadAnalyticsSnapshot().
+	 */
+	public ProjectSnapshot getAnalyticsSnapshot() {
+		return GET_ANALYTICS_SNAPSHOT_OP.time(() -> {
+			synchronized (snapshotLock) {
+				if (Objects.isNull(analyticsSnapshot)) {
+					return reloadAnalyticsSnapshot();
+				}
+
+				if (!snapshotChanges.isEmpty()) {
+					// take the changes recorded so far. Any recorded after this are reloaded
+					// next time
+					Set<Integer> changed = new HashSet<>(snapshotChanges);
+					snapshotChanges.removeAll(changed);
+
+					analyticsSnapshot = analyticsSnapshot.refresh(changed, projectDao.fetchProjectsByIds(changed));
+				}
+
+				return analyticsSnapshot;
+			}
+		}, ProjectSnapshot::size);
+	}
+
+	/*
+	 * Load the analytics snapshot from scratch by streaming the project and
+	 * material tables.
+	 */
+	public ProjectSnapshot reloadAnalyticsSnapshot() {
+		return RELOAD_ANALYTICS_SNAPSHOT_OP.time(() -> {
+			synchronized (snapshotLock) {
+				// changes made while the tables are read are reloaded next time
+				snapshotInUse = true;
+				snapshotChanges.clear();
+
+				ProjectSnapshot.Builder builder = new ProjectSnapshot.Builder();
+				projectDao.forEachProject(builder::addProject);
+				projectDao.forEachMaterial(builder::addMaterial);
+
+				analyticsSnapshot = builder.build();
+				return analyticsSnapshot;
+			}
+		}, ProjectSnapshot::size);
+	}
+
+	private void snapshotChanged(Integer projectId) {
+		if (snapshotInUse) {
+			snapshotChanges.add(projectId);
+		}
+	}
+
+	/*
+	 * Return the IDs of up to limit projects whose name, notes, step text, or
+	 * material names contain every word of the query, best match first. The
+	 * first search builds the index.
+	 */
+	public List<Integer> searchProjects(String query, int limit) {
+		return SEARCH_PROJECTS_OP.time(() -> {
+			if (!searchIndexBuilt) {
+				synchronized (searchRebuildLock) {
+					if (!searchIndexBuilt) {
+						rebuildSearchIndex();
+					}
+				}
+			}
+
+			return searchIndex.search(query, limit);
+		}, List::size);
+	}
+
+	/*
+	 * Reload the search index from the database, a page of projects at a time.
+	 * Searches keep working while it runs, and writes made while it runs are not
+	 * lost. Returns the number of projects indexed.
+	 */
+	public int rebuildSearchIndex() {
+		return REBUILD_SEARCH_INDEX_OP.time(() -> {
+			synchronized (searchRebuildLock) {
+				searchIndexInUse = true;
+
+				long stamp = searchIndex.stamp();
+				Set<Integer> seen = new HashSet<>();
+				List<Project> page = projectDao.fetchProjectsPage(null, null, SEARCH_REBUILD_PAGE_SIZE);
+
+				while (!page.isEmpty()) {
+					List<Integer> projectIds = new ArrayList<>(page.size());
+					page.forEach(project -> projectIds.add(project.getProjectId()));
+					seen.addAll(projectIds);
+
+					for (Project project : projectDao.fetchProjectsByIds(projectIds)) {
+						searchIndex.put(project, stamp);
+					}
+
+					Project last = page.get(page.size() - 1);
+					page = projectDao.fetchProjectsPage(last.getProjectName(), last.getProjectId(),
+							SEARCH_REBUILD_PAGE_SIZE);
+				}
+
+				searchIndex.retainOnly(seen, stamp);
+				searchIndexBuilt = true;
+
+				return searchIndex.size();
+			}
+		}, Integer::longValue);
+	}
+
+	/*
+	 * Load a project that was just written and put it in the search index. If the
+	 * load fails the write has still happened, so the index is marked for a
+	 * rebuild instead of failing the caller.
+	 */
+	private void reindex(Integer projectId) {
+		if (!searchIndexInUse) {
+			return;
+		}
+
+		try {
+			long stamp = searchIndex.stamp();
+			Optional<Project> project = projectDao.fetchProjectById(projectId);
+
+			if (project.isPresent()) {
+				searchIndex.put(project.get(), stamp);
+			} else {
+				searchIndex.remove(projectId);
+				snapshotChanged(projectId);
+			}
+		} catch (DbException e) {
+			searchIndexBuilt = false;
 		}
+	}
+
+	/*
+	 * Return the project cache hit, miss, and eviction counters. Use these to size
+	 * the cache (projects.cache.maxSize and projects.cache.ttlSeconds).
+	 */
+	public ProjectCache.CacheStats getCacheStats() {
+		return projectCache.getStats();
+	}
 
+	/*
+	 * Return MySQL's prepared statement counters, which show how often the
+	 * statement cache saves a parse.
+	 */
+	public StatementCacheStats getStatementCacheStats() {
+		return projectDao.fetchStatementCacheStats();
 	}
 
 }
@@ -0,0 +1,75 @@
+package projects.service;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+/*
+ * The checks a project from outside the menu (an import file or an HTTP
+ * request) must pass before it is inserted. A project that fails throws an
+ * IllegalArgumentException that says why.
+ */
+public final class ProjectValidator {
+
+	// the columns are VARCHAR(128) and DECIMAL(7,2)
+	private static final int MAX_NAME_LENGTH = 128;
+	private static final int MAX_INTEGER_DIGITS = 5;
+	private static final int MAX_SCALE = 2;
+
+	private ProjectValidator() {
+	}
+
+	/*
+	 * Apply the rules ProjectsApp.createProject() applies when a project is
+	 * entered by hand, and the limits of the columns.
+	 */
+	public static void validate(Project project) {
+		checkName("project name", project.getProjectName());
+		checkDecimal("estimated hours", project.getEstimatedHours());
+		checkDecimal("actual hours", project.getActualHours());
+
+		Integer difficulty = project.getDifficulty();
+
+		if (Objects.isNull(difficulty) || difficulty < 1 || difficulty > 5) {
+			throw new IllegalArgumentException("The difficulty must be between 1 and 5, not " + difficulty);
+		}
+
+		for (Material material : project.getMaterials()) {
+			checkName("material name", material.getMaterialName());
+			checkDecimal("material cost", material.getCost());
+		}
+
+		for (Step step : project.getSteps()) {
+			if (Objects.isNull(step.getStepText()) || step.getStepText().isBlank()) {
+				throw new IllegalArgumentException("A step has no text");
+			}
+		}
+
+		for (Category category : project.getCategories()) {
+			if (Objects.isNull(category.getCategoryId())) {
+				throw new IllegalArgumentException("Category " + category.getCategoryName() + " has no ID");
+			}
+		}
+	}
+
+	private static void checkName(String what, String name) {
+		if (Objects.isNull(name) || name.isBlank()) {
+			throw new IllegalArgumentException("The " + what + " is missing");
+		}
+
+		if (name.length() > MAX_NAME_LENGTH) {
+			throw new IllegalArgumentException("The " + what + " is longer than " + MAX_NAME_LENGTH + " characters");
+		}
+	}
+
+	private static void checkDecimal(String what, BigDecimal value) {
+		if (Objects.nonNull(value)
+				&& (value.scale() > MAX_SCALE || value.precision() - value.scale() > MAX_INTEGER_DIGITS)) {
+			throw new IllegalArgumentException("The " + what + " " + value + " does not fit DECIMAL(7,2)");
+		}
+	}
+}
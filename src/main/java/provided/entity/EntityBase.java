@@ -3,6 +3,7 @@
  */
 package provided.entity;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Objects;
 
@@ -14,6 +15,31 @@ import java.util.Objects;
  *
  */
 public abstract class EntityBase {
+  /*
+   * The fraction text for every pair of numerators on the sixteenths and fifteenths grids, indexed
+   * [sixteenths][fifteenths]. An empty string means there is no fractional part. The table is built
+   * with findFactor(), so the result is the same as picking the factors at run time.
+   */
+  private static final String[][] FRACTIONS = new String[17][16];
+
+  static {
+    for(int sixteenths = 0; sixteenths <= 16; sixteenths++) {
+      for(int fifteenths = 0; fifteenths <= 15; fifteenths++) {
+        Factor twoFactor = findFactor(sixteenths, 16, 2);
+        Factor threeFactor = findFactor(fifteenths, 15, 5);
+
+        /*
+         * Pick the factor to use. This just picks the factor with the lowest value. So, the value
+         * .6667 has a factor of 3 for 3-factor (2/3) but 2-factor has a factor of 16 (11/16). In
+         * this case pick the 3-factor.
+         */
+        Factor factor = twoFactor.factor < threeFactor.factor ? twoFactor : threeFactor;
+
+        FRACTIONS[sixteenths][fifteenths] = factor.num == 0 ? "" : factor.toString();
+      }
+    }
+  }
+
   /**
    * This converts from a decimal amount (like 16.25) to a fractional amount
    * (like "16 1/4"). If the given amount is not null and is greater than zero
@@ -24,69 +50,121 @@ public abstract class EntityBase {
    * @return The converted amount.
    */
   protected String toFraction(BigDecimal value) {
-    String result = "";
-    Double amount = Objects.isNull(value) ? null : value.doubleValue();
+    return appendFraction(new StringBuilder(8), value).toString();
+  }
+
+  /**
+   * This appends the same text as {@link #toFraction(BigDecimal)} to a builder. The fraction is
+   * looked up in a table and the whole part is appended as an int, so nothing is allocated.
+   * 
+   * @param out The builder to append to.
+   * @param value The amount to convert. It may be {@code null}.
+   * @return The builder.
+   */
+  protected StringBuilder appendFraction(StringBuilder out, BigDecimal value) {
+    if(Objects.isNull(value)) {
+      return out;
+    }
 
-    if (Objects.nonNull(amount) && amount > 0.0) {
-      int wholePart = Double.valueOf(Math.floor(amount)).intValue();
-      double fractionalPart = amount - wholePart;
-      Factor twoFactor = findFactor(fractionalPart, 16, 2);
-      Factor threeFactor = findFactor(fractionalPart, 15, 5);
+    double amount = value.doubleValue();
 
-      /*
-       * Pick the factor to use. This just picks the factor with the lowest
-       * value. So, the value .6667 has a factor of 3 for 3-factor (2/3) but
-       * 2-factor has a factor of 16 (11/16). In this case pick the 3-factor.
-       */
-      Factor factor =
-          twoFactor.factor < threeFactor.factor ? twoFactor : threeFactor;
+    if(amount > 0.0) {
+      int wholePart = (int)Math.floor(amount);
+      String fraction = fractionOf(amount - wholePart);
 
       /*
-       * Only use the whole part if it's greater than zero. Otherwise this would
-       * generate values like "0 1/2" instead of "1/2".
+       * Only use the whole part if it's greater than zero. Otherwise this would generate values
+       * like "0 1/2" instead of "1/2".
        */
-      if (wholePart > 0) {
-        result += Integer.valueOf(wholePart).toString();
+      if(wholePart > 0) {
+        out.append(wholePart);
       }
 
-      /* If there is a fractional part, finish the result. */
-      if (factor.num != 0) {
-        /*
-         * If the result is not empty, add a space. So: "2" becomes "2 ". This
-         * allows the fraction to be spaced properly.
-         */
-        if (!result.isEmpty()) {
-          result += " ";
+      /* If there is a fractional part, add it, with a space after any whole part. */
+      if(!fraction.isEmpty()) {
+        if(wholePart > 0) {
+          out.append(' ');
+        }
+
+        out.append(fraction);
+      }
+
+      out.append(' ');
+    }
+
+    return out;
+  }
+
+  /**
+   * This appends the same text as {@link #toFraction(BigDecimal)} to any {@link Appendable}, such
+   * as a Writer.
+   * 
+   * @param out Where to write the text.
+   * @param value The amount to convert. It may be {@code null}.
+   * @return The Appendable.
+   * @throws IOException Thrown if the Appendable throws it.
+   */
+  protected Appendable appendFraction(Appendable out, BigDecimal value) throws IOException {
+    if(Objects.isNull(value)) {
+      return out;
+    }
+
+    double amount = value.doubleValue();
+
+    if(amount > 0.0) {
+      int wholePart = (int)Math.floor(amount);
+      String fraction = fractionOf(amount - wholePart);
+
+      if(wholePart > 0) {
+        appendDigits(out, wholePart);
+      }
+
+      if(!fraction.isEmpty()) {
+        if(wholePart > 0) {
+          out.append(' ');
         }
 
-        /* Now, add the fractional part onto the result. */
-        result += factor;
+        out.append(fraction);
       }
 
-      result += " ";
+      out.append(' ');
     }
 
-    return result;
+    return out;
   }
 
   /**
-   * Find the closest match given the factor and divisor.
+   * Look up the fraction for the fractional part of an amount. Multiply the fractional part by each
+   * grid size and round. For example, .33333333 * 15 = 4.999999999, which, rounded is 5, and .3333
+   * * 16 rounds to 5. The table entry for [5][5] is "1/3".
+   */
+  private static String fractionOf(double fractionalPart) {
+    return FRACTIONS[(int)Math.round(fractionalPart * 16)][(int)Math.round(fractionalPart * 15)];
+  }
+
+  /**
+   * Append a positive int one digit at a time, so no String is created for it.
+   */
+  private static void appendDigits(Appendable out, int value) throws IOException {
+    if(value >= 10) {
+      appendDigits(out, value / 10);
+    }
+
+    out.append((char)('0' + value % 10));
+  }
+
+  /**
+   * Reduce a fraction on one of the grids.
    * 
-   * @param fractionalPart This is the fractional part to match (i.e., .25).
+   * @param num This is the numerator on the grid. For example, .33333333 * 15 = 4.999999999,
+   *        which, rounded is 5. This, applied with the factor, becomes 5/15.
    * @param factor This is the smallest fraction to use when creating the
    *        result. So, a factor of 16 might return 1/16 or 1/8, 1/4, etc.
    * @param divisor This is the value to use when dividing the factor to get the
    *        result.
    * @return The lowest factor (i.e., 1/2 instead of 8/16).
    */
-  private Factor findFactor(double fractionalPart, int factor, int divisor) {
-    /*
-     * Multiply the fractional part by the factor, round the result and convert
-     * to an integer. For example, .33333333 * 15 = 4.999999999, which, rounded
-     * is 5. This, applied with the factor, becomes 5/15.
-     */
-    int num = Double.valueOf(Math.round(fractionalPart * factor)).intValue();
-
+  private static Factor findFactor(int num, int factor, int divisor) {
     /*
      * Reduce the factor. If each part (num and factor) is divisible evenly by
      * the divisor, divide both. So, 5 and 15 are evenly divided by 5. The
@@ -3,19 +3,17 @@
  */
 package provided.util;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.sql.Time;
-import java.sql.Timestamp;
 import java.sql.Types;
-import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -37,6 +35,19 @@ public abstract class DaoBase {
     conn.setAutoCommit(false);
   }
 
+  /**
+   * This starts a read-only MySQL transaction. The connection is marked read only, which the driver
+   * passes on to MySQL as a read-only transaction, so MySQL can skip the bookkeeping it needs for
+   * writes. The transaction must still be committed (or rolled back) when the reads are done.
+   * 
+   * @param conn The connection on which to start the transaction.
+   * @throws SQLException Thrown if an error occurs starting the transaction.
+   */
+  protected void startReadOnlyTransaction(Connection conn) throws SQLException {
+    conn.setReadOnly(true);
+    conn.setAutoCommit(false);
+  }
+
   /**
    * Commit the transaction. This will write all the changes, if any, to the database.
    * 
@@ -147,7 +158,11 @@ public abstract class DaoBase {
    * @param idName The name of the parent ID field
    * @return The count of the entities attached to the parent plus one
    * @throws SQLException Thrown if an error occurs.
+   * @deprecated The count is a scan of the child rows, two concurrent callers get the same number,
+   *             and the numbers repeat once a row is deleted. Steps are ordered by
+   *             {@code projects.dao.StepRankAllocator} instead.
    */
+  @Deprecated
   protected Integer getNextSequenceNumber(Connection conn, Integer id, String tableName,
       String idName) throws SQLException {
     String sql = "SELECT COUNT(*) FROM " + tableName + " WHERE " + idName + " = ?";
@@ -166,20 +181,21 @@ public abstract class DaoBase {
   }
 
   /**
-   * This returns the integer primary key value of the last row inserted into the given table. It
+   * This returns the integer primary key value of the last row inserted on the connection. It
    * allows the ID to be inserted into the entity object after inserting it into the table.
    * 
-   * The other way of doing this is to call {@link Statement#getGeneratedKeys()}, but this returns a
-   * result set that needs to be parsed for the ID. It's not really any easier than this approach
-   * but should be closer to database-agnostic.
+   * LAST_INSERT_ID() is per-connection, so the query has no FROM clause and returns exactly one
+   * row. When the insert was prepared with {@link Statement#RETURN_GENERATED_KEYS},
+   * {@link #getGeneratedKey(Statement)} gets the same value without an extra query.
    * 
    * @param conn The connection
-   * @param table The name of the table on which to get the last inserted primary key value
+   * @param table The name of the table on which the row was inserted. It is not used in the query
+   *        and is kept for existing callers.
    * @return The primary key value
    * @throws SQLException Thrown if an error occurs
    */
   protected Integer getLastInsertId(Connection conn, String table) throws SQLException {
-    String sql = String.format("SELECT LAST_INSERT_ID() FROM %s", table);
+    String sql = "SELECT LAST_INSERT_ID()";
 
     try(Statement stmt = conn.createStatement()) {
       try(ResultSet rs = stmt.executeQuery(sql)) {
@@ -192,6 +208,45 @@ public abstract class DaoBase {
     }
   }
 
+  /**
+   * This returns the primary key value generated by the last insert executed on the statement. The
+   * statement must have been prepared with {@link Statement#RETURN_GENERATED_KEYS}.
+   * 
+   * @param stmt The statement that performed the insert
+   * @return The primary key value
+   * @throws SQLException Thrown if an error occurs or no key was generated
+   */
+  protected Integer getGeneratedKey(Statement stmt) throws SQLException {
+    try(ResultSet rs = stmt.getGeneratedKeys()) {
+      if(rs.next()) {
+        return rs.getInt(1);
+      }
+
+      throw new SQLException("Unable to retrieve the primary key value. No generated keys!");
+    }
+  }
+
+  /**
+   * This returns all of the primary key values generated by the last insert or batch of inserts
+   * executed on the statement, in insertion order. The statement must have been prepared with
+   * {@link Statement#RETURN_GENERATED_KEYS}.
+   * 
+   * @param stmt The statement that performed the inserts
+   * @return The primary key values
+   * @throws SQLException Thrown if an error occurs
+   */
+  protected List<Integer> getGeneratedKeys(Statement stmt) throws SQLException {
+    try(ResultSet rs = stmt.getGeneratedKeys()) {
+      List<Integer> keys = new ArrayList<>();
+
+      while(rs.next()) {
+        keys.add(rs.getInt(1));
+      }
+
+      return keys;
+    }
+  }
+
   /**
    * This extracts an object of the given type from a result set. The object must have a
    * zero-argument constructor. It builds an object from a result set using reflection as follows:
@@ -214,6 +269,10 @@ public abstract class DaoBase {
    * Recipe recipe = extract(rs, Recipe.class);
    * </pre>
    * 
+   * The reflection work is cached (see {@link #rowMapper(ResultSet, Class)}), so calling this once
+   * per row is cheap. Loops over large result sets should still obtain the mapper once and call
+   * {@link RowMapper#map(ResultSet)} directly.
+   * 
    * Note: if the Java field does not exist in the result set, the value of the field is left
    * unchanged. So, class Recipe has an instance variable:
    * 
@@ -231,80 +290,69 @@ public abstract class DaoBase {
    * @return A populated class.
    */
   protected <T> T extract(ResultSet rs, Class<T> classType) {
-    try {
-      /* Obtain the constructor and create an object of the correct type. */
-      Constructor<T> con = classType.getConstructor();
-      T obj = con.newInstance();
-
-      /* Get the list of fields and loop through them. */
-      for(Field field : classType.getDeclaredFields()) {
-        String colName = camelCaseToSnakeCase(field.getName());
-        Class<?> fieldType = field.getType();
-
-        /*
-         * Set the field accessible flag which means that we can populate even private fields
-         * without using the setter.
-         */
-        field.setAccessible(true);
-        Object fieldValue = null;
-
-        try {
-          fieldValue = rs.getObject(colName);
-        }
-        catch(SQLException e) {
-          /*
-           * An exception caught here means that the field name isn't in the result set. Don't take
-           * any action.
-           */
-        }
+    return rowMapper(rs, classType).map(rs);
+  }
 
-        /*
-         * Only set the value in the object if there is a value with the same name in the result
-         * set. This will preserve instance variables (like lists) that are assigned values when the
-         * object is created.
-         */
-        if(Objects.nonNull(fieldValue)) {
-          /*
-           * Convert the following types: Time -> LocalTime, and Timestamp -> LocalDateTime.
-           */
-          if(fieldValue instanceof Time && fieldType.equals(LocalTime.class)) {
-            fieldValue = ((Time)fieldValue).toLocalTime();
-          }
-          else if(fieldValue instanceof Timestamp && fieldType.equals(LocalDateTime.class)) {
-            fieldValue = ((Timestamp)fieldValue).toLocalDateTime();
-          }
-
-          field.set(obj, fieldValue);
-        }
-      }
+  /**
+   * This returns a mapper that creates objects of the given type from the rows of a result set. The
+   * mapping rules are the same as {@link #extract(ResultSet, Class)}, but the reflection is done
+   * once per class and column layout instead of once per row. Obtain the mapper before looping over
+   * the result set:
+   * 
+   * <pre>
+   * RowMapper&lt;Recipe&gt; mapper = rowMapper(rs, Recipe.class);
+   * 
+   * while(rs.next()) {
+   *   recipes.add(mapper.map(rs));
+   * }
+   * </pre>
+   * 
+   * @param <T> The Generic for the type of object to create.
+   * @param rs The result set that will be mapped. Only its metadata is read.
+   * @param classType The actual class type of the objects to create.
+   * @return The (cached) mapper.
+   */
+  protected <T> RowMapper<T> rowMapper(ResultSet rs, Class<T> classType) {
+    return RowMapper.of(rs, classType);
+  }
+
+  /**
+   * This extracts every remaining row of a result set into a list of objects of the given type and
+   * closes the result set. See {@link #extract(ResultSet, Class)} for the mapping rules.
+   * 
+   * @param <T> The Generic for the type of object to create.
+   * @param rs The result set. It is closed when this method returns.
+   * @param classType The actual class type of the objects to create.
+   * @return A list with one object per row, in result set order.
+   * @throws SQLException Thrown if an error occurs reading the result set.
+   */
+  protected <T> List<T> extractAll(ResultSet rs, Class<T> classType) throws SQLException {
+    try(rs) {
+      RowMapper<T> mapper = rowMapper(rs, classType);
+      List<T> list = new LinkedList<>();
 
-      return obj;
+      while(rs.next()) {
+        list.add(mapper.map(rs));
+      }
 
-    }
-    catch(Exception e) {
-      throw new DaoException("Unable to create object of type " + classType.getName(), e);
+      return list;
     }
   }
 
   /**
-   * This converts a camel case value (rowInsertTime) to snake case (row_insert_time).
+   * This advances a statement that returns multiple result sets (for example, a multi-statement
+   * query) to its next result set. The current result set is closed.
    * 
-   * @param identifier The name in camel case to convert.
-   * @return The name converted to snake case.
+   * @param stmt The statement
+   * @return The next result set
+   * @throws SQLException Thrown if an error occurs or if the statement has no more result sets.
    */
-  private String camelCaseToSnakeCase(String identifier) {
-    StringBuilder nameBuilder = new StringBuilder();
-
-    for(char ch : identifier.toCharArray()) {
-      if(Character.isUpperCase(ch)) {
-        nameBuilder.append('_').append(Character.toLowerCase(ch));
-      }
-      else {
-        nameBuilder.append(ch);
-      }
+  protected ResultSet nextResultSet(Statement stmt) throws SQLException {
+    if(!stmt.getMoreResults()) {
+      throw new SQLException("Expected another result set but none was returned.");
     }
 
-    return nameBuilder.toString();
+    return stmt.getResultSet();
   }
 
   /**
@@ -0,0 +1,254 @@
+/**
+ *
+ */
+package provided.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import provided.util.DaoBase.DaoException;
+
+/**
+ * This maps result set rows to objects of a single class. It does the same job as
+ * {@link DaoBase#extract(ResultSet, Class)} but all of the reflection is done once, when the mapper
+ * is built:
+ * <ol>
+ * <li>The zero-argument constructor is converted to a method handle.</li>
+ * <li>Each field name is converted to snake case and matched against the result set columns. The
+ * column index is remembered so that values are read by index instead of by name.</li>
+ * <li>Fields without a matching column are dropped, so no exception is thrown (and caught) for them
+ * on every row.</li>
+ * <li>Each matched field gets a setter method handle and a reader that does any Time -&gt;
+ * LocalTime or Timestamp -&gt; LocalDateTime conversion.</li>
+ * </ol>
+ *
+ * Mappers are cached per class and column layout, so a query that is run repeatedly reuses the same
+ * mapper. Mappers are immutable and can be shared between threads.
+ *
+ * @author Promineo
+ *
+ * @param <T> The type of object created from each row.
+ */
+public final class RowMapper<T> {
+  /*
+   * Mappers for each class, keyed by the comma-separated column labels of the result set they were
+   * built for.
+   */
+  private static final ClassValue<Map<String, RowMapper<?>>> CACHE =
+      new ClassValue<Map<String, RowMapper<?>>>() {
+        @Override
+        protected Map<String, RowMapper<?>> computeValue(Class<?> type) {
+          return new ConcurrentHashMap<>();
+        }
+      };
+
+  private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+  private static final MethodType SETTER_TYPE =
+      MethodType.methodType(void.class, Object.class, Object.class);
+
+  private final Class<T> classType;
+  private final MethodHandle constructor;
+  private final int[] columnIndexes;
+  private final ColumnReader[] readers;
+  private final MethodHandle[] setters;
+
+  /**
+   * Reads a single column value. The reader is selected for the field type when the mapper is built.
+   */
+  @FunctionalInterface
+  private interface ColumnReader {
+    Object read(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+  private RowMapper(Class<T> classType, MethodHandle constructor, int[] columnIndexes,
+      ColumnReader[] readers, MethodHandle[] setters) {
+    this.classType = classType;
+    this.constructor = constructor;
+    this.columnIndexes = columnIndexes;
+    this.readers = readers;
+    this.setters = setters;
+  }
+
+  /**
+   * Returns the mapper for the given class and the column layout of the given result set. The
+   * mapper is built the first time a class and layout are seen, and cached after that.
+   *
+   * @param <T> The type of object to create.
+   * @param rs The result set. Only the metadata is used; the cursor position does not matter.
+   * @param classType The class of object to create. It must have a zero-argument constructor.
+   * @return The mapper.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> RowMapper<T> of(ResultSet rs, Class<T> classType) {
+    try {
+      ResultSetMetaData meta = rs.getMetaData();
+      String layout = columnLayout(meta);
+      Map<String, RowMapper<?>> mappers = CACHE.get(classType);
+      RowMapper<?> mapper = mappers.get(layout);
+
+      if(mapper == null) {
+        mapper = mappers.computeIfAbsent(layout, key -> build(meta, classType));
+      }
+
+      return (RowMapper<T>)mapper;
+    }
+    catch(SQLException e) {
+      throw new DaoException("Unable to read result set metadata for " + classType.getName(), e);
+    }
+  }
+
+  /**
+   * Creates an object from the current row of the result set. Only fields that have a matching,
+   * non-null column value are set, so instance variables that are initialized by the constructor
+   * (like lists) are preserved.
+   *
+   * @param rs The result set, positioned on the row to map. It must have the same column layout as
+   *        the result set the mapper was obtained for.
+   * @return The populated object.
+   */
+  public T map(ResultSet rs) {
+    try {
+      Object obj = constructor.invokeExact();
+
+      for(int i = 0; i < setters.length; i++) {
+        Object value = readers[i].read(rs, columnIndexes[i]);
+
+        if(value != null) {
+          setters[i].invokeExact(obj, value);
+        }
+      }
+
+      return classType.cast(obj);
+    }
+    catch(Throwable e) {
+      throw new DaoException("Unable to create object of type " + classType.getName(), e);
+    }
+  }
+
+  /**
+   * Builds a new mapper. This does all of the reflection lookups.
+   */
+  private static <T> RowMapper<T> build(ResultSetMetaData meta, Class<T> classType) {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(classType, MethodHandles.lookup());
+      MethodHandle constructor =
+          lookup.findConstructor(classType, MethodType.methodType(void.class)).asType(
+              CONSTRUCTOR_TYPE);
+
+      List<Integer> indexes = new ArrayList<>();
+      List<ColumnReader> readers = new ArrayList<>();
+      List<MethodHandle> setters = new ArrayList<>();
+
+      for(Field field : classType.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+
+        if(Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)) {
+          continue;
+        }
+
+        int columnIndex = findColumn(meta, camelCaseToSnakeCase(field.getName()));
+
+        if(columnIndex > 0) {
+          indexes.add(columnIndex);
+          readers.add(readerFor(field.getType()));
+          setters.add(lookup.unreflectSetter(field).asType(SETTER_TYPE));
+        }
+      }
+
+      return new RowMapper<>(classType, constructor,
+          indexes.stream().mapToInt(Integer::intValue).toArray(),
+          readers.toArray(new ColumnReader[0]), setters.toArray(new MethodHandle[0]));
+    }
+    catch(Exception e) {
+      throw new DaoException("Unable to create a row mapper for type " + classType.getName(), e);
+    }
+  }
+
+  /**
+   * Selects the column reader for a field type. Time and Timestamp values are converted to
+   * LocalTime and LocalDateTime respectively. Everything else is returned as the driver supplies
+   * it.
+   */
+  private static ColumnReader readerFor(Class<?> fieldType) {
+    if(LocalTime.class.equals(fieldType)) {
+      return (rs, index) -> {
+        Object value = rs.getObject(index);
+        return value instanceof Time ? ((Time)value).toLocalTime() : value;
+      };
+    }
+
+    if(LocalDateTime.class.equals(fieldType)) {
+      return (rs, index) -> {
+        Object value = rs.getObject(index);
+        return value instanceof Timestamp ? ((Timestamp)value).toLocalDateTime() : value;
+      };
+    }
+
+    return ResultSet::getObject;
+  }
+
+  /**
+   * Returns the one-based index of the first column with the given label, or zero if there is no
+   * such column.
+   */
+  private static int findColumn(ResultSetMetaData meta, String colName) throws SQLException {
+    int count = meta.getColumnCount();
+
+    for(int index = 1; index <= count; index++) {
+      if(colName.equalsIgnoreCase(meta.getColumnLabel(index))) {
+        return index;
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * Returns the column labels as a single string. This is the cache key for the column layout.
+   */
+  private static String columnLayout(ResultSetMetaData meta) throws SQLException {
+    int count = meta.getColumnCount();
+    StringBuilder layout = new StringBuilder(count * 16);
+
+    for(int index = 1; index <= count; index++) {
+      layout.append(meta.getColumnLabel(index)).append(',');
+    }
+
+    return layout.toString();
+  }
+
+  /**
+   * This converts a camel case value (rowInsertTime) to snake case (row_insert_time).
+   *
+   * @param identifier The name in camel case to convert.
+   * @return The name converted to snake case.
+   */
+  private static String camelCaseToSnakeCase(String identifier) {
+    StringBuilder nameBuilder = new StringBuilder();
+
+    for(char ch : identifier.toCharArray()) {
+      if(Character.isUpperCase(ch)) {
+        nameBuilder.append('_').append(Character.toLowerCase(ch));
+      }
+      else {
+        nameBuilder.append(ch);
+      }
+    }
+
+    return nameBuilder.toString();
+  }
+}
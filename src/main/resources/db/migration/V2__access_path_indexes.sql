@@ -0,0 +1,16 @@
+-- Indexes for the ProjectDao access paths.
+
+-- Project listing (ORDER BY project_name, project_id) and keyset pages
+-- (WHERE project_name > ? OR (project_name = ? AND project_id > ?)) read this
+-- index in order, so neither needs a filesort.
+ALTER TABLE project ADD INDEX project_name_idx (project_name, project_id);
+
+-- Steps are read per project in step order. This index also serves the
+-- project_id foreign key, so MySQL drops the single-column index it created
+-- for the key.
+ALTER TABLE step ADD INDEX step_project_order_idx (project_id, step_order);
+
+-- The link table had no primary key, so InnoDB clustered it on a hidden row
+-- ID. Clustering on (project_id, category_id) makes the categories of a
+-- project one range read. The unique key becomes redundant.
+ALTER TABLE project_category DROP INDEX project_id, ADD PRIMARY KEY (project_id, category_id);
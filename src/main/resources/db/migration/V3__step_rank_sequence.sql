@@ -0,0 +1,12 @@
+-- Steps are ordered by sparse ranks instead of 1, 2, 3, ... (see
+-- StepRankAllocator). project.step_rank_seq is the highest rank handed out for
+-- the project's steps; appends move it on atomically.
+ALTER TABLE project ADD COLUMN step_rank_seq INT NOT NULL DEFAULT 0;
+
+-- Spread the existing step orders out so that steps can be inserted between
+-- them. 1024 is StepRankAllocator.GAP.
+UPDATE step SET step_order = step_order * 1024;
+
+UPDATE project p SET step_rank_seq = (
+SELECT COALESCE(MAX(s.step_order), 0) FROM step s WHERE s.project_id = p.project_id
+);
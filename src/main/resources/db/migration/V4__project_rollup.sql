@@ -0,0 +1,21 @@
+-- Summary figures for each project, kept up to date by ProjectDao in the same
+-- transaction as the writes that change them. hours_variance is actual_hours -
+-- estimated_hours, or NULL if either is unknown.
+CREATE TABLE project_rollup (
+project_id INT NOT NULL,
+total_cost DECIMAL(12,2) NOT NULL DEFAULT 0,
+material_count INT NOT NULL DEFAULT 0,
+step_count INT NOT NULL DEFAULT 0,
+hours_variance DECIMAL(8,2),
+PRIMARY KEY (project_id),
+INDEX rollup_total_cost_idx (total_cost, project_id),
+FOREIGN KEY (project_id) REFERENCES project (project_id) ON DELETE CASCADE
+);
+
+INSERT INTO project_rollup (project_id, total_cost, material_count, step_count, hours_variance)
+SELECT p.project_id,
+(SELECT COALESCE(SUM(m.num_required * m.cost), 0) FROM material m WHERE m.project_id = p.project_id),
+(SELECT COUNT(*) FROM material m WHERE m.project_id = p.project_id),
+(SELECT COUNT(*) FROM step s WHERE s.project_id = p.project_id),
+p.actual_hours - p.estimated_hours
+FROM project p;
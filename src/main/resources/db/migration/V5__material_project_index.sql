@@ -0,0 +1,4 @@
+-- Materials are exported in (project_id, material_id) order. This index also
+-- serves the project_id foreign key, so MySQL drops the single-column index it
+-- created for the key.
+ALTER TABLE material ADD INDEX material_project_idx (project_id, material_id);
@@ -0,0 +1,5 @@
+-- project.version counts the changes to a project's details. An update names
+-- the version it read and only succeeds if the row still has it, so two editors
+-- can't overwrite each other's changes without knowing (see
+-- ProjectDao.modifyProjectDetails).
+ALTER TABLE project ADD COLUMN version INT NOT NULL DEFAULT 0;
@@ -1,3 +1,10 @@
+-- Development reset script: drops and recreates the original tables. The
+-- application applies the versioned scripts in db/migration at startup (see
+-- SchemaMigrator), which add the indexes and later changes. Dropping
+-- schema_version makes them run again after a reset.
+
+DROP TABLE IF EXISTS schema_version;
+DROP TABLE IF EXISTS project_rollup;
 DROP TABLE IF EXISTS project_category;
 DROP TABLE IF EXISTS category;
 DROP TABLE IF EXISTS step;
@@ -0,0 +1,123 @@
+package projects.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import projects.entity.Material;
+import projects.entity.Project;
+
+/*
+ * Refreshing a snapshot must give the same answers as building one from the
+ * current projects, and must drop the names that no row uses any more.
+ */
+class ProjectSnapshotTest {
+
+	@Test
+	void refreshReplacesAddsAndRemovesProjects() {
+		ProjectSnapshot before = ProjectSnapshot.of(List.of(
+				project(1, "Bookshelf", 2, "10.00", "12.00", material(1, "Pine", 2, "5.00"),
+						material(1, "Screws", 10, "0.10")),
+				project(2, "Birdhouse", 1, "4.00", "3.00", material(2, "Cedar", 1, "8.00"),
+						material(2, "Screws", 5, "0.10")),
+				project(3, "Workbench", 3, "20.00", "25.00", material(3, "Oak", 4, "12.50"))));
+
+		// 2 is renamed and its screws become nails, 3 is deleted, and 4 is new
+		ProjectSnapshot after = before.refresh(Set.of(2, 3, 4), List.of(
+				project(2, "Feeder", 1, "4.00", "5.00", material(2, "Cedar", 1, "8.00"),
+						material(2, "Nails", 20, "0.05")),
+				project(4, "Stool", 2, "6.00", "6.00", material(4, "Pine", 1, "5.00"))));
+
+		assertEquals(3, after.size());
+		assertEquals(-1, after.rowOf(3));
+		assertEquals("Feeder", after.getProjectName(after.rowOf(2)));
+
+		assertEquals(0, after.count(after.nameContains("bird")));
+		assertEquals(0, after.count(after.nameContains("bench")));
+		assertEquals(1, after.count(after.nameContains("feed")));
+		assertEquals(1, after.count(after.nameContains("BOOK")));
+
+		assertAggregate(after.aggregate(Measure.ACTUAL_HOURS, after.all()), 3, "23.00", "5.00", "12.00");
+		assertAggregate(after.aggregate(Measure.MATERIAL_COST, after.all()), 3, "25.00", "5.00", "11.00");
+
+		Map<Integer, Aggregate> variance = after.aggregateByDifficulty(Measure.HOURS_VARIANCE, after.all());
+		assertEquals(Set.of(1, 2), variance.keySet());
+		assertAggregate(variance.get(1), 1, "1.00", "1.00", "1.00");
+		assertAggregate(variance.get(2), 2, "2.00", "0.00", "2.00");
+
+		Map<String, Aggregate> costs = after.materialCostByName(after.all());
+		assertEquals(Set.of("Pine", "Cedar", "Screws", "Nails"), costs.keySet());
+		assertEquals("Pine", costs.keySet().iterator().next());
+		assertAggregate(costs.get("Pine"), 2, "15.00", "5.00", "10.00");
+		assertAggregate(costs.get("Cedar"), 1, "8.00", "8.00", "8.00");
+		assertAggregate(costs.get("Screws"), 1, "1.00", "1.00", "1.00");
+		assertAggregate(costs.get("Nails"), 1, "1.00", "1.00", "1.00");
+
+		// the names of the renamed and deleted rows are gone, not just unused
+		assertEquals(3, after.getNameCount());
+		assertEquals(4, after.getMaterialNameCount());
+	}
+
+	@Test
+	void refreshLeavesTheOldSnapshotAlone() {
+		ProjectSnapshot before = ProjectSnapshot.of(List.of(project(1, "Bookshelf", 2, "10.00", "12.00",
+				material(1, "Pine", 2, "5.00"))));
+
+		before.refresh(Set.of(1), List.of(project(1, "Desk", 2, "10.00", "12.00", material(1, "Oak", 1, "9.00"))));
+
+		assertEquals(1, before.count(before.nameContains("book")));
+		assertEquals(Set.of("Pine"), before.materialCostByName(before.all()).keySet());
+	}
+
+	@Test
+	void repeatedRenamesDoNotGrowTheDictionaries() {
+		ProjectSnapshot snapshot = ProjectSnapshot.of(List.of(
+				project(1, "Bookshelf", 2, "10.00", "12.00", material(1, "Pine", 2, "5.00")),
+				project(2, "Birdhouse", 1, "4.00", "3.00", material(2, "Cedar", 1, "8.00"))));
+
+		for (int version = 0; version < 50; version++) {
+			snapshot = snapshot.refresh(Set.of(2), List.of(project(2, "Birdhouse " + version, 1, "4.00", "3.00",
+					material(2, "Cedar " + version, 1, "8.00"))));
+		}
+
+		assertEquals(2, snapshot.getNameCount());
+		assertEquals(2, snapshot.getMaterialNameCount());
+		assertEquals(1, snapshot.count(snapshot.nameContains("birdhouse 49")));
+		assertFalse(snapshot.materialCostByName(snapshot.all()).containsKey("Cedar 48"));
+		assertAggregate(snapshot.materialCostByName(snapshot.all()).get("Cedar 49"), 1, "8.00", "8.00", "8.00");
+	}
+
+	private static void assertAggregate(Aggregate aggregate, long count, String sum, String min, String max) {
+		assertEquals(count, aggregate.getCount(), "count");
+		assertEquals(new BigDecimal(sum), aggregate.getSum(), "sum");
+		assertEquals(new BigDecimal(min), aggregate.getMin(), "min");
+		assertEquals(new BigDecimal(max), aggregate.getMax(), "max");
+	}
+
+	private static Project project(int projectId, String name, int difficulty, String estimatedHours,
+			String actualHours, Material... materials) {
+		Project project = new Project();
+		project.setProjectId(projectId);
+		project.setProjectName(name);
+		project.setDifficulty(difficulty);
+		project.setEstimatedHours(new BigDecimal(estimatedHours));
+		project.setActualHours(new BigDecimal(actualHours));
+		project.getMaterials().addAll(List.of(materials));
+		return project;
+	}
+
+	private static Material material(int projectId, String name, int numRequired, String cost) {
+		Material material = new Material();
+		material.setProjectId(projectId);
+		material.setMaterialName(name);
+		material.setNumRequired(numRequired);
+		material.setCost(new BigDecimal(cost));
+		return material;
+	}
+}
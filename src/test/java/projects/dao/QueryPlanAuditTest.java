@@ -0,0 +1,160 @@
+package projects.dao;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static projects.dao.ProjectSql.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import projects.entity.Project.Field;
+
+/*
+ * This checks the query plan of every ProjectDao statement that reads rows. It
+ * runs EXPLAIN on each one, with typical parameter values, and fails for any
+ * table that is read with a full table scan (type ALL) or whose rows have to be
+ * sorted (Using filesort). Full listings are expected to read the whole table,
+ * so they may scan it, but they must not sort it.
+ *
+ * INSERT statements and SHOW STATUS are not checked because they don't search.
+ *
+ * It needs the projects database, already migrated, so it is skipped unless
+ * -Dprojects.test.database=true is set:
+ *
+ *   mvn test -Dprojects.test.database=true -Dtest=QueryPlanAuditTest
+ *
+ * MySQL reads tiny tables with a full scan even when an index exists, so run it
+ * against a realistic amount of data; an empty development database can fail
+ * where real data would not.
+ */
+class QueryPlanAuditTest {
+
+	private static Connection conn;
+
+	private final List<Check> checks = new ArrayList<>();
+
+	private static class Check {
+		final String name;
+		final String sql;
+		final Object[] params;
+		final boolean fullListing;
+
+		Check(String name, String sql, boolean fullListing, Object... params) {
+			this.name = name;
+			this.sql = sql;
+			this.params = params;
+			this.fullListing = fullListing;
+		}
+	}
+
+	@AfterAll
+	static void close() throws SQLException {
+		if (Objects.nonNull(conn)) {
+			conn.close();
+			DbConnection.close();
+		}
+	}
+
+	@TestFactory
+	Stream<DynamicTest> queryPlans() {
+		assumeTrue(Boolean.getBoolean("projects.test.database"), "-Dprojects.test.database=true is not set");
+		conn = DbConnection.getConnection();
+
+		check("SELECT_ALL_PROJECTS", SELECT_ALL_PROJECTS, true);
+		check("SELECT_ALL_MATERIALS", SELECT_ALL_MATERIALS, true);
+		check("EXPORT_PROJECTS", EXPORT_PROJECTS, true);
+		check("EXPORT_MATERIALS", EXPORT_MATERIALS, true);
+		check("EXPORT_STEPS", EXPORT_STEPS, true);
+		check("EXPORT_CATEGORIES", EXPORT_CATEGORIES, true);
+		check("SELECT_PROJECTS_FIRST_PAGE", SELECT_PROJECTS_FIRST_PAGE, false, 50);
+		check("SELECT_PROJECTS_NEXT_PAGE", SELECT_PROJECTS_NEXT_PAGE, false, "M", "M", 1, 50);
+
+		// the graph queries are several statements, each explained on its own
+		checkEach("SELECT_PROJECT_GRAPH", SELECT_PROJECT_GRAPH, 1);
+		checkEach("selectProjectGraphs", selectProjectGraphs(3), 1, 2, 3);
+
+		// the project updates differ only in their SET lists, so the widest ones stand
+		// for the rest
+		check("UPDATE_PROJECT", updateProject(EnumSet.allOf(Field.class), false), false, "name", 1, 1, 1, "notes",
+				1);
+		check("UPDATE_PROJECT_IF_VERSION", updateProject(EnumSet.allOf(Field.class), true), false, "name", 1, 1, 1,
+				"notes", 1, 0);
+		check("SELECT_PROJECT_VERSION", SELECT_PROJECT_VERSION, false, 1);
+		checkEach("deleteProjectGraphs", deleteProjectGraphs(3), 1, 2, 3);
+
+		check("ALLOCATE_STEP_RANKS", ALLOCATE_STEP_RANKS, false, StepRankAllocator.GAP, 1);
+		check("LOCK_STEP_RANKS", LOCK_STEP_RANKS, false, 1);
+		check("SELECT_STEP_RANK", SELECT_STEP_RANK, false, 1, 1);
+		check("SELECT_NEXT_STEP_RANK", SELECT_NEXT_STEP_RANK, false, 1, StepRankAllocator.GAP);
+		check("SELECT_STEP_IDS_IN_ORDER", SELECT_STEP_IDS_IN_ORDER, false, 1);
+		check("UPDATE_STEP_RANK", UPDATE_STEP_RANK, false, StepRankAllocator.GAP, 1, 1);
+		check("UPDATE_STEP_RANK_SEQ", UPDATE_STEP_RANK_SEQ, false, StepRankAllocator.GAP, 1);
+
+		check("UPDATE_ROLLUP_HOURS_VARIANCE", UPDATE_ROLLUP_HOURS_VARIANCE, false, 1);
+		check("ADD_ROLLUP_STEPS", ADD_ROLLUP_STEPS, false, 1, 1);
+		check("SELECT_PROJECT_ROLLUP", SELECT_PROJECT_ROLLUP, false, 1);
+		check("SELECT_MOST_EXPENSIVE_PROJECTS", SELECT_MOST_EXPENSIVE_PROJECTS, false, 10);
+
+		return checks.stream().map(check -> DynamicTest.dynamicTest(check.name, () -> {
+			List<String> problems = explain(check);
+			assertTrue(problems.isEmpty(), () -> check.sql + ": " + String.join(", ", problems));
+		}));
+	}
+
+	private void check(String name, String sql, boolean fullListing, Object... params) {
+		checks.add(new Check(name, sql, fullListing, params));
+	}
+
+	/*
+	 * Add a check for each statement of a multi-statement query. Every statement
+	 * takes the same parameters.
+	 */
+	private void checkEach(String name, String sql, Object... params) {
+		String[] statements = sql.split(";");
+
+		for (int index = 0; index < statements.length; index++) {
+			check(name + "[" + index + "]", statements[index].strip(), false, params);
+		}
+	}
+
+	private static List<String> explain(Check check) throws SQLException {
+		List<String> problems = new ArrayList<>();
+
+		try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + check.sql)) {
+			int paramCount = stmt.getParameterMetaData().getParameterCount();
+
+			for (int index = 1; index <= paramCount; index++) {
+				stmt.setObject(index, check.params[(index - 1) % check.params.length]);
+			}
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					String table = rs.getString("table");
+					String type = rs.getString("type");
+					String extra = Objects.requireNonNullElse(rs.getString("Extra"), "");
+
+					if ("ALL".equals(type) && !check.fullListing) {
+						problems.add(table + ": full table scan");
+					}
+
+					if (extra.contains("Using filesort")) {
+						problems.add(table + ": filesort");
+					}
+				}
+			}
+		}
+
+		return problems;
+	}
+}
@@ -0,0 +1,112 @@
+package projects.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import projects.export.CsvRowWriter;
+
+/*
+ * Rows written by CsvRowWriter must read back with RecordParser.splitCsv as the
+ * same fields. The writer reads its columns from a ResultSet, which here is a
+ * stand-in that only answers getString(column).
+ */
+class CsvRoundTripTest {
+
+	@Test
+	void plainFields() throws Exception {
+		assertRoundTrip("project", "1", "Shelves", "4.00", "5.50", "2", "Pine");
+	}
+
+	@Test
+	void nullAndEmptyStringReadBackDifferently() throws Exception {
+		assertRoundTrip("project", "1", "", "4.00", null, "2", null);
+		assertRoundTrip("category", "1", "2", "");
+	}
+
+	@Test
+	void quotesAreDoubled() throws Exception {
+		assertRoundTrip("step", "1", "3", "Sand the \"good\" side", "1024");
+		assertRoundTrip("step", "1", "4", "\"", "2048");
+	}
+
+	@Test
+	void commasAreQuoted() throws Exception {
+		assertRoundTrip("material", "1", "5", "Screws, 2 inch", "40", "0.10");
+		assertRoundTrip("material", "1", "6", ",", "1", ",");
+	}
+
+	@Test
+	void lineBreaksStayInTheirField() throws Exception {
+		assertRoundTrip("project", "1", "Desk", null, null, "3", "Line one\nLine two\r\nLine three");
+		assertRoundTrip("step", "1", "7", "\n", "3072");
+	}
+
+	@Test
+	void rowsFollowEachOther() throws Exception {
+		StringBuilder out = new StringBuilder();
+		CsvRowWriter writer = new CsvRowWriter(out);
+
+		writer.project(resultSet("1", "Bench", "8.00", null, "3", "Seat,\n\"back\""));
+		writer.material(resultSet("1", "2", "Oak", "4", "12.50"));
+		writer.step(resultSet("1", "3", "", "1024"));
+		writer.category(resultSet("1", "4", null));
+
+		List<List<String>> expected = List.of(
+				Arrays.asList("project", "1", "Bench", "8.00", null, "3", "Seat,\n\"back\""),
+				Arrays.asList("material", "1", "2", "Oak", "4", "12.50"),
+				Arrays.asList("step", "1", "3", "", "1024"),
+				Arrays.asList("category", "1", "4", null));
+
+		assertEquals(expected, RecordParser.splitCsv(out.toString()));
+		assertEquals(4, writer.getRows());
+	}
+
+	// write one row of the given type and read it back
+	private static void assertRoundTrip(String type, String... columns) throws Exception {
+		StringBuilder out = new StringBuilder();
+		CsvRowWriter writer = new CsvRowWriter(out);
+		ResultSet rs = resultSet(columns);
+
+		switch (type) {
+		case "project":
+			writer.project(rs);
+			break;
+		case "material":
+			writer.material(rs);
+			break;
+		case "step":
+			writer.step(rs);
+			break;
+		case "category":
+			writer.category(rs);
+			break;
+		default:
+			throw new IllegalArgumentException(type);
+		}
+
+		List<String> expected = new ArrayList<>();
+		expected.add(type);
+		expected.addAll(Arrays.asList(columns));
+
+		assertEquals(List.of(expected), RecordParser.splitCsv(out.toString()), out.toString());
+	}
+
+	// a ResultSet whose getString(column) returns the given values, starting at column 1
+	private static ResultSet resultSet(String... columns) {
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+				(proxy, method, args) -> {
+					if ("getString".equals(method.getName()) && args[0] instanceof Integer) {
+						return columns[(Integer) args[0] - 1];
+					}
+
+					throw new UnsupportedOperationException(method.getName());
+				});
+	}
+}
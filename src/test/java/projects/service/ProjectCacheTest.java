@@ -0,0 +1,152 @@
+package projects.service;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import projects.entity.Project;
+
+/*
+ * A load stamped before a project was invalidated must not be cached, and only
+ * that project's loads are affected. When more invalidations happen than the
+ * cache remembers, every load in progress is refused instead.
+ */
+class ProjectCacheTest {
+
+	private final ProjectCache cache = new ProjectCache(100, 300);
+
+	@Test
+	void putAfterInvalidationOfThatProjectIsIgnored() {
+		long stamp = cache.stamp();
+		cache.invalidate(1);
+
+		cache.put(1, project(1), stamp);
+
+		assertNull(cache.get(1));
+	}
+
+	@Test
+	void putAfterInvalidationOfAnotherProjectIsCached() {
+		long stamp = cache.stamp();
+		cache.invalidate(2);
+
+		Project project = project(1);
+		cache.put(1, project, stamp);
+
+		assertSame(project, cache.get(1));
+	}
+
+	@Test
+	void putStampedAfterTheInvalidationIsCached() {
+		cache.invalidate(1);
+		long stamp = cache.stamp();
+
+		Project project = project(1);
+		cache.put(1, project, stamp);
+
+		assertSame(project, cache.get(1));
+	}
+
+	@Test
+	void invalidateAllRefusesEveryEarlierLoad() {
+		long before = cache.stamp();
+		cache.invalidateAll();
+		long after = cache.stamp();
+
+		cache.put(1, project(1), before);
+		cache.put(2, project(2), before);
+		assertNull(cache.get(1));
+		assertNull(cache.get(2));
+
+		Project project = project(1);
+		cache.put(1, project, after);
+		assertSame(project, cache.get(1));
+	}
+
+	@Test
+	void replaceCountsAsAnInvalidation() {
+		long stamp = cache.stamp();
+		Project cached = project(1);
+		cache.put(1, cached, stamp);
+
+		Project updated = project(1);
+		cache.replace(1, cached, updated);
+		assertSame(updated, cache.get(1));
+
+		// a load that started before the write must not overwrite the updated copy
+		cache.put(1, project(1), stamp);
+		assertSame(updated, cache.get(1));
+	}
+
+	@Test
+	void replaceOfAnEntryThatChangedDropsIt() {
+		long stamp = cache.stamp();
+		cache.put(1, project(1), stamp);
+
+		cache.replace(1, project(1), project(1));
+
+		assertNull(cache.get(1));
+	}
+
+	@Test
+	void invalidationsUpToTheCapAreTrackedPerProject() {
+		long stamp = cache.stamp();
+
+		for (int projectId = 1; projectId <= ProjectCache.MAX_TRACKED_INVALIDATIONS; projectId++) {
+			cache.invalidate(projectId);
+		}
+
+		Project untouched = project(0);
+		cache.put(0, untouched, stamp);
+		cache.put(1, project(1), stamp);
+
+		assertSame(untouched, cache.get(0));
+		assertNull(cache.get(1));
+	}
+
+	@Test
+	void overflowingTheCapRefusesEveryEarlierLoad() {
+		long stamp = cache.stamp();
+
+		for (int projectId = 1; projectId <= ProjectCache.MAX_TRACKED_INVALIDATIONS + 1; projectId++) {
+			cache.invalidate(projectId);
+		}
+
+		// project 0 was never invalidated, but its invalidation can't be ruled out
+		cache.put(0, project(0), stamp);
+		assertNull(cache.get(0));
+	}
+
+	@Test
+	void afterAnOverflowLoadsAreTrackedPerProjectAgain() {
+		for (int projectId = 1; projectId <= ProjectCache.MAX_TRACKED_INVALIDATIONS + 1; projectId++) {
+			cache.invalidate(projectId);
+		}
+
+		long stamp = cache.stamp();
+		cache.invalidate(1);
+
+		Project untouched = project(0);
+		cache.put(0, untouched, stamp);
+		cache.put(1, project(1), stamp);
+
+		assertSame(untouched, cache.get(0));
+		assertNull(cache.get(1));
+	}
+
+	@Test
+	void zeroMaxSizeCachesNothing() {
+		ProjectCache disabled = new ProjectCache(0, 300);
+
+		disabled.put(1, project(1), disabled.stamp());
+
+		assertNull(disabled.get(1));
+	}
+
+	private static Project project(int projectId) {
+		Project project = new Project();
+		project.setProjectId(projectId);
+		return project;
+	}
+}